@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Intent;
+import android.net.Uri;
+import android.provider.ContactsContract.Contacts;
+import android.provider.ContactsContract.Data;
+import android.util.Log;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects the single field updates sent to the {@link ContactSaveService}, like starring a
+ * contact or making a phone number the default, so that the ones that arrive in a short time
+ * are written in one batch.
+ *
+ * Updates of the same contact are merged into one operation, and the last value of a field
+ * wins, so toggling a flag back and forth only writes the final value. The primary flags of a
+ * data row are replaced as a whole. Operations are ordered by their last update, so that when
+ * several rows of a contact are made the default, the last one still wins.
+ */
+/* package */ final class ContactFieldUpdateBatch {
+    private static final String TAG = "ContactFieldUpdateBatch";
+
+    /** Pending updates by contact or data Uri. */
+    private final LinkedHashMap<Uri, ContentValues> mUpdates = Maps.newLinkedHashMap();
+    private final ArrayList<Intent> mCallbackIntents = Lists.newArrayList();
+    private boolean mAffectsCallerInfo;
+
+    /**
+     * Returns whether the given action only updates a single field and can be batched.
+     */
+    public static boolean isBatchable(String action) {
+        return ContactSaveService.ACTION_SET_STARRED.equals(action)
+                || ContactSaveService.ACTION_SET_SEND_TO_VOICEMAIL.equals(action)
+                || ContactSaveService.ACTION_SET_RINGTONE.equals(action)
+                || ContactSaveService.ACTION_SET_SUPER_PRIMARY.equals(action)
+                || ContactSaveService.ACTION_CLEAR_PRIMARY.equals(action);
+    }
+
+    /**
+     * Adds the update requested by the given intent, whose action must be
+     * {@link #isBatchable}.
+     */
+    public void add(Intent intent) {
+        final String action = intent.getAction();
+        if (ContactSaveService.ACTION_SET_SUPER_PRIMARY.equals(action)
+                || ContactSaveService.ACTION_CLEAR_PRIMARY.equals(action)) {
+            final long dataId = intent.getLongExtra(ContactSaveService.EXTRA_DATA_ID, -1);
+            if (dataId == -1) {
+                Log.e(TAG, "Invalid arguments for " + action + " request");
+            } else {
+                final int primary =
+                        ContactSaveService.ACTION_SET_SUPER_PRIMARY.equals(action) ? 1 : 0;
+                final ContentValues values = new ContentValues(2);
+                values.put(Data.IS_SUPER_PRIMARY, primary);
+                values.put(Data.IS_PRIMARY, primary);
+                put(ContentUris.withAppendedId(Data.CONTENT_URI, dataId), values, true);
+            }
+        } else {
+            final Uri contactUri = intent.getParcelableExtra(ContactSaveService.EXTRA_CONTACT_URI);
+            if (contactUri == null) {
+                Log.e(TAG, "Invalid arguments for " + action + " request");
+            } else {
+                final ContentValues values = new ContentValues(1);
+                if (ContactSaveService.ACTION_SET_STARRED.equals(action)) {
+                    values.put(Contacts.STARRED, intent.getBooleanExtra(
+                            ContactSaveService.EXTRA_STARRED_FLAG, false));
+                } else if (ContactSaveService.ACTION_SET_SEND_TO_VOICEMAIL.equals(action)) {
+                    values.put(Contacts.SEND_TO_VOICEMAIL, intent.getBooleanExtra(
+                            ContactSaveService.EXTRA_SEND_TO_VOICEMAIL_FLAG, false));
+                    mAffectsCallerInfo = true;
+                } else {
+                    values.put(Contacts.CUSTOM_RINGTONE, intent.getStringExtra(
+                            ContactSaveService.EXTRA_CUSTOM_RINGTONE));
+                    mAffectsCallerInfo = true;
+                }
+                put(contactUri, values, false);
+            }
+        }
+
+        final Intent callbackIntent =
+                intent.getParcelableExtra(ContactSaveService.EXTRA_CALLBACK_INTENT);
+        if (callbackIntent != null) {
+            mCallbackIntents.add(callbackIntent);
+        }
+    }
+
+    private void put(Uri uri, ContentValues values, boolean replace) {
+        final ContentValues pending = mUpdates.remove(uri);
+        if (pending != null && !replace) {
+            pending.putAll(values);
+            values = pending;
+        }
+        // Re-inserting moves the update to the end
+        mUpdates.put(uri, values);
+    }
+
+    public boolean isEmpty() {
+        return mUpdates.isEmpty() && mCallbackIntents.isEmpty();
+    }
+
+    /**
+     * Returns one update operation per contact or data row, in the order of their last update.
+     */
+    public ArrayList<ContentProviderOperation> buildOperations() {
+        final ArrayList<ContentProviderOperation> operations =
+                Lists.newArrayListWithCapacity(mUpdates.size());
+        for (Map.Entry<Uri, ContentValues> update : mUpdates.entrySet()) {
+            operations.add(ContentProviderOperation.newUpdate(update.getKey())
+                    .withValues(update.getValue())
+                    .build());
+        }
+        return operations;
+    }
+
+    /**
+     * Returns the callback intents of the added requests, in the order they were added.
+     */
+    public ArrayList<Intent> getCallbackIntents() {
+        return mCallbackIntents;
+    }
+
+    /**
+     * Returns whether any update changes how incoming calls are handled.
+     */
+    public boolean affectsCallerInfo() {
+        return mAffectsCallerInfo;
+    }
+
+    public void clear() {
+        mUpdates.clear();
+        mCallbackIntents.clear();
+        mAffectsCallerInfo = false;
+    }
+}
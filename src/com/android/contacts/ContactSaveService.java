@@ -29,11 +29,14 @@ import android.content.Intent;
 import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Parcelable;
+import android.os.Process;
 import android.os.RemoteException;
+import android.os.SystemClock;
 import android.provider.ContactsContract;
 import android.provider.ContactsContract.AggregationExceptions;
 import android.provider.ContactsContract.CommonDataKinds.GroupMembership;
@@ -46,8 +49,8 @@ import android.provider.ContactsContract.RawContactsEntity;
 import android.util.Log;
 import android.widget.Toast;
 
-import com.android.contacts.common.database.ContactUpdateUtils;
 import com.android.contacts.common.model.AccountTypeManager;
+import com.android.contacts.model.CompactRawContactDeltaList;
 import com.android.contacts.model.RawContactDelta;
 import com.android.contacts.model.RawContactDeltaList;
 import com.android.contacts.model.RawContactModifier;
@@ -55,18 +58,35 @@ import com.android.contacts.common.model.account.AccountWithDataSet;
 import com.android.contacts.util.CallerInfoCacheUtils;
 import com.android.contacts.util.ContactPhotoUtils;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 import java.io.File;
+import java.io.FileDescriptor;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A service responsible for saving changes to the content provider.
@@ -100,10 +120,16 @@ public class ContactSaveService extends IntentService {
     public static final String EXTRA_GROUP_LABEL = "groupLabel";
     public static final String EXTRA_RAW_CONTACTS_TO_ADD = "rawContactsToAdd";
     public static final String EXTRA_RAW_CONTACTS_TO_REMOVE = "rawContactsToRemove";
+    /** Raw contacts whose group membership couldn't be changed, in the callback intent. */
+    public static final String EXTRA_FAILED_RAW_CONTACT_IDS = "failedRawContactIds";
 
     public static final String ACTION_SET_STARRED = "setStarred";
     public static final String ACTION_DELETE_CONTACT = "delete";
     public static final String EXTRA_CONTACT_URI = "contactUri";
+    public static final String ACTION_DELETE_CONTACTS = "deleteContacts";
+    public static final String EXTRA_CONTACT_IDS = "contactIds";
+    public static final String EXTRA_CONTACT_URIS = "contactUris";
+    public static final String EXTRA_BULK_DELETE_REQUEST_ID = "bulkDeleteRequestId";
     public static final String EXTRA_STARRED_FLAG = "starred";
 
     public static final String ACTION_SET_SUPER_PRIMARY = "setSuperPrimary";
@@ -143,6 +169,59 @@ public class ContactSaveService extends IntentService {
 
     private static final int PERSIST_TRIES = 3;
 
+    /**
+     * Upper bound of the delay before the first retry of a save that conflicted with another
+     * change, doubled for every further retry. The actual delay is random below the bound, so
+     * that the save doesn't retry in lockstep with a sync adapter writing the same contact.
+     */
+    private static final long CONFLICT_RETRY_BASE_DELAY_MS = 100;
+
+    /**
+     * Maximum number of raw contacts per group membership batch or selection, which keeps the
+     * selection arguments below the SQLite limit and the transactions short.
+     */
+    private static final int MEMBERSHIP_CHUNK_SIZE = 200;
+
+    /** Maximum number of lookup keys resolved by one query of a bulk delete. */
+    private static final int LOOKUP_CHUNK_SIZE = 200;
+
+    /** Maximum number of contacts deleted in one transaction by a bulk delete. */
+    @VisibleForTesting
+    /* package */ static final int DELETE_CHUNK_SIZE = 100;
+
+    /**
+     * How long single field updates wait for more of them before being written, see
+     * {@link ContactFieldUpdateBatch}.
+     */
+    private static final long FIELD_UPDATE_BATCH_WINDOW_MS = 150;
+
+    /** Maximum number of single field updates written in one batch. */
+    private static final int MAX_FIELD_UPDATE_BATCH_SIZE = 100;
+
+    /** Maximum number of photos written at the same time, see {@link #saveUpdatedPhotos}. */
+    private static final int MAX_PHOTO_SAVE_THREADS = 3;
+
+    private static final ThreadPoolExecutor sPhotoSaveExecutor = new ThreadPoolExecutor(
+            MAX_PHOTO_SAVE_THREADS, MAX_PHOTO_SAVE_THREADS, 10, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(final Runnable r) {
+                    return new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            r.run();
+                        }
+                    }, "ContactSaveService photo #" + mCount.incrementAndGet());
+                }
+            });
+
+    static {
+        sPhotoSaveExecutor.allowCoreThreadTimeOut(true);
+    }
+
     public interface Listener {
         public void onServiceCompleted(Intent callbackIntent);
     }
@@ -150,8 +229,88 @@ public class ContactSaveService extends IntentService {
     private static final CopyOnWriteArrayList<Listener> sListeners =
             new CopyOnWriteArrayList<Listener>();
 
+    /**
+     * Receives the progress of bulk deletes, see {@link #createDeleteContactsIntent}. The
+     * methods are called on the main thread.
+     */
+    public interface BulkDeleteListener {
+        /**
+         * Called after each transaction of a bulk delete, with the number of contacts that
+         * were processed so far, whether or not their deletion succeeded.
+         */
+        public void onBulkDeleteProgress(int requestId, int processedCount, int totalCount);
+
+        /**
+         * Called when a bulk delete is done.
+         */
+        public void onBulkDeleteCompleted(int requestId, int deletedCount, int totalCount);
+    }
+
+    private static final CopyOnWriteArrayList<BulkDeleteListener> sBulkDeleteListeners =
+            new CopyOnWriteArrayList<BulkDeleteListener>();
+
+    private static final AtomicInteger sNextBulkDeleteRequestId = new AtomicInteger(1);
+
+    /** The bulk deletes whose intent was created but that are not done yet, by request id. */
+    private static final Set<Integer> sPendingBulkDeleteRequests =
+            Collections.synchronizedSet(Sets.<Integer>newHashSet());
+
+    /**
+     * Broadcast after every handled request with a snapshot of {@link #sStats} in its extras,
+     * if enabled with "adb shell setprop log.tag.ContactSaveStats DEBUG". Only receivers of
+     * this package get it; other processes can read the stats through dumpsys.
+     */
+    public static final String ACTION_STATS_UPDATED =
+            "com.android.contacts.action.SAVE_SERVICE_STATS_UPDATED";
+    private static final String STATS_TAG = "ContactSaveStats";
+
+    private static final String PHASE_TRIM_EMPTY = "trimEmpty";
+    private static final String PHASE_BUILD_DIFF = "buildDiff";
+    private static final String PHASE_APPLY_BATCH = "applyBatch";
+    private static final String PHASE_LOOKUP_URI = "lookupUri";
+    private static final String PHASE_REPARENT = "reparent";
+    private static final String PHASE_PHOTOS = "photos";
+    private static final String PHASE_FIELD_UPDATES = "fieldUpdates";
+
+    /** Number of contact saves handled by this process. */
+    private static final String COUNTER_SAVES = "saves";
+    /** Number of times a save conflicted with another change of the same raw contacts. */
+    private static final String COUNTER_CONFLICTS = "conflicts";
+    /** Number of times a save was retried after a conflict. */
+    private static final String COUNTER_RETRIES = "retries";
+    /** Number of saves that still conflicted after {@link #PERSIST_TRIES} tries. */
+    private static final String COUNTER_CONFLICT_FAILURES = "conflictFailures";
+
+    private static final ContactSaveServiceStats sStats = new ContactSaveServiceStats();
+
     private Handler mMainHandler;
 
+    /** Single field updates that are being batched, only used on the worker thread. */
+    private final ContactFieldUpdateBatch mFieldUpdates = new ContactFieldUpdateBatch();
+
+    /**
+     * The intents that were started but not handled yet, in the order in which they are
+     * handled. Guarded by itself.
+     */
+    private final LinkedList<QueuedIntent> mQueuedIntents = Lists.newLinkedList();
+
+    /** An intent waiting in the queue of the service. */
+    private static final class QueuedIntent {
+        public final Intent mIntent;
+        /** When the intent was started, to measure how long it waited in the queue. */
+        public final long mStartTime;
+        /**
+         * Whether the intent was written already, with the batch of an earlier one. Only used
+         * on the worker thread.
+         */
+        public boolean mAbsorbed;
+
+        public QueuedIntent(Intent intent, long startTime) {
+            mIntent = intent;
+            mStartTime = startTime;
+        }
+    }
+
     public ContactSaveService() {
         super(TAG);
         setIntentRedelivery(true);
@@ -170,6 +329,31 @@ public class ContactSaveService extends IntentService {
         sListeners.remove(listener);
     }
 
+    public static void registerBulkDeleteListener(BulkDeleteListener listener) {
+        sBulkDeleteListeners.add(listener);
+    }
+
+    public static void unregisterBulkDeleteListener(BulkDeleteListener listener) {
+        sBulkDeleteListeners.remove(listener);
+    }
+
+    /**
+     * Returns whether the bulk delete with the given request id, see
+     * {@link #getBulkDeleteRequestId}, was started and is not done yet. A listener that was
+     * unregistered for a while can use this to find out whether it missed the completion.
+     */
+    public static boolean isBulkDeletePending(int requestId) {
+        return sPendingBulkDeleteRequests.contains(requestId);
+    }
+
+    /**
+     * Returns the request id of an intent created by {@link #createDeleteContactsIntent}, which
+     * identifies the bulk delete in the calls to the {@link BulkDeleteListener}s.
+     */
+    public static int getBulkDeleteRequestId(Intent intent) {
+        return intent.getIntExtra(EXTRA_BULK_DELETE_REQUEST_ID, 0);
+    }
+
     @Override
     public Object getSystemService(String name) {
         Object service = super.getSystemService(name);
@@ -180,11 +364,55 @@ public class ContactSaveService extends IntentService {
         return getApplicationContext().getSystemService(name);
     }
 
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        synchronized (mQueuedIntents) {
+            mQueuedIntents.add(new QueuedIntent(intent, SystemClock.elapsedRealtime()));
+            mQueuedIntents.notifyAll();
+        }
+        return super.onStartCommand(intent, flags, startId);
+    }
+
     @Override
     protected void onHandleIntent(Intent intent) {
+        final QueuedIntent queued;
+        final int queueDepth;
+        synchronized (mQueuedIntents) {
+            queued = mQueuedIntents.poll();
+            queueDepth = mQueuedIntents.size();
+        }
+        if (queued != null) {
+            sStats.recordDequeue(SystemClock.elapsedRealtime() - queued.mStartTime, queueDepth);
+            if (queued.mAbsorbed) {
+                // Written with an earlier batch, see absorbFieldUpdates
+                return;
+            }
+        }
+
+        String action = intent.getAction();
+        if (ContactFieldUpdateBatch.isBatchable(action)) {
+            final long start = System.nanoTime();
+            mFieldUpdates.add(intent);
+            sStats.recordAction(action, start);
+            absorbFieldUpdates();
+            applyFieldUpdates();
+        } else {
+            final long start = System.nanoTime();
+            handleIntent(intent, action);
+            sStats.recordAction(action, start);
+        }
+
+        if (Log.isLoggable(STATS_TAG, Log.DEBUG)) {
+            final Intent statsIntent = new Intent(ACTION_STATS_UPDATED);
+            statsIntent.setPackage(getPackageName());
+            statsIntent.putExtras(sStats.toBundle());
+            sendBroadcast(statsIntent);
+        }
+    }
+
+    private void handleIntent(Intent intent, String action) {
         // Call an appropriate method. If we're sure it affects how incoming phone calls are
         // handled, then notify the fact to in-call screen.
-        String action = intent.getAction();
         if (ACTION_NEW_RAW_CONTACT.equals(action)) {
             createRawContact(intent);
             CallerInfoCacheUtils.sendUpdateCallerInfoCacheIntent(this);
@@ -199,25 +427,98 @@ public class ContactSaveService extends IntentService {
             deleteGroup(intent);
         } else if (ACTION_UPDATE_GROUP.equals(action)) {
             updateGroup(intent);
-        } else if (ACTION_SET_STARRED.equals(action)) {
-            setStarred(intent);
-        } else if (ACTION_SET_SUPER_PRIMARY.equals(action)) {
-            setSuperPrimary(intent);
-        } else if (ACTION_CLEAR_PRIMARY.equals(action)) {
-            clearPrimary(intent);
         } else if (ACTION_DELETE_CONTACT.equals(action)) {
             deleteContact(intent);
             CallerInfoCacheUtils.sendUpdateCallerInfoCacheIntent(this);
+        } else if (ACTION_DELETE_CONTACTS.equals(action)) {
+            try {
+                deleteContacts(intent);
+            } finally {
+                sPendingBulkDeleteRequests.remove(getBulkDeleteRequestId(intent));
+            }
+            CallerInfoCacheUtils.sendUpdateCallerInfoCacheIntent(this);
         } else if (ACTION_JOIN_CONTACTS.equals(action)) {
             joinContacts(intent);
             CallerInfoCacheUtils.sendUpdateCallerInfoCacheIntent(this);
-        } else if (ACTION_SET_SEND_TO_VOICEMAIL.equals(action)) {
-            setSendToVoicemail(intent);
-            CallerInfoCacheUtils.sendUpdateCallerInfoCacheIntent(this);
-        } else if (ACTION_SET_RINGTONE.equals(action)) {
-            setRingtone(intent);
+        }
+    }
+
+    /**
+     * Adds the single field updates queued right behind the one being handled to the batch,
+     * waiting up to {@link #FIELD_UPDATE_BATCH_WINDOW_MS} for each next one. Any other request
+     * ends the batch, which keeps the order of the requests. The absorbed intents stay in the
+     * queue and are only skipped when their turn comes, so that each of them is acknowledged,
+     * and won't be redelivered, only after the batch was written.
+     */
+    private void absorbFieldUpdates() {
+        for (int index = 0; index < MAX_FIELD_UPDATE_BATCH_SIZE - 1; index++) {
+            final QueuedIntent queued = waitForQueuedIntent(index, FIELD_UPDATE_BATCH_WINDOW_MS);
+            if (queued == null || queued.mIntent == null) {
+                return;
+            }
+            final String action = queued.mIntent.getAction();
+            if (!ContactFieldUpdateBatch.isBatchable(action)) {
+                return;
+            }
+            final long start = System.nanoTime();
+            mFieldUpdates.add(queued.mIntent);
+            queued.mAbsorbed = true;
+            sStats.recordAction(action, start);
+        }
+    }
+
+    /**
+     * Waits until the queue has an intent at the given position, for at most the given time.
+     *
+     * @return the intent, or null if there is none
+     */
+    private QueuedIntent waitForQueuedIntent(int index, long timeoutMs) {
+        final long deadline = SystemClock.elapsedRealtime() + timeoutMs;
+        synchronized (mQueuedIntents) {
+            long remaining = timeoutMs;
+            while (mQueuedIntents.size() <= index && remaining > 0) {
+                try {
+                    mQueuedIntents.wait(remaining);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                remaining = deadline - SystemClock.elapsedRealtime();
+            }
+            return mQueuedIntents.size() > index ? mQueuedIntents.get(index) : null;
+        }
+    }
+
+    /**
+     * Writes the pending single field updates in one batch and delivers their callbacks.
+     */
+    private void applyFieldUpdates() {
+        if (mFieldUpdates.isEmpty()) {
+            return;
+        }
+        final long start = System.nanoTime();
+        final ArrayList<ContentProviderOperation> operations = mFieldUpdates.buildOperations();
+        boolean succeeded = true;
+        if (!operations.isEmpty()) {
+            if (DEBUG) Log.d(TAG, "Applying " + operations.size() + " field updates");
+            try {
+                getContentResolver().applyBatch(ContactsContract.AUTHORITY, operations);
+            } catch (RemoteException e) {
+                Log.e(TAG, "Failed to apply field updates", e);
+                succeeded = false;
+            } catch (OperationApplicationException e) {
+                Log.e(TAG, "Failed to apply field updates", e);
+                succeeded = false;
+            }
+        }
+        if (mFieldUpdates.affectsCallerInfo()) {
             CallerInfoCacheUtils.sendUpdateCallerInfoCacheIntent(this);
         }
+        for (Intent callbackIntent : mFieldUpdates.getCallbackIntents()) {
+            callbackIntent.putExtra(EXTRA_SAVE_SUCCEEDED, succeeded);
+            deliverCallback(callbackIntent);
+        }
+        mFieldUpdates.clear();
+        sStats.recordPhase(PHASE_FIELD_UPDATES, start);
     }
 
     /**
@@ -307,7 +608,7 @@ public class ContactSaveService extends IntentService {
      * Creates an intent that can be sent to this service to create a new raw contact
      * using data presented as a set of ContentValues.
      * This variant is used when multiple contacts' photos may be updated, as in the
-     * Contact Editor.
+     * Contact Editor. The intent is started with {@link #startSaveContact}.
      * @param updatedPhotos maps each raw-contact's ID to the file-path of the new photo.
      */
     public static Intent createSaveContactIntent(Context context, RawContactDeltaList state,
@@ -317,7 +618,7 @@ public class ContactSaveService extends IntentService {
         Intent serviceIntent = new Intent(
                 context, ContactSaveService.class);
         serviceIntent.setAction(ContactSaveService.ACTION_SAVE_CONTACT);
-        serviceIntent.putExtra(EXTRA_CONTACT_STATE, (Parcelable) state);
+        serviceIntent.putExtra(EXTRA_CONTACT_STATE, new CompactRawContactDeltaList(context, state));
         serviceIntent.putExtra(EXTRA_SAVE_IS_PROFILE, isProfile);
         if (updatedPhotos != null) {
             serviceIntent.putExtra(EXTRA_UPDATED_PHOTOS, (Parcelable) updatedPhotos);
@@ -335,14 +636,52 @@ public class ContactSaveService extends IntentService {
         return serviceIntent;
     }
 
+    /**
+     * Starts the service with an intent from {@link #createSaveContactIntent}, once the large
+     * blobs of its state were written to files on a background thread. Saves are started in
+     * the order this is called.
+     */
+    public static void startSaveContact(Context context, final Intent intent) {
+        final Context appContext = context.getApplicationContext();
+        final CompactRawContactDeltaList compactState =
+                intent.getParcelableExtra(EXTRA_CONTACT_STATE);
+        new AsyncTask<Void, Void, Void>() {
+            @Override
+            protected Void doInBackground(Void... params) {
+                compactState.writeBlobs();
+                return null;
+            }
+
+            @Override
+            protected void onPostExecute(Void result) {
+                appContext.startService(intent);
+            }
+        }.execute();
+    }
+
     private void saveContact(Intent intent) {
-        RawContactDeltaList state = intent.getParcelableExtra(EXTRA_CONTACT_STATE);
+        final CompactRawContactDeltaList compactState =
+                intent.getParcelableExtra(EXTRA_CONTACT_STATE);
+        RawContactDeltaList state = compactState.getState();
+        if (state == null) {
+            // Saving without a lost blob would clear or keep its column, dropping the edit
+            Log.e(TAG, "Contact state is incomplete, not saving");
+            compactState.release();
+            final Intent callbackIntent = intent.getParcelableExtra(EXTRA_CALLBACK_INTENT);
+            if (callbackIntent != null) {
+                deliverCallback(callbackIntent);
+            }
+            return;
+        }
         boolean isProfile = intent.getBooleanExtra(EXTRA_SAVE_IS_PROFILE, false);
         Bundle updatedPhotos = intent.getParcelableExtra(EXTRA_UPDATED_PHOTOS);
+        sStats.increment(COUNTER_SAVES);
 
         // Trim any empty fields, and RawContacts, before persisting
+        long phaseStart = System.nanoTime();
         final AccountTypeManager accountTypes = AccountTypeManager.getInstance(this);
         RawContactModifier.trimEmpty(state, accountTypes);
+        phaseStart = sStats.recordPhase(PHASE_TRIM_EMPTY, phaseStart);
 
         Uri lookupUri = null;
 
@@ -357,7 +696,9 @@ public class ContactSaveService extends IntentService {
         while (tries++ < PERSIST_TRIES) {
             try {
                 // Build operations and try applying
+                phaseStart = System.nanoTime();
                 final ArrayList<ContentProviderOperation> diff = state.buildDiff();
+                phaseStart = sStats.recordPhase(PHASE_BUILD_DIFF, phaseStart);
                 if (DEBUG) {
                     Log.v(TAG, "Content Provider Operations:");
                     for (ContentProviderOperation operation : diff) {
@@ -368,6 +709,7 @@ public class ContactSaveService extends IntentService {
                 ContentProviderResult[] results = null;
                 if (!diff.isEmpty()) {
                     results = resolver.applyBatch(ContactsContract.AUTHORITY, diff);
+                    phaseStart = sStats.recordPhase(PHASE_APPLY_BATCH, phaseStart);
                 }
 
                 final long rawContactId = getRawContactId(state, diff, results);
@@ -398,6 +740,7 @@ public class ContactSaveService extends IntentService {
                                     rawContactId);
                     lookupUri = RawContacts.getContactLookupUri(resolver, rawContactUri);
                 }
+                sStats.recordPhase(PHASE_LOOKUP_URI, phaseStart);
                 Log.v(TAG, "Saved contact. New URI: " + lookupUri);
 
                 // We can change this back to false later, if we fail to save the contact photo.
@@ -412,44 +755,31 @@ public class ContactSaveService extends IntentService {
             } catch (OperationApplicationException e) {
                 // Version consistency failed, re-parent change and try again
                 Log.w(TAG, "Version consistency failed, re-parenting: " + e.toString());
-                final StringBuilder sb = new StringBuilder(RawContacts._ID + " IN(");
-                boolean first = true;
-                final int count = state.size();
-                for (int i = 0; i < count; i++) {
-                    Long rawContactId = state.getRawContactId(i);
-                    if (rawContactId != null && rawContactId != -1) {
-                        if (!first) {
-                            sb.append(',');
-                        }
-                        sb.append(rawContactId);
-                        first = false;
-                    }
+                sStats.increment(COUNTER_CONFLICTS);
+                sStats.increment(
+                        tries < PERSIST_TRIES ? COUNTER_RETRIES : COUNTER_CONFLICT_FAILURES);
+                if (tries == PERSIST_TRIES) {
+                    break;
                 }
-                sb.append(")");
 
-                if (first) {
-                    throw new IllegalStateException("Version consistency failed for a new contact");
+                phaseStart = System.nanoTime();
+                state = reparentConflictingRawContacts(resolver, state, isProfile);
+                sStats.recordPhase(PHASE_REPARENT, phaseStart);
+                if (state == null) {
+                    Log.w(TAG, "All edited raw contacts were deleted");
+                    break;
                 }
 
-                final RawContactDeltaList newState = RawContactDeltaList.fromQuery(
-                        isProfile
-                                ? RawContactsEntity.PROFILE_CONTENT_URI
-                                : RawContactsEntity.CONTENT_URI,
-                        resolver, sb.toString(), null, null);
-                state = RawContactDeltaList.mergeAfter(newState, state);
-
-                // Update the new state to use profile URIs if appropriate.
-                if (isProfile) {
-                    for (RawContactDelta delta : state) {
-                        delta.setProfileQueryUri();
-                    }
-                }
+                // Back off, as the conflict is likely caused by a sync that is still running
+                final long maxDelay = CONFLICT_RETRY_BASE_DELAY_MS << (tries - 1);
+                SystemClock.sleep(1 + (long) (Math.random() * maxDelay));
             }
         }
 
         // Now save any updated photos.  We do this at the end to ensure that
         // the ContactProvider already knows about newly-created contacts.
         if (updatedPhotos != null) {
+            final ArrayList<PhotoSave> photoSaves = Lists.newArrayList();
             for (String key : updatedPhotos.keySet()) {
                 Uri photoUri = updatedPhotos.getParcelable(key);
                 long rawContactId = Long.parseLong(key);
@@ -464,10 +794,16 @@ public class ContactSaveService extends IntentService {
                     }
                 }
 
-                if (!saveUpdatedPhoto(rawContactId, photoUri)) succeeded = false;
+                photoSaves.add(new PhotoSave(rawContactId, photoUri));
             }
+            phaseStart = System.nanoTime();
+            if (!saveUpdatedPhotos(photoSaves)) succeeded = false;
+            sStats.recordPhase(PHASE_PHOTOS, phaseStart);
         }
 
+        // Done with the state, unless the process dies before this and the intent is redelivered
+        compactState.release();
+
         Intent callbackIntent = intent.getParcelableExtra(EXTRA_CALLBACK_INTENT);
         if (callbackIntent != null) {
             if (succeeded) {
@@ -481,6 +817,169 @@ public class ContactSaveService extends IntentService {
         }
     }
 
+    /**
+     * Reloads the raw contacts of the state whose version changed since they were loaded, and
+     * re-parents the edits of the state onto them. The version asserts are the only operations
+     * of a save that are expected to fail, and they don't tell which raw contact changed, so
+     * the current versions are compared first. Only if none changed, all raw contacts are
+     * reloaded. Raw contacts that were deleted in the meantime are dropped from the state, as
+     * their edits can't be applied anymore.
+     *
+     * @return the state to retry with, or null if none of its raw contacts exist anymore
+     */
+    private RawContactDeltaList reparentConflictingRawContacts(ContentResolver resolver,
+            RawContactDeltaList state, boolean isProfile) {
+        // Versions the edits are based on, by raw contact
+        final HashMap<Long, Long> versions = new HashMap<Long, Long>();
+        for (RawContactDelta delta : state) {
+            if (delta.isContactInsert()) continue;
+            final Long rawContactId = delta.getValues().getId();
+            final Long version = delta.getValues().getAsLong(RawContacts.VERSION);
+            if (rawContactId != null && rawContactId != -1 && version != null) {
+                versions.put(rawContactId, version);
+            }
+        }
+        if (versions.isEmpty()) {
+            throw new IllegalStateException("Version consistency failed for a new contact");
+        }
+
+        final ArrayList<Long> staleRawContactIds = Lists.newArrayList();
+        final Cursor cursor = resolver.query(
+                isProfile ? Profile.CONTENT_RAW_CONTACTS_URI : RawContacts.CONTENT_URI,
+                new String[] { RawContacts._ID, RawContacts.VERSION },
+                RawContacts.DELETED + "=0 AND " + buildRawContactIdSelection(versions.keySet()),
+                null, null);
+        if (cursor == null) {
+            Log.w(TAG, "Unable to query the raw contact versions, reloading all of them");
+            staleRawContactIds.addAll(versions.keySet());
+        } else {
+            final HashSet<Long> deletedRawContactIds = Sets.newHashSet(versions.keySet());
+            try {
+                while (cursor.moveToNext()) {
+                    final long rawContactId = cursor.getLong(0);
+                    deletedRawContactIds.remove(rawContactId);
+                    if (versions.get(rawContactId) != cursor.getLong(1)) {
+                        staleRawContactIds.add(rawContactId);
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+            if (!deletedRawContactIds.isEmpty()) {
+                Log.w(TAG, "Dropping edits of deleted raw contacts " + deletedRawContactIds);
+                for (int i = state.size() - 1; i >= 0; i--) {
+                    final RawContactDelta delta = state.get(i);
+                    if (!delta.isContactInsert()
+                            && deletedRawContactIds.contains(delta.getValues().getId())) {
+                        state.remove(i);
+                    }
+                }
+                if (state.isEmpty()) {
+                    return null;
+                }
+            } else if (staleRawContactIds.isEmpty()) {
+                Log.w(TAG, "No changed raw contact found, reloading all of them");
+                staleRawContactIds.addAll(versions.keySet());
+            }
+        }
+        if (staleRawContactIds.isEmpty()) {
+            return state;
+        }
+        if (DEBUG) Log.v(TAG, "Reloading changed raw contacts " + staleRawContactIds);
+
+        final RawContactDeltaList newState = RawContactDeltaList.fromQuery(
+                isProfile
+                        ? RawContactsEntity.PROFILE_CONTENT_URI
+                        : RawContactsEntity.CONTENT_URI,
+                resolver, buildRawContactIdSelection(staleRawContactIds), null, null);
+
+        // Replace the stale raw contacts in place, which keeps the order of the state and the
+        // requested joins and splits
+        final HashMap<Long, Integer> indexById = new HashMap<Long, Integer>();
+        for (int i = 0; i < state.size(); i++) {
+            final RawContactDelta delta = state.get(i);
+            final Long rawContactId = delta.getValues().getId();
+            if (!delta.isContactInsert() && !indexById.containsKey(rawContactId)) {
+                indexById.put(rawContactId, i);
+            }
+        }
+        for (RawContactDelta fresh : newState) {
+            final Integer index = indexById.get(fresh.getValues().getId());
+            if (index == null) {
+                continue;
+            }
+            final RawContactDelta merged = RawContactDelta.mergeAfter(fresh, state.get(index));
+            // Update the new state to use profile URIs if appropriate.
+            if (isProfile) {
+                merged.setProfileQueryUri();
+            }
+            state.set(index, merged);
+        }
+        return state;
+    }
+
+    private static String buildRawContactIdSelection(Iterable<Long> rawContactIds) {
+        final StringBuilder sb = new StringBuilder(RawContacts._ID + " IN(");
+        boolean first = true;
+        for (Long rawContactId : rawContactIds) {
+            if (!first) {
+                sb.append(',');
+            }
+            sb.append(rawContactId);
+            first = false;
+        }
+        sb.append(")");
+        return sb.toString();
+    }
+
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        sStats.dump(writer);
+    }
+
+    /** Writes an updated photo of a raw contact, see {@link #saveUpdatedPhotos}. */
+    private final class PhotoSave implements Callable<Boolean> {
+        private final long mRawContactId;
+        private final Uri mPhotoUri;
+
+        public PhotoSave(long rawContactId, Uri photoUri) {
+            mRawContactId = rawContactId;
+            mPhotoUri = photoUri;
+        }
+
+        @Override
+        public Boolean call() {
+            return saveUpdatedPhoto(mRawContactId, mPhotoUri);
+        }
+    }
+
+    /**
+     * Saves the updated photos on {@link #sPhotoSaveExecutor}, with the first one written on
+     * the calling thread. Returns once all photos are written, true if all of them succeeded.
+     */
+    private boolean saveUpdatedPhotos(ArrayList<PhotoSave> photoSaves) {
+        if (photoSaves.isEmpty()) {
+            return true;
+        }
+        final ArrayList<Future<Boolean>> futures = Lists.newArrayList();
+        for (int i = 1; i < photoSaves.size(); i++) {
+            futures.add(sPhotoSaveExecutor.submit(photoSaves.get(i)));
+        }
+        boolean succeeded = photoSaves.get(0).call();
+        for (Future<Boolean> future : futures) {
+            try {
+                if (!future.get()) succeeded = false;
+            } catch (InterruptedException e) {
+                Log.e(TAG, "Interrupted while saving photos", e);
+                succeeded = false;
+            } catch (ExecutionException e) {
+                Log.e(TAG, "Problem saving photo", e.getCause());
+                succeeded = false;
+            }
+        }
+        return succeeded;
+    }
+
     /**
      * Save updated photo for the specified raw-contact.
      * @return true for success, false for failure
@@ -583,7 +1082,9 @@ public class ContactSaveService extends IntentService {
         }
 
         // Add new group members
-        addMembersToGroup(resolver, rawContactsToAdd, ContentUris.parseId(groupUri));
+        final ArrayList<Long> failedRawContactIds = Lists.newArrayList();
+        addMembersToGroup(resolver, rawContactsToAdd, ContentUris.parseId(groupUri),
+                failedRawContactIds);
 
         // TODO: Move this into the contact editor where it belongs. This needs to be integrated
         // with the way other intent extras that are passed to the {@link ContactEditorActivity}.
@@ -595,6 +1096,7 @@ public class ContactSaveService extends IntentService {
         callbackIntent.setData(groupUri);
         // TODO: This can be taken out when the above TODO is addressed
         callbackIntent.putExtra(ContactsContract.Intents.Insert.DATA, Lists.newArrayList(values));
+        putFailedRawContactIds(callbackIntent, failedRawContactIds);
         deliverCallback(callbackIntent);
     }
 
@@ -712,79 +1214,174 @@ public class ContactSaveService extends IntentService {
         }
 
         // Add and remove members if necessary
-        addMembersToGroup(resolver, rawContactsToAdd, groupId);
-        removeMembersFromGroup(resolver, rawContactsToRemove, groupId);
+        final ArrayList<Long> failedRawContactIds = Lists.newArrayList();
+        addMembersToGroup(resolver, rawContactsToAdd, groupId, failedRawContactIds);
+        removeMembersFromGroup(resolver, rawContactsToRemove, groupId, failedRawContactIds);
 
         Intent callbackIntent = intent.getParcelableExtra(EXTRA_CALLBACK_INTENT);
         callbackIntent.setData(groupUri);
+        putFailedRawContactIds(callbackIntent, failedRawContactIds);
         deliverCallback(callbackIntent);
     }
 
+    private static void putFailedRawContactIds(Intent callbackIntent,
+            ArrayList<Long> failedRawContactIds) {
+        if (failedRawContactIds.isEmpty()) {
+            return;
+        }
+        final long[] ids = new long[failedRawContactIds.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = failedRawContactIds.get(i);
+        }
+        callbackIntent.putExtra(EXTRA_FAILED_RAW_CONTACT_IDS, ids);
+    }
+
+    /**
+     * Returns a selection of the group membership rows of the given group and raw contacts.
+     * The arguments of the selection are added to {@code selectionArgs}.
+     */
+    private static String buildMembershipSelection(long[] rawContactIds, int start, int end,
+            long groupId, ArrayList<String> selectionArgs) {
+        final StringBuilder selection = new StringBuilder();
+        selection.append(Data.MIMETYPE + "=? AND " + GroupMembership.GROUP_ROW_ID + "=? AND "
+                + Data.RAW_CONTACT_ID + " IN (");
+        selectionArgs.add(GroupMembership.CONTENT_ITEM_TYPE);
+        selectionArgs.add(String.valueOf(groupId));
+        for (int i = start; i < end; i++) {
+            if (i > start) {
+                selection.append(',');
+            }
+            selection.append('?');
+            selectionArgs.add(String.valueOf(rawContactIds[i]));
+        }
+        selection.append(')');
+        return selection.toString();
+    }
+
+    /**
+     * Adds the raw contacts to the group, in batches of {@link #MEMBERSHIP_CHUNK_SIZE}. Each
+     * insert is preceded by an assert that the raw contact isn't a member yet, so that a
+     * membership added by a sync in the meantime is not duplicated. If a batch fails, its raw
+     * contacts are added one by one: those whose assert fails are members already, and only the
+     * ones that can't be added end up in {@code failedRawContactIds}.
+     */
     private static void addMembersToGroup(ContentResolver resolver, long[] rawContactsToAdd,
-            long groupId) {
+            long groupId, ArrayList<Long> failedRawContactIds) {
         if (rawContactsToAdd == null) {
             return;
         }
-        for (long rawContactId : rawContactsToAdd) {
-            try {
-                final ArrayList<ContentProviderOperation> rawContactOperations =
-                        new ArrayList<ContentProviderOperation>();
-
-                // Build an assert operation to ensure the contact is not already in the group
-                final ContentProviderOperation.Builder assertBuilder = ContentProviderOperation
-                        .newAssertQuery(Data.CONTENT_URI);
-                assertBuilder.withSelection(Data.RAW_CONTACT_ID + "=? AND " +
-                        Data.MIMETYPE + "=? AND " + GroupMembership.GROUP_ROW_ID + "=?",
-                        new String[] { String.valueOf(rawContactId),
-                        GroupMembership.CONTENT_ITEM_TYPE, String.valueOf(groupId)});
-                assertBuilder.withExpectedCount(0);
-                rawContactOperations.add(assertBuilder.build());
-
-                // Build an insert operation to add the contact to the group
-                final ContentProviderOperation.Builder insertBuilder = ContentProviderOperation
-                        .newInsert(Data.CONTENT_URI);
-                insertBuilder.withValue(Data.RAW_CONTACT_ID, rawContactId);
-                insertBuilder.withValue(Data.MIMETYPE, GroupMembership.CONTENT_ITEM_TYPE);
-                insertBuilder.withValue(GroupMembership.GROUP_ROW_ID, groupId);
-                rawContactOperations.add(insertBuilder.build());
-
-                if (DEBUG) {
-                    for (ContentProviderOperation operation : rawContactOperations) {
-                        Log.v(TAG, operation.toString());
-                    }
+        for (int start = 0; start < rawContactsToAdd.length; start += MEMBERSHIP_CHUNK_SIZE) {
+            final int end = Math.min(rawContactsToAdd.length, start + MEMBERSHIP_CHUNK_SIZE);
+
+            final HashSet<Long> added = Sets.newHashSet();
+            final ArrayList<Long> rawContactIds = Lists.newArrayList();
+            final ArrayList<ContentProviderOperation> operations = Lists.newArrayList();
+            for (int i = start; i < end; i++) {
+                final long rawContactId = rawContactsToAdd[i];
+                if (!added.add(rawContactId)) {
+                    // Listed twice
+                    continue;
                 }
-
-                // Apply batch
-                if (!rawContactOperations.isEmpty()) {
-                    resolver.applyBatch(ContactsContract.AUTHORITY, rawContactOperations);
+                rawContactIds.add(rawContactId);
+                addAddMemberOperations(operations, rawContactId, groupId);
+            }
+            if (DEBUG) {
+                for (ContentProviderOperation operation : operations) {
+                    Log.v(TAG, operation.toString());
                 }
+            }
+
+            try {
+                resolver.applyBatch(ContactsContract.AUTHORITY, operations);
+                continue;
             } catch (RemoteException e) {
-                // Something went wrong, bail without success
-                Log.e(TAG, "Problem persisting user edits for raw contact ID " +
-                        String.valueOf(rawContactId), e);
+                Log.w(TAG, "Problem adding " + operations.size() + " members to group "
+                        + groupId + ", adding them one by one", e);
             } catch (OperationApplicationException e) {
-                // The assert could have failed because the contact is already in the group,
-                // just continue to the next contact
-                Log.w(TAG, "Assert failed in adding raw contact ID " +
-                        String.valueOf(rawContactId) + ". Already exists in group " +
-                        String.valueOf(groupId), e);
+                Log.w(TAG, "Problem adding " + rawContactIds.size() + " members to group "
+                        + groupId + ", adding them one by one", e);
+            }
+
+            // Find out which raw contacts failed
+            for (long rawContactId : rawContactIds) {
+                final ArrayList<ContentProviderOperation> memberOperations =
+                        Lists.newArrayList();
+                addAddMemberOperations(memberOperations, rawContactId, groupId);
+                try {
+                    resolver.applyBatch(ContactsContract.AUTHORITY, memberOperations);
+                } catch (RemoteException e) {
+                    Log.e(TAG, "Problem adding raw contact ID " + rawContactId + " to group "
+                            + groupId, e);
+                    failedRawContactIds.add(rawContactId);
+                } catch (OperationApplicationException e) {
+                    // The assert failed because the contact is already in the group
+                    Log.w(TAG, "Assert failed in adding raw contact ID " + rawContactId
+                            + ". Already exists in group " + groupId, e);
+                }
             }
         }
     }
 
+    /**
+     * Adds an assert that the raw contact is not in the group, and the insert of its
+     * membership.
+     */
+    private static void addAddMemberOperations(ArrayList<ContentProviderOperation> operations,
+            long rawContactId, long groupId) {
+        operations.add(ContentProviderOperation.newAssertQuery(Data.CONTENT_URI)
+                .withSelection(Data.RAW_CONTACT_ID + "=? AND " + Data.MIMETYPE + "=? AND "
+                        + GroupMembership.GROUP_ROW_ID + "=?",
+                        new String[] { String.valueOf(rawContactId),
+                                GroupMembership.CONTENT_ITEM_TYPE, String.valueOf(groupId) })
+                .withExpectedCount(0)
+                .build());
+        operations.add(ContentProviderOperation.newInsert(Data.CONTENT_URI)
+                .withValue(Data.RAW_CONTACT_ID, rawContactId)
+                .withValue(Data.MIMETYPE, GroupMembership.CONTENT_ITEM_TYPE)
+                .withValue(GroupMembership.GROUP_ROW_ID, groupId)
+                .withYieldAllowed(true)
+                .build());
+    }
+
+    /**
+     * Removes the raw contacts from the group, with one delete per
+     * {@link #MEMBERSHIP_CHUNK_SIZE} raw contacts. Raw contacts that aren't members are
+     * ignored. If a delete fails, its raw contacts are added to {@code failedRawContactIds}.
+     */
     private static void removeMembersFromGroup(ContentResolver resolver, long[] rawContactsToRemove,
-            long groupId) {
+            long groupId, ArrayList<Long> failedRawContactIds) {
         if (rawContactsToRemove == null) {
             return;
         }
-        for (long rawContactId : rawContactsToRemove) {
-            // Apply the delete operation on the data row for the given raw contact's
-            // membership in the given group. If no contact matches the provided selection, then
-            // nothing will be done. Just continue to the next contact.
-            resolver.delete(Data.CONTENT_URI, Data.RAW_CONTACT_ID + "=? AND " +
-                    Data.MIMETYPE + "=? AND " + GroupMembership.GROUP_ROW_ID + "=?",
-                    new String[] { String.valueOf(rawContactId),
-                    GroupMembership.CONTENT_ITEM_TYPE, String.valueOf(groupId)});
+        for (int start = 0; start < rawContactsToRemove.length;
+                start += MEMBERSHIP_CHUNK_SIZE) {
+            final int end = Math.min(rawContactsToRemove.length, start + MEMBERSHIP_CHUNK_SIZE);
+            final ArrayList<String> selectionArgs = Lists.newArrayList();
+            final String selection = buildMembershipSelection(rawContactsToRemove, start, end,
+                    groupId, selectionArgs);
+            final ArrayList<ContentProviderOperation> operations = Lists.newArrayList(
+                    ContentProviderOperation.newDelete(Data.CONTENT_URI)
+                            .withSelection(selection,
+                                    selectionArgs.toArray(new String[selectionArgs.size()]))
+                            .build());
+            try {
+                resolver.applyBatch(ContactsContract.AUTHORITY, operations);
+            } catch (RemoteException e) {
+                Log.e(TAG, "Problem removing " + (end - start) + " members from group "
+                        + groupId, e);
+                addFailedRawContactIds(rawContactsToRemove, start, end, failedRawContactIds);
+            } catch (OperationApplicationException e) {
+                Log.e(TAG, "Problem removing " + (end - start) + " members from group "
+                        + groupId, e);
+                addFailedRawContactIds(rawContactsToRemove, start, end, failedRawContactIds);
+            }
+        }
+    }
+
+    private static void addFailedRawContactIds(long[] rawContactIds, int start, int end,
+            ArrayList<Long> failedRawContactIds) {
+        for (int i = start; i < end; i++) {
+            failedRawContactIds.add(rawContactIds[i]);
         }
     }
 
@@ -800,19 +1397,6 @@ public class ContactSaveService extends IntentService {
         return serviceIntent;
     }
 
-    private void setStarred(Intent intent) {
-        Uri contactUri = intent.getParcelableExtra(EXTRA_CONTACT_URI);
-        boolean value = intent.getBooleanExtra(EXTRA_STARRED_FLAG, false);
-        if (contactUri == null) {
-            Log.e(TAG, "Invalid arguments for setStarred request");
-            return;
-        }
-
-        final ContentValues values = new ContentValues(1);
-        values.put(Contacts.STARRED, value);
-        getContentResolver().update(contactUri, values, null, null);
-    }
-
     /**
      * Creates an intent that can be sent to this service to set the redirect to voicemail.
      */
@@ -826,19 +1410,6 @@ public class ContactSaveService extends IntentService {
         return serviceIntent;
     }
 
-    private void setSendToVoicemail(Intent intent) {
-        Uri contactUri = intent.getParcelableExtra(EXTRA_CONTACT_URI);
-        boolean value = intent.getBooleanExtra(EXTRA_SEND_TO_VOICEMAIL_FLAG, false);
-        if (contactUri == null) {
-            Log.e(TAG, "Invalid arguments for setRedirectToVoicemail");
-            return;
-        }
-
-        final ContentValues values = new ContentValues(1);
-        values.put(Contacts.SEND_TO_VOICEMAIL, value);
-        getContentResolver().update(contactUri, values, null, null);
-    }
-
     /**
      * Creates an intent that can be sent to this service to save the contact's ringtone.
      */
@@ -852,18 +1423,6 @@ public class ContactSaveService extends IntentService {
         return serviceIntent;
     }
 
-    private void setRingtone(Intent intent) {
-        Uri contactUri = intent.getParcelableExtra(EXTRA_CONTACT_URI);
-        String value = intent.getStringExtra(EXTRA_CUSTOM_RINGTONE);
-        if (contactUri == null) {
-            Log.e(TAG, "Invalid arguments for setRingtone");
-            return;
-        }
-        ContentValues values = new ContentValues(1);
-        values.put(Contacts.CUSTOM_RINGTONE, value);
-        getContentResolver().update(contactUri, values, null, null);
-    }
-
     /**
      * Creates an intent that sets the selected data item as super primary (default)
      */
@@ -874,16 +1433,6 @@ public class ContactSaveService extends IntentService {
         return serviceIntent;
     }
 
-    private void setSuperPrimary(Intent intent) {
-        long dataId = intent.getLongExtra(EXTRA_DATA_ID, -1);
-        if (dataId == -1) {
-            Log.e(TAG, "Invalid arguments for setSuperPrimary request");
-            return;
-        }
-
-        ContactUpdateUtils.setSuperPrimary(this, dataId);
-    }
-
     /**
      * Creates an intent that clears the primary flag of all data items that belong to the same
      * raw_contact as the given data item. Will only clear, if the data item was primary before
@@ -896,22 +1445,6 @@ public class ContactSaveService extends IntentService {
         return serviceIntent;
     }
 
-    private void clearPrimary(Intent intent) {
-        long dataId = intent.getLongExtra(EXTRA_DATA_ID, -1);
-        if (dataId == -1) {
-            Log.e(TAG, "Invalid arguments for clearPrimary request");
-            return;
-        }
-
-        // Update the primary values in the data record.
-        ContentValues values = new ContentValues(1);
-        values.put(Data.IS_SUPER_PRIMARY, 0);
-        values.put(Data.IS_PRIMARY, 0);
-
-        getContentResolver().update(ContentUris.withAppendedId(Data.CONTENT_URI, dataId),
-                values, null, null);
-    }
-
     /**
      * Creates an intent that can be sent to this service to delete a contact.
      */
@@ -932,6 +1465,176 @@ public class ContactSaveService extends IntentService {
         getContentResolver().delete(contactUri, null, null);
     }
 
+    /**
+     * Creates an intent that can be sent to this service to delete several contacts.
+     * The progress is reported to the registered {@link BulkDeleteListener}s. The bulk delete
+     * is pending from now on, see {@link #isBulkDeletePending}, so the intent has to be sent.
+     * The contacts are deleted as they are: callers have to check for raw contacts from
+     * read-only accounts and confirm their deletion, like {@link
+     * com.android.contacts.interactions.MultiContactDeletionInteraction} does.
+     */
+    public static Intent createDeleteContactsIntent(Context context, long[] contactIds) {
+        Intent serviceIntent = createDeleteContactsIntent(context);
+        serviceIntent.putExtra(ContactSaveService.EXTRA_CONTACT_IDS, contactIds);
+        return serviceIntent;
+    }
+
+    /**
+     * Creates an intent that can be sent to this service to delete several contacts, given by
+     * their lookup URIs, like {@link #createDeleteContactsIntent(Context, long[])} does.
+     */
+    public static Intent createDeleteContactsIntent(Context context,
+            ArrayList<Uri> contactLookupUris) {
+        Intent serviceIntent = createDeleteContactsIntent(context);
+        serviceIntent.putParcelableArrayListExtra(ContactSaveService.EXTRA_CONTACT_URIS,
+                contactLookupUris);
+        return serviceIntent;
+    }
+
+    private static Intent createDeleteContactsIntent(Context context) {
+        final int requestId = sNextBulkDeleteRequestId.getAndIncrement();
+        sPendingBulkDeleteRequests.add(requestId);
+        Intent serviceIntent = new Intent(context, ContactSaveService.class);
+        serviceIntent.setAction(ContactSaveService.ACTION_DELETE_CONTACTS);
+        serviceIntent.putExtra(ContactSaveService.EXTRA_BULK_DELETE_REQUEST_ID, requestId);
+        return serviceIntent;
+    }
+
+    private void deleteContacts(Intent intent) {
+        final ContentResolver resolver = getContentResolver();
+        final LinkedHashSet<Long> contactIds = Sets.newLinkedHashSet();
+        final long[] ids = intent.getLongArrayExtra(EXTRA_CONTACT_IDS);
+        if (ids != null) {
+            for (long contactId : ids) {
+                contactIds.add(contactId);
+            }
+        }
+        final ArrayList<Uri> lookupUris = intent.getParcelableArrayListExtra(EXTRA_CONTACT_URIS);
+        if (lookupUris != null) {
+            resolveLookupUris(resolver, lookupUris, contactIds);
+        }
+
+        final int requestId = getBulkDeleteRequestId(intent);
+        final int totalCount = contactIds.size();
+        int processedCount = 0;
+        int deletedCount = 0;
+        for (ArrayList<ContentProviderOperation> operations
+                : buildDeleteContactsBatches(contactIds)) {
+            try {
+                resolver.applyBatch(ContactsContract.AUTHORITY, operations);
+                deletedCount += operations.size();
+            } catch (RemoteException e) {
+                Log.e(TAG, "Problem deleting " + operations.size() + " contacts", e);
+            } catch (OperationApplicationException e) {
+                Log.e(TAG, "Problem deleting " + operations.size() + " contacts", e);
+            }
+            processedCount += operations.size();
+            notifyBulkDeleteProgress(requestId, processedCount, totalCount, false);
+        }
+        notifyBulkDeleteProgress(requestId, deletedCount, totalCount, true);
+    }
+
+    /**
+     * Adds the ids of the contacts of the given lookup URIs to {@code contactIds}. The lookup
+     * keys are matched with one query per {@link #LOOKUP_CHUNK_SIZE} URIs. Only the URIs whose
+     * key changed since, e.g. because their contact was joined, are looked up one by one.
+     */
+    @VisibleForTesting
+    /* package */ static void resolveLookupUris(ContentResolver resolver,
+            ArrayList<Uri> lookupUris, Set<Long> contactIds) {
+        final HashMap<String, Long> lookupKeyIds = new HashMap<String, Long>();
+        final ArrayList<String> lookupKeys = Lists.newArrayList();
+        for (Uri lookupUri : lookupUris) {
+            final String lookupKey = getLookupKey(lookupUri);
+            if (lookupKey != null) lookupKeys.add(lookupKey);
+        }
+        for (int start = 0; start < lookupKeys.size(); start += LOOKUP_CHUNK_SIZE) {
+            final int end = Math.min(start + LOOKUP_CHUNK_SIZE, lookupKeys.size());
+            final StringBuilder selection = new StringBuilder(Contacts.LOOKUP_KEY + " IN (");
+            for (int i = start; i < end; i++) {
+                if (i > start) {
+                    selection.append(',');
+                }
+                selection.append('?');
+            }
+            selection.append(')');
+            final String[] selectionArgs =
+                    lookupKeys.subList(start, end).toArray(new String[end - start]);
+            final Cursor cursor = resolver.query(Contacts.CONTENT_URI,
+                    new String[] { Contacts._ID, Contacts.LOOKUP_KEY },
+                    selection.toString(), selectionArgs, null);
+            if (cursor == null) continue;
+            try {
+                while (cursor.moveToNext()) {
+                    lookupKeyIds.put(cursor.getString(1), cursor.getLong(0));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        for (Uri lookupUri : lookupUris) {
+            final Long contactId = lookupKeyIds.get(getLookupKey(lookupUri));
+            if (contactId != null) {
+                contactIds.add(contactId);
+                continue;
+            }
+            final Uri contactUri = Contacts.lookupContact(resolver, lookupUri);
+            if (contactUri == null) {
+                Log.w(TAG, "Contact to delete not found: " + lookupUri);
+            } else {
+                contactIds.add(ContentUris.parseId(contactUri));
+            }
+        }
+    }
+
+    /**
+     * Returns the lookup key of the given contact lookup URI, or null if it is none.
+     */
+    private static String getLookupKey(Uri lookupUri) {
+        if (!lookupUri.toString().startsWith(Contacts.CONTENT_LOOKUP_URI.toString())) return null;
+        final List<String> pathSegments = lookupUri.getPathSegments();
+        return pathSegments.size() >= 3 ? pathSegments.get(2) : null;
+    }
+
+    /**
+     * Returns the deletes of the given contacts, in transactions of at most
+     * {@link #DELETE_CHUNK_SIZE} contacts.
+     */
+    @VisibleForTesting
+    /* package */ static ArrayList<ArrayList<ContentProviderOperation>>
+            buildDeleteContactsBatches(Collection<Long> contactIds) {
+        final ArrayList<ArrayList<ContentProviderOperation>> batches = Lists.newArrayList();
+        ArrayList<ContentProviderOperation> operations = null;
+        for (long contactId : contactIds) {
+            if (operations == null || operations.size() == DELETE_CHUNK_SIZE) {
+                operations = Lists.newArrayList();
+                batches.add(operations);
+            }
+            operations.add(ContentProviderOperation.newDelete(
+                    ContentUris.withAppendedId(Contacts.CONTENT_URI, contactId))
+                    .withYieldAllowed(true)
+                    .build());
+        }
+        return batches;
+    }
+
+    private void notifyBulkDeleteProgress(final int requestId, final int count,
+            final int totalCount, final boolean completed) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (BulkDeleteListener listener : sBulkDeleteListeners) {
+                    if (completed) {
+                        listener.onBulkDeleteCompleted(requestId, count, totalCount);
+                    } else {
+                        listener.onBulkDeleteProgress(requestId, count, totalCount);
+                    }
+                }
+            }
+        });
+    }
+
     /**
      * Creates an intent that can be sent to this service to join two contacts.
      */
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts;
+
+import android.os.Bundle;
+import android.os.SystemClock;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Maps;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Timings of the requests handled by the {@link ContactSaveService}: how long each action and
+ * each phase of a save takes, how long requests wait in the queue and how many are waiting.
+ * Events that have no duration, like save conflicts, are counted by name.
+ *
+ * Every metric keeps the most recent {@link #WINDOW_SIZE} samples, from which the percentiles
+ * are computed, and the total number of samples. Durations are kept in microseconds. All
+ * methods are thread safe.
+ */
+/* package */ final class ContactSaveServiceStats {
+    @VisibleForTesting
+    static final int WINDOW_SIZE = 200;
+
+    /** Keys of the values of a metric in {@link #toBundle}. */
+    public static final String KEY_COUNT = "count";
+    public static final String KEY_P50 = "p50";
+    public static final String KEY_P95 = "p95";
+    public static final String KEY_P99 = "p99";
+
+    /** Prefixes of the metric names in {@link #toBundle}. */
+    public static final String PREFIX_ACTION = "action.";
+    public static final String PREFIX_PHASE = "phase.";
+    public static final String PREFIX_COUNTER = "counter.";
+    public static final String METRIC_QUEUE_WAIT = "queueWait";
+    public static final String METRIC_QUEUE_DEPTH = "queueDepth";
+
+    /**
+     * The most recent samples of a metric.
+     */
+    @VisibleForTesting
+    static final class Histogram {
+        private final long[] mSamples = new long[WINDOW_SIZE];
+        private long mCount;
+
+        public void add(long value) {
+            mSamples[(int) (mCount % WINDOW_SIZE)] = value;
+            mCount++;
+        }
+
+        /** Returns the number of samples added, including the ones out of the window. */
+        public long getCount() {
+            return mCount;
+        }
+
+        /**
+         * Returns the given percentile of the samples in the window, or 0 if there are none.
+         */
+        public long getPercentile(int percentile) {
+            final int size = (int) Math.min(mCount, WINDOW_SIZE);
+            if (size == 0) {
+                return 0;
+            }
+            final long[] sorted = Arrays.copyOf(mSamples, size);
+            Arrays.sort(sorted);
+            final int rank = (int) Math.ceil(percentile / 100.0 * size);
+            return sorted[Math.max(0, rank - 1)];
+        }
+    }
+
+    private final long mStartTime = SystemClock.elapsedRealtime();
+    private final TreeMap<String, Histogram> mActions = Maps.newTreeMap();
+    private final TreeMap<String, Histogram> mPhases = Maps.newTreeMap();
+    private final Histogram mQueueWait = new Histogram();
+    private final Histogram mQueueDepth = new Histogram();
+    private final TreeMap<String, Long> mCounters = Maps.newTreeMap();
+
+    private static void add(TreeMap<String, Histogram> histograms, String name, long value) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = new Histogram();
+            histograms.put(name, histogram);
+        }
+        histogram.add(value);
+    }
+
+    private static long elapsedMicros(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1000;
+    }
+
+    /**
+     * Records the handling of an action that started at the given {@link System#nanoTime}.
+     */
+    public synchronized void recordAction(String action, long startNanos) {
+        add(mActions, String.valueOf(action), elapsedMicros(startNanos));
+    }
+
+    /**
+     * Records a phase that started at the given {@link System#nanoTime}, and returns the
+     * current time so that the next phase can start from it.
+     */
+    public long recordPhase(String phase, long startNanos) {
+        final long now = System.nanoTime();
+        synchronized (this) {
+            add(mPhases, phase, (now - startNanos) / 1000);
+        }
+        return now;
+    }
+
+    /**
+     * Records a request that waited for the given time before being handled, with the given
+     * number of requests still waiting behind it.
+     */
+    public synchronized void recordDequeue(long waitMillis, int queueDepth) {
+        mQueueWait.add(waitMillis * 1000);
+        mQueueDepth.add(queueDepth);
+    }
+
+    /**
+     * Adds one to the counter with the given name.
+     */
+    public synchronized void increment(String counter) {
+        final Long count = mCounters.get(counter);
+        mCounters.put(counter, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Returns the value of the counter with the given name.
+     */
+    public synchronized long getCount(String counter) {
+        final Long count = mCounters.get(counter);
+        return count == null ? 0 : count;
+    }
+
+    @VisibleForTesting
+    synchronized Histogram getAction(String action) {
+        return mActions.get(action);
+    }
+
+    @VisibleForTesting
+    synchronized Histogram getPhase(String phase) {
+        return mPhases.get(phase);
+    }
+
+    public synchronized void dump(PrintWriter writer) {
+        final long uptimeMillis = Math.max(1, SystemClock.elapsedRealtime() - mStartTime);
+        writer.println("Actions (ms):");
+        for (Map.Entry<String, Histogram> entry : mActions.entrySet()) {
+            dumpDuration(writer, entry.getKey(), entry.getValue());
+            writer.println(String.format(Locale.US, "      %.2f per minute",
+                    entry.getValue().getCount() * 60000.0 / uptimeMillis));
+        }
+        writer.println("Phases (ms):");
+        for (Map.Entry<String, Histogram> entry : mPhases.entrySet()) {
+            dumpDuration(writer, entry.getKey(), entry.getValue());
+        }
+        writer.println("Queue (ms):");
+        dumpDuration(writer, "wait", mQueueWait);
+        writer.println(String.format(Locale.US, "    depth: p50=%d p95=%d p99=%d",
+                mQueueDepth.getPercentile(50), mQueueDepth.getPercentile(95),
+                mQueueDepth.getPercentile(99)));
+        writer.println("Counters:");
+        for (Map.Entry<String, Long> entry : mCounters.entrySet()) {
+            writer.println("    " + entry.getKey() + ": " + entry.getValue());
+        }
+    }
+
+    private static void dumpDuration(PrintWriter writer, String name, Histogram histogram) {
+        writer.println(String.format(Locale.US, "    %s: count=%d p50=%.1f p95=%.1f p99=%.1f",
+                name, histogram.getCount(), histogram.getPercentile(50) / 1000.0,
+                histogram.getPercentile(95) / 1000.0, histogram.getPercentile(99) / 1000.0));
+    }
+
+    /**
+     * Returns one bundle per metric, with the count and percentiles under {@link #KEY_COUNT}
+     * and the other keys, and the value of each counter as a long under {@link #PREFIX_COUNTER}
+     * and its name. Durations are in microseconds.
+     */
+    public synchronized Bundle toBundle() {
+        final Bundle bundle = new Bundle();
+        for (Map.Entry<String, Histogram> entry : mActions.entrySet()) {
+            bundle.putBundle(PREFIX_ACTION + entry.getKey(), toBundle(entry.getValue()));
+        }
+        for (Map.Entry<String, Histogram> entry : mPhases.entrySet()) {
+            bundle.putBundle(PREFIX_PHASE + entry.getKey(), toBundle(entry.getValue()));
+        }
+        bundle.putBundle(METRIC_QUEUE_WAIT, toBundle(mQueueWait));
+        bundle.putBundle(METRIC_QUEUE_DEPTH, toBundle(mQueueDepth));
+        for (Map.Entry<String, Long> entry : mCounters.entrySet()) {
+            bundle.putLong(PREFIX_COUNTER + entry.getKey(), entry.getValue());
+        }
+        return bundle;
+    }
+
+    private static Bundle toBundle(Histogram histogram) {
+        final Bundle bundle = new Bundle();
+        bundle.putLong(KEY_COUNT, histogram.getCount());
+        bundle.putLong(KEY_P50, histogram.getPercentile(50));
+        bundle.putLong(KEY_P95, histogram.getPercentile(95));
+        bundle.putLong(KEY_P99, histogram.getPercentile(99));
+        return bundle;
+    }
+}
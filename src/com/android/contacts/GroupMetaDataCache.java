@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.ContactsContract.Groups;
+import android.util.Log;
+
+import com.android.contacts.common.model.account.AccountWithDataSet;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Process-wide cache of the meta-data of all groups that belong to an account. Group meta-data
+ * rarely changes and is the same for every contact, so the contact loader, the contact editor
+ * and the group membership view all read it from here instead of querying {@link Groups} each
+ * time. The cache is dropped whenever anything under {@link Groups#CONTENT_URI} changes, and
+ * reloaded with a single query on the next access.
+ */
+public final class GroupMetaDataCache {
+    private static final String TAG = "GroupMetaDataCache";
+
+    /**
+     * Notified on the main thread after the cached group meta-data was dropped because groups
+     * changed.
+     */
+    public interface Listener {
+        public void onGroupMetaDataChanged();
+    }
+
+    /**
+     * Immutable copy of the groups table. Rows are kept in the column order of
+     * {@link GroupMetaDataLoader#COLUMNS} so they can be handed out as a cursor.
+     */
+    private static final class Snapshot {
+        final ImmutableList<Object[]> rows;
+        final ImmutableListMultimap<AccountWithDataSet, GroupMetaData> groupsByAccount;
+
+        Snapshot(ImmutableList<Object[]> rows,
+                ImmutableListMultimap<AccountWithDataSet, GroupMetaData> groupsByAccount) {
+            this.rows = rows;
+            this.groupsByAccount = groupsByAccount;
+        }
+    }
+
+    private static GroupMetaDataCache sInstance;
+
+    private final Context mContext;
+    private final CopyOnWriteArrayList<Listener> mListeners =
+            new CopyOnWriteArrayList<Listener>();
+    private volatile Snapshot mSnapshot;
+    /** Incremented on every invalidation, so that a load racing with a change is discarded. */
+    private int mGeneration;
+
+    @VisibleForTesting
+    /* package */ GroupMetaDataCache(Context context) {
+        mContext = context;
+        context.getContentResolver().registerContentObserver(Groups.CONTENT_URI, true,
+                new ContentObserver(new Handler(Looper.getMainLooper())) {
+                    @Override
+                    public void onChange(boolean selfChange) {
+                        invalidate();
+                    }
+                });
+    }
+
+    public static synchronized GroupMetaDataCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new GroupMetaDataCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    public static synchronized void setInstanceForTest(GroupMetaDataCache cache) {
+        sInstance = cache;
+    }
+
+    public void registerListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public void unregisterListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Drops the cached meta-data and notifies the listeners. Must be called on the main thread.
+     */
+    public void invalidate() {
+        synchronized (this) {
+            mGeneration++;
+            mSnapshot = null;
+        }
+        for (Listener listener : mListeners) {
+            listener.onGroupMetaDataChanged();
+        }
+    }
+
+    /**
+     * Returns the groups of the given account. Queries the provider if the cache is empty, so
+     * this must not be called on the main thread.
+     */
+    public ImmutableList<GroupMetaData> getGroups(
+            String accountName, String accountType, String dataSet) {
+        return getSnapshot().groupsByAccount.get(
+                new AccountWithDataSet(accountName, accountType, dataSet));
+    }
+
+    /**
+     * Returns a cursor over all groups with the projection of {@link GroupMetaDataLoader}.
+     * Queries the provider if the cache is empty, so this must not be called on the main thread.
+     */
+    public Cursor newCursor() {
+        final ImmutableList<Object[]> rows = getSnapshot().rows;
+        final MatrixCursor cursor = new MatrixCursor(GroupMetaDataLoader.COLUMNS, rows.size());
+        for (Object[] row : rows) {
+            cursor.addRow(row);
+        }
+        return cursor;
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot snapshot = mSnapshot;
+        if (snapshot != null) {
+            return snapshot;
+        }
+
+        final int generation;
+        synchronized (this) {
+            generation = mGeneration;
+        }
+        snapshot = load();
+        synchronized (this) {
+            if (generation == mGeneration) {
+                mSnapshot = snapshot;
+            }
+        }
+        return snapshot;
+    }
+
+    private Snapshot load() {
+        final ImmutableList.Builder<Object[]> rows = ImmutableList.builder();
+        final ImmutableListMultimap.Builder<AccountWithDataSet, GroupMetaData> groups =
+                ImmutableListMultimap.builder();
+        final Cursor cursor = mContext.getContentResolver().query(Groups.CONTENT_URI,
+                GroupMetaDataLoader.COLUMNS, GroupMetaDataLoader.SELECTION, null, null);
+        if (cursor == null) {
+            Log.w(TAG, "Unable to load group meta-data");
+            return new Snapshot(rows.build(), groups.build());
+        }
+        try {
+            final int columnCount = GroupMetaDataLoader.COLUMNS.length;
+            while (cursor.moveToNext()) {
+                final Object[] row = new Object[columnCount];
+                row[GroupMetaDataLoader.ACCOUNT_NAME] =
+                        cursor.getString(GroupMetaDataLoader.ACCOUNT_NAME);
+                row[GroupMetaDataLoader.ACCOUNT_TYPE] =
+                        cursor.getString(GroupMetaDataLoader.ACCOUNT_TYPE);
+                row[GroupMetaDataLoader.DATA_SET] =
+                        cursor.getString(GroupMetaDataLoader.DATA_SET);
+                row[GroupMetaDataLoader.GROUP_ID] =
+                        cursor.getLong(GroupMetaDataLoader.GROUP_ID);
+                row[GroupMetaDataLoader.TITLE] = cursor.getString(GroupMetaDataLoader.TITLE);
+                row[GroupMetaDataLoader.AUTO_ADD] = getIntOrNull(
+                        cursor, GroupMetaDataLoader.AUTO_ADD);
+                row[GroupMetaDataLoader.FAVORITES] = getIntOrNull(
+                        cursor, GroupMetaDataLoader.FAVORITES);
+                row[GroupMetaDataLoader.IS_READ_ONLY] = getIntOrNull(
+                        cursor, GroupMetaDataLoader.IS_READ_ONLY);
+                row[GroupMetaDataLoader.DELETED] = getIntOrNull(
+                        cursor, GroupMetaDataLoader.DELETED);
+                rows.add(row);
+
+                final String accountName = (String) row[GroupMetaDataLoader.ACCOUNT_NAME];
+                final String accountType = (String) row[GroupMetaDataLoader.ACCOUNT_TYPE];
+                final String dataSet = (String) row[GroupMetaDataLoader.DATA_SET];
+                final Integer autoAdd = (Integer) row[GroupMetaDataLoader.AUTO_ADD];
+                final Integer favorites = (Integer) row[GroupMetaDataLoader.FAVORITES];
+                groups.put(new AccountWithDataSet(accountName, accountType, dataSet),
+                        new GroupMetaData(accountName, accountType, dataSet,
+                                (Long) row[GroupMetaDataLoader.GROUP_ID],
+                                (String) row[GroupMetaDataLoader.TITLE],
+                                autoAdd != null && autoAdd != 0,
+                                favorites != null && favorites != 0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return new Snapshot(rows.build(), groups.build());
+    }
+
+    private static Integer getIntOrNull(Cursor cursor, int column) {
+        return cursor.isNull(column) ? null : cursor.getInt(column);
+    }
+}
@@ -17,16 +17,18 @@ package com.android.contacts;
 
 import android.content.Context;
 import android.content.CursorLoader;
+import android.database.Cursor;
 import android.net.Uri;
 import android.provider.ContactsContract.Groups;
 
 /**
  * Group meta-data loader. Loads all groups or just a single group from the
- * database (if given a {@link Uri}).
+ * database (if given a {@link Uri}). All groups are served from the
+ * {@link GroupMetaDataCache}.
  */
 public final class GroupMetaDataLoader extends CursorLoader {
 
-    private final static String[] COLUMNS = new String[] {
+    /* package */ final static String[] COLUMNS = new String[] {
         Groups.ACCOUNT_NAME,
         Groups.ACCOUNT_TYPE,
         Groups.DATA_SET,
@@ -48,9 +50,51 @@ public final class GroupMetaDataLoader extends CursorLoader {
     public final static int IS_READ_ONLY = 7;
     public final static int DELETED = 8;
 
+    /* package */ final static String SELECTION = Groups.ACCOUNT_TYPE + " NOT NULL AND "
+            + Groups.ACCOUNT_NAME + " NOT NULL";
+
+    private final GroupMetaDataCache.Listener mCacheListener = new GroupMetaDataCache.Listener() {
+        @Override
+        public void onGroupMetaDataChanged() {
+            onContentChanged();
+        }
+    };
+    private boolean mListeningToCache;
+
     public GroupMetaDataLoader(Context context, Uri groupUri) {
-        super(context, ensureIsGroupUri(groupUri), COLUMNS, Groups.ACCOUNT_TYPE + " NOT NULL AND "
-                + Groups.ACCOUNT_NAME + " NOT NULL", null, null);
+        super(context, ensureIsGroupUri(groupUri), COLUMNS, SELECTION, null, null);
+    }
+
+    private boolean isAllGroups() {
+        return Groups.CONTENT_URI.equals(getUri());
+    }
+
+    @Override
+    public Cursor loadInBackground() {
+        if (!isAllGroups()) {
+            return super.loadInBackground();
+        }
+        // Changes are delivered through the cache listener, which fires only after the cache
+        // dropped its stale copy
+        return GroupMetaDataCache.getInstance(getContext()).newCursor();
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (isAllGroups() && !mListeningToCache) {
+            GroupMetaDataCache.getInstance(getContext()).registerListener(mCacheListener);
+            mListeningToCache = true;
+        }
+        super.onStartLoading();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        if (mListeningToCache) {
+            GroupMetaDataCache.getInstance(getContext()).unregisterListener(mCacheListener);
+            mListeningToCache = false;
+        }
     }
 
     /**
@@ -223,7 +223,7 @@ public class AttachPhotoActivity extends ContactsActivity {
                 raw.getRawContactId(),
                 mTempPhotoUri
                 );
-        startService(intent);
+        ContactSaveService.startSaveContact(this, intent);
         finish();
     }
 }
@@ -639,7 +639,7 @@ public class ConfirmAddDetailActivity extends Activity implements
 
         // Then, copy the structure name from an existing (read-only) raw_contact.
         for (RawContactDelta entity : entityDeltaList) {
-            final ArrayList<ValuesDelta> readOnlyNames =
+            final List<ValuesDelta> readOnlyNames =
                     entity.getMimeEntries(StructuredName.CONTENT_ITEM_TYPE);
             if ((readOnlyNames != null) && (readOnlyNames.size() > 0)) {
                 final ValuesDelta readOnlyName = readOnlyNames.get(0);
@@ -43,6 +43,7 @@ import com.android.contacts.R;
 import com.android.contacts.detail.ContactDetailDisplayUtils;
 import com.android.contacts.detail.ContactDetailFragment;
 import com.android.contacts.detail.ContactDetailLayoutController;
+import com.android.contacts.detail.ContactDetailUpdatesFragment;
 import com.android.contacts.detail.ContactLoaderFragment;
 import com.android.contacts.detail.ContactLoaderFragment.ContactLoaderFragmentListener;
 import com.android.contacts.interactions.ContactDeletionInteraction;
@@ -100,6 +101,15 @@ public class ContactDetailActivity extends ContactsActivity {
         mContactDetailLayoutController = new ContactDetailLayoutController(this, savedState,
                 getFragmentManager(), null, findViewById(R.id.contact_detail_container),
                 mContactDetailFragmentListener);
+        mContactDetailLayoutController.setUpdatesListener(
+                new ContactDetailUpdatesFragment.Listener() {
+            @Override
+            public void onLoadMoreStreamItems() {
+                if (mLoaderFragment != null) {
+                    mLoaderFragment.loadMoreStreamItems();
+                }
+            }
+        });
 
         // We want the UP affordance but no app icon.
         // Setting HOME_AS_UP, SHOW_TITLE and clearing SHOW_HOME does the trick.
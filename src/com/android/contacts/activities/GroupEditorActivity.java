@@ -27,6 +27,7 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.View.OnClickListener;
 
+import com.android.contacts.ContactSaveService;
 import com.android.contacts.ContactsActivity;
 import com.android.contacts.R;
 import com.android.contacts.group.GroupEditorFragment;
@@ -122,7 +123,8 @@ public class GroupEditorActivity extends ContactsActivity
 
         String action = intent.getAction();
         if (ACTION_SAVE_COMPLETED.equals(action)) {
-            mFragment.onSaveCompleted(true, intent.getData());
+            mFragment.onSaveCompleted(true, intent.getData(),
+                    intent.getLongArrayExtra(ContactSaveService.EXTRA_FAILED_RAW_CONTACT_IDS));
         }
     }
 
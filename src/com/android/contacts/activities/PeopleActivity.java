@@ -64,6 +64,7 @@ import com.android.contacts.group.GroupBrowseListFragment;
 import com.android.contacts.group.GroupBrowseListFragment.OnGroupBrowserActionListener;
 import com.android.contacts.group.GroupDetailFragment;
 import com.android.contacts.interactions.ContactDeletionInteraction;
+import com.android.contacts.interactions.MultiContactDeletionInteraction;
 import com.android.contacts.common.interactions.ImportExportDialogFragment;
 import com.android.contacts.list.ContactBrowseListFragment;
 import com.android.contacts.common.list.ContactEntryListFragment;
@@ -383,6 +384,7 @@ public class PeopleActivity extends ContactsActivity
         mFavoritesFragment.setListener(mFavoritesFragmentListener);
 
         mAllFragment.setOnContactListActionListener(new ContactBrowserActionListener());
+        mAllFragment.setMultiSelectEnabled(true);
 
         mGroupsFragment.setListener(new GroupBrowserActionListener());
 
@@ -427,6 +429,13 @@ public class PeopleActivity extends ContactsActivity
                     getFragmentManager(), mContactDetailsView,
                     findViewById(R.id.contact_detail_container),
                     new ContactDetailFragmentListener());
+            mContactDetailLayoutController.setUpdatesListener(
+                    new ContactDetailUpdatesFragment.Listener() {
+                @Override
+                public void onLoadMoreStreamItems() {
+                    mContactDetailLoaderFragment.loadMoreStreamItems();
+                }
+            });
         }
         transaction.commitAllowingStateLoss();
         fragmentManager.executePendingTransactions();
@@ -1155,6 +1164,11 @@ public class PeopleActivity extends ContactsActivity
             ContactDeletionInteraction.start(PeopleActivity.this, contactUri, false);
         }
 
+        @Override
+        public void onDeleteContactsAction(long[] contactIds) {
+            MultiContactDeletionInteraction.start(PeopleActivity.this, contactIds);
+        }
+
         @Override
         public void onFinishAction() {
             onBackPressed();
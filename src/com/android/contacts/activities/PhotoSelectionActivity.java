@@ -261,8 +261,8 @@ public class PhotoSelectionActivity extends Activity {
      *     avatar image will be displayed).
      * @param photoBitmap The bitmap of the current photo (may be null, in which case the default
      *     avatar image will be displayed).
-     * @param photoBytes The bytes for the current photo (may be null, in which case the default
-     *     avatar image will be displayed).
+     * @param photoBytes The bytes for the current photo (may be null, in which case the photo
+     *     is read from the photo URI).
      * @param photoBounds The pixel bounds of the current photo.
      * @param delta The entity delta list for the contact.
      * @param isProfile Whether the contact is the user's profile.
@@ -275,7 +275,7 @@ public class PhotoSelectionActivity extends Activity {
             byte[] photoBytes, Rect photoBounds, RawContactDeltaList delta, boolean isProfile,
             boolean isDirectoryContact, boolean expandPhotoOnClick) {
         Intent intent = new Intent(context, PhotoSelectionActivity.class);
-        if (photoUri != null && photoBitmap != null && photoBytes != null) {
+        if (photoUri != null && photoBitmap != null) {
             intent.putExtra(PHOTO_URI, photoUri);
         }
         intent.setSourceBounds(photoBounds);
@@ -545,7 +545,7 @@ public class PhotoSelectionActivity extends Activity {
 
                 Intent intent = ContactSaveService.createSaveContactIntent(
                         mContext, delta, "", 0, mIsProfile, null, null, rawContactId, uri);
-                startService(intent);
+                ContactSaveService.startSaveContact(mContext, intent);
                 finish();
             }
 
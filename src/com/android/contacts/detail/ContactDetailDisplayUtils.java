@@ -25,6 +25,7 @@ import android.content.res.Resources.NotFoundException;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.provider.ContactsContract;
+import android.provider.ContactsContract.CommonDataKinds.Organization;
 import android.provider.ContactsContract.DisplayNameSources;
 import android.provider.ContactsContract.StreamItems;
 import android.text.Html;
@@ -52,7 +53,6 @@ import com.android.contacts.util.MoreMath;
 import com.android.contacts.util.StreamItemEntry;
 import com.android.contacts.util.StreamItemPhotoEntry;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.Iterables;
 
 import java.util.List;
 
@@ -145,8 +145,8 @@ public class ContactDetailDisplayUtils {
         final boolean displayNameIsOrganization = contactData.getDisplayNameSource()
                 == DisplayNameSources.ORGANIZATION;
         for (RawContact rawContact : contactData.getRawContacts()) {
-            for (DataItem dataItem : Iterables.filter(
-                    rawContact.getDataItems(), OrganizationDataItem.class)) {
+            for (DataItem dataItem :
+                    rawContact.getDataItems(Organization.CONTENT_ITEM_TYPE)) {
                 OrganizationDataItem organization = (OrganizationDataItem) dataItem;
                 final String company = organization.getCompany();
                 final String title = organization.getTitle();
@@ -359,6 +359,9 @@ public class ContactDetailDisplayUtils {
         TextView commentsView = (TextView) rootView.findViewById(R.id.stream_item_comments);
         ImageGetter imageGetter = new DefaultImageGetter(context.getPackageManager());
 
+        // The HTML is only decoded once the item is shown
+        streamItem.decodeHtml(context);
+
         // Stream item text
         setDataOrHideIfNone(streamItem.getDecodedText(), htmlView);
         // Attribution
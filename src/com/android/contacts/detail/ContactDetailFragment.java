@@ -112,12 +112,12 @@ import com.android.contacts.model.dataitem.WebsiteDataItem;
 import com.android.contacts.util.DataStatus;
 import com.android.contacts.util.DateUtils;
 import com.android.contacts.util.PhoneCapabilityTester;
+import com.android.contacts.util.PhoneNumberFormatCache;
 import com.android.contacts.util.StructuredPostalUtils;
 import com.android.contacts.util.UiClosables;
 import com.android.internal.telephony.ITelephony;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
-import com.google.common.collect.Iterables;
 
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -555,8 +555,6 @@ public class ContactDetailFragment extends Fragment implements FragmentKeyListen
             final long rawContactId = rawContact.getId();
             final AccountType accountType = rawContact.getAccountType(mContext);
             for (DataItem dataItem : rawContact.getDataItems()) {
-                dataItem.setRawContactId(rawContactId);
-
                 if (dataItem.getMimeType() == null) continue;
 
                 if (dataItem instanceof GroupMembershipDataItem) {
@@ -586,6 +584,13 @@ public class ContactDetailFragment extends Fragment implements FragmentKeyListen
                     PhoneDataItem phone = (PhoneDataItem) dataItem;
                     // Build phone entries
                     entry.data = phone.getFormattedPhoneNumber();
+                    if (entry.data == null) {
+                        // The loader did not format the number
+                        final String formatted = PhoneNumberFormatCache.getInstance().format(
+                                phone.getNumber(), phone.getNormalizedNumber(),
+                                mDefaultCountryIso);
+                        entry.data = formatted != null ? formatted : phone.getNumber();
+                    }
                     final Intent phoneIntent = mHasPhone ?
                             CallUtil.getCallIntent(entry.data) : null;
                     final Intent smsIntent = mHasSms ? new Intent(Intent.ACTION_SENDTO,
@@ -2044,8 +2049,8 @@ public class ContactDetailFragment extends Fragment implements FragmentKeyListen
 
             // Check whether the contact is in the default group
             boolean isInDefaultGroup = false;
-            for (DataItem dataItem : Iterables.filter(
-                    rawContact.getDataItems(), GroupMembershipDataItem.class)) {
+            for (DataItem dataItem :
+                    rawContact.getDataItems(GroupMembership.CONTENT_ITEM_TYPE)) {
                 GroupMembershipDataItem groupMembership = (GroupMembershipDataItem) dataItem;
                 final Long groupId = groupMembership.getGroupRowId();
                 if (groupId == defaultGroupId) {
@@ -2086,7 +2091,7 @@ public class ContactDetailFragment extends Fragment implements FragmentKeyListen
             final Intent intent = ContactSaveService.createSaveContactIntent(getActivity(),
                     contactDeltaList, "", 0, false, getActivity().getClass(),
                     Intent.ACTION_VIEW, null);
-            getActivity().startService(intent);
+            ContactSaveService.startSaveContact(getActivity(), intent);
         }
     }
 
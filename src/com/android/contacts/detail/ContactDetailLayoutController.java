@@ -270,6 +270,16 @@ public class ContactDetailLayoutController {
         }
     }
 
+    /**
+     * Sets the listener that is asked for more updates when the updates list is scrolled
+     * close to its end.
+     */
+    public void setUpdatesListener(ContactDetailUpdatesFragment.Listener listener) {
+        if (mUpdatesFragment != null) {
+            mUpdatesFragment.setListener(listener);
+        }
+    }
+
     public void setContactData(Contact data) {
         final boolean contactWasLoaded;
         final boolean contactHadUpdates;
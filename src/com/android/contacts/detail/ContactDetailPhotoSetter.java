@@ -39,7 +39,8 @@ public class ContactDetailPhotoSetter extends ImageViewDrawableSetter {
     public OnClickListener setupContactPhotoForClick(Context context, Contact contactData,
             ImageView photoView, boolean expandPhotoOnClick) {
         setTarget(photoView);
-        Bitmap bitmap = setCompressedImage(contactData.getPhotoBinaryData());
+        Bitmap bitmap = setCompressedImage(contactData.getPhotoBinaryData(),
+                contactData.getPhotoBitmap());
         return setupClickListener(context, contactData, bitmap, expandPhotoOnClick);
     }
 
@@ -87,8 +88,9 @@ public class ContactDetailPhotoSetter extends ImageViewDrawableSetter {
                     photoUri, mPhotoBitmap, mPhotoBytes, rect, delta, mContactData.isUserProfile(),
                     mContactData.isDirectoryEntry(), mExpandPhotoOnClick);
             // Cache the bitmap directly, so the activity can pull it from the
-            // photo manager.
-            if (mPhotoBitmap != null) {
+            // photo manager. Without the bytes of a downsampled photo, the photo manager reads
+            // the full size photo from its URI instead.
+            if (mPhotoBitmap != null && mPhotoBytes != null) {
                 ContactPhotoManager.getInstance(mContext).cacheBitmap(
                         photoUri, mPhotoBitmap, mPhotoBytes);
             }
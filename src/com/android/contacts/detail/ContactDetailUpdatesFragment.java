@@ -25,6 +25,7 @@ import android.provider.ContactsContract.StreamItems;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.AbsListView.OnScrollListener;
 import android.widget.ListView;
 
@@ -47,6 +48,47 @@ public class ContactDetailUpdatesFragment extends ListFragment implements Fragme
     private StreamItemAdapter mStreamItemAdapter;
 
     private OnScrollListener mVerticalScrollListener;
+    private Listener mListener;
+
+    /** Number of updates below the visible ones at which the next page is requested. */
+    private static final int LOAD_MORE_THRESHOLD = 3;
+
+    /**
+     * Notified when the list is scrolled close to the last loaded update.
+     */
+    public interface Listener {
+        /**
+         * The user scrolled close to the end of the updates and the contact has more.
+         */
+        public void onLoadMoreStreamItems();
+    }
+
+    /**
+     * Forwards scroll events to the vertical scroll listener and asks the {@link Listener}
+     * for the next page of updates when the end of the list comes into view.
+     */
+    private final OnScrollListener mScrollListener = new OnScrollListener() {
+        @Override
+        public void onScrollStateChanged(AbsListView view, int scrollState) {
+            if (mVerticalScrollListener != null) {
+                mVerticalScrollListener.onScrollStateChanged(view, scrollState);
+            }
+        }
+
+        @Override
+        public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+                int totalItemCount) {
+            if (mVerticalScrollListener != null) {
+                mVerticalScrollListener.onScroll(
+                        view, firstVisibleItem, visibleItemCount, totalItemCount);
+            }
+            if (mListener != null && mContactData != null && mContactData.hasMoreStreamItems()
+                    && firstVisibleItem + visibleItemCount
+                            >= totalItemCount - LOAD_MORE_THRESHOLD) {
+                mListener.onLoadMoreStreamItems();
+            }
+        }
+    };
 
     /**
      * Listener on clicks on a stream item.
@@ -110,7 +152,7 @@ public class ContactDetailUpdatesFragment extends ListFragment implements Fragme
         mStreamItemAdapter = new StreamItemAdapter(getActivity(), mStreamItemClickListener,
                 mStreamItemPhotoItemClickListener);
         setListAdapter(mStreamItemAdapter);
-        getListView().setOnScrollListener(mVerticalScrollListener);
+        getListView().setOnScrollListener(mScrollListener);
 
         // It is possible that the contact data was set to the fragment when it was first attached
         // to the activity, but before this method was called because the fragment was not
@@ -153,6 +195,10 @@ public class ContactDetailUpdatesFragment extends ListFragment implements Fragme
         mVerticalScrollListener = listener;
     }
 
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
     /**
      * Returns the top coordinate of the first item in the {@link ListView}. If the first item
      * in the {@link ListView} is not visible or there are no children in the list, then return
@@ -24,6 +24,7 @@ import android.content.ActivityNotFoundException;
 import android.content.Context;
 import android.content.Intent;
 import android.content.Loader;
+import android.content.res.Resources;
 import android.media.RingtoneManager;
 import android.net.Uri;
 import android.os.Bundle;
@@ -46,6 +47,7 @@ import com.android.contacts.common.list.ShortcutIntentBuilder;
 import com.android.contacts.common.list.ShortcutIntentBuilder.OnShortcutIntentCreatedListener;
 import com.android.contacts.model.Contact;
 import com.android.contacts.model.ContactLoader;
+import com.android.contacts.util.ContactPhotoUtils;
 import com.android.contacts.util.PhoneCapabilityTester;
 import com.google.common.base.Objects;
 
@@ -185,9 +187,13 @@ public class ContactLoaderFragment extends Fragment implements FragmentKeyListen
         @Override
         public Loader<Contact> onCreateLoader(int id, Bundle args) {
             Uri lookupUri = args.getParcelable(LOADER_ARG_CONTACT_URI);
-            return new ContactLoader(mContext, lookupUri, true /* loadGroupMetaData */,
-                    true /* loadStreamItems */, true /* load invitable account types */,
-                    true /* postViewNotification */, true /* computeFormattedPhoneNumber */);
+            final ContactLoader loader = new ContactLoader(mContext, lookupUri,
+                    true /* loadGroupMetaData */, true /* loadStreamItems */,
+                    true /* load invitable account types */, true /* postViewNotification */,
+                    true /* computeFormattedPhoneNumber */);
+            loader.setPhotoTargetSize(ContactPhotoUtils.getDisplayPhotoTargetSize(mContext));
+            loader.setStreamItemsPageSize(getStreamItemsPageSize());
+            return loader;
         }
 
         @Override
@@ -460,6 +466,28 @@ public class ContactLoaderFragment extends Fragment implements FragmentKeyListen
         mContext.startService(intent);
     }
 
+    /**
+     * Returns the number of stream items that fill the screen, plus one so the list can
+     * be scrolled before the next page arrives.
+     */
+    private int getStreamItemsPageSize() {
+        final Resources res = mContext.getResources();
+        final int screenHeight = res.getDisplayMetrics().heightPixels;
+        final int itemHeight = res.getDimensionPixelSize(R.dimen.detail_update_min_height);
+        return screenHeight / itemHeight + 1;
+    }
+
+    /**
+     * Loads the next page of stream items of the current contact, if it has more. The listener
+     * is notified through {@link ContactLoaderFragmentListener#onDetailsLoaded} when done.
+     */
+    public void loadMoreStreamItems() {
+        Loader<Contact> loaderObj = getLoaderManager().getLoader(LOADER_DETAILS);
+        if (loaderObj != null) {
+            ((ContactLoader) loaderObj).loadMoreStreamItems();
+        }
+    }
+
     /** Toggles whether to load stream items. Just for debugging */
     public void toggleLoadStreamItems() {
         Loader<Contact> loaderObj = getLoaderManager().getLoader(LOADER_DETAILS);
@@ -1173,7 +1173,7 @@ public class ContactEditorFragment extends Fragment implements
                 SAVE_MODE_EXTRA_KEY, saveMode, isEditingUserProfile(),
                 ((Activity)mContext).getClass(), ContactEditorActivity.ACTION_SAVE_COMPLETED,
                 mUpdatedPhotos);
-        mContext.startService(intent);
+        ContactSaveService.startSaveContact(mContext, intent);
 
         // Don't try to save the same photos twice.
         mUpdatedPhotos = new Bundle();
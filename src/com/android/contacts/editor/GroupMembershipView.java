@@ -46,7 +46,7 @@ import com.android.contacts.model.RawContactModifier;
 import com.android.contacts.util.UiClosables;
 import com.google.common.base.Objects;
 
-import java.util.ArrayList;
+import java.util.List;
 
 /**
  * An editor for group membership.  Displays the current group membership list and
@@ -349,7 +349,7 @@ public class GroupMembershipView extends LinearLayout
         }
 
         // First remove the memberships that have been unchecked
-        ArrayList<ValuesDelta> entries = mState.getMimeEntries(GroupMembership.CONTENT_ITEM_TYPE);
+        List<ValuesDelta> entries = mState.getMimeEntries(GroupMembership.CONTENT_ITEM_TYPE);
         if (entries != null) {
             for (ValuesDelta entry : entries) {
                 if (!entry.isDelete()) {
@@ -392,7 +392,7 @@ public class GroupMembershipView extends LinearLayout
             return true;
         }
 
-        ArrayList<ValuesDelta> entries = mState.getMimeEntries(GroupMembership.CONTENT_ITEM_TYPE);
+        List<ValuesDelta> entries = mState.getMimeEntries(GroupMembership.CONTENT_ITEM_TYPE);
         if (entries != null) {
             for (ValuesDelta values : entries) {
                 if (!values.isDelete()) {
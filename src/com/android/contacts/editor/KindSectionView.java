@@ -360,7 +360,7 @@ public class KindSectionView extends LinearLayout implements EditorListener {
             }
 
             // If we already have an item, just make it visible
-            ArrayList<ValuesDelta> entries = mState.getMimeEntries(mKind.mimeType);
+            List<ValuesDelta> entries = mState.getMimeEntries(mKind.mimeType);
             if (entries != null && entries.size() > 0) {
                 values = entries.get(0);
             }
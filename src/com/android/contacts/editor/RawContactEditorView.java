@@ -49,6 +49,7 @@ import com.android.contacts.model.RawContactModifier;
 import com.google.common.base.Objects;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Custom view that provides all the editor interaction for a specific
@@ -376,7 +377,7 @@ public class RawContactEditorView extends BaseRawContactEditorView {
         }
 
         boolean hasGroupMembership = false;
-        ArrayList<ValuesDelta> entries = mState.getMimeEntries(GroupMembership.CONTENT_ITEM_TYPE);
+        List<ValuesDelta> entries = mState.getMimeEntries(GroupMembership.CONTENT_ITEM_TYPE);
         if (entries != null) {
             for (ValuesDelta values : entries) {
                 Long id = values.getGroupRowId();
@@ -25,7 +25,6 @@ import android.provider.ContactsContract.CommonDataKinds.Phone;
 import android.provider.ContactsContract.CommonDataKinds.Photo;
 import android.provider.ContactsContract.CommonDataKinds.StructuredName;
 import android.provider.ContactsContract.RawContacts;
-import android.telephony.PhoneNumberUtils;
 import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.view.LayoutInflater;
@@ -45,8 +44,9 @@ import com.android.contacts.common.model.ValuesDelta;
 import com.android.contacts.common.model.account.AccountType;
 import com.android.contacts.common.model.account.AccountWithDataSet;
 import com.android.contacts.common.model.dataitem.DataKind;
+import com.android.contacts.util.PhoneNumberFormatCache;
 
-import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Custom view that displays external contacts in the edit screen.
@@ -197,11 +197,11 @@ public class RawContactReadOnlyEditorView extends BaseRawContactEditorView
 
         final Resources res = mContext.getResources();
         // Phones
-        ArrayList<ValuesDelta> phones = state.getMimeEntries(Phone.CONTENT_ITEM_TYPE);
+        List<ValuesDelta> phones = state.getMimeEntries(Phone.CONTENT_ITEM_TYPE);
         if (phones != null) {
             for (int i = 0; i < phones.size(); i++) {
                 ValuesDelta phone = phones.get(i);
-                final String phoneNumber = PhoneNumberUtils.formatNumber(
+                final String phoneNumber = PhoneNumberFormatCache.getInstance().format(
                         phone.getPhoneNumber(),
                         phone.getPhoneNormalizedNumber(),
                         GeoUtil.getCurrentCountryIso(getContext()));
@@ -218,7 +218,7 @@ public class RawContactReadOnlyEditorView extends BaseRawContactEditorView
         }
 
         // Emails
-        ArrayList<ValuesDelta> emails = state.getMimeEntries(Email.CONTENT_ITEM_TYPE);
+        List<ValuesDelta> emails = state.getMimeEntries(Email.CONTENT_ITEM_TYPE);
         if (emails != null) {
             for (int i = 0; i < emails.size(); i++) {
                 ValuesDelta email = emails.get(i);
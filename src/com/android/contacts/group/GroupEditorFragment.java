@@ -623,10 +623,23 @@ public class GroupEditorFragment extends Fragment implements SelectAccountDialog
     }
 
     public void onSaveCompleted(boolean hadChanges, Uri groupUri) {
+        onSaveCompleted(hadChanges, groupUri, null);
+    }
+
+    /**
+     * Called when the group was saved. {@code failedRawContactIds} are the raw contacts whose
+     * membership couldn't be changed, if any.
+     */
+    public void onSaveCompleted(boolean hadChanges, Uri groupUri, long[] failedRawContactIds) {
         boolean success = groupUri != null;
+        boolean membersSaved = failedRawContactIds == null || failedRawContactIds.length == 0;
         Log.d(TAG, "onSaveCompleted(" + groupUri + ")");
+        if (!membersSaved) {
+            Log.w(TAG, "Membership of " + failedRawContactIds.length
+                    + " raw contacts couldn't be changed");
+        }
         if (hadChanges) {
-            Toast.makeText(mContext, success ? R.string.groupSavedToast :
+            Toast.makeText(mContext, success && membersSaved ? R.string.groupSavedToast :
                     R.string.groupSavedErrorToast, Toast.LENGTH_SHORT).show();
         }
         final Intent resultIntent;
@@ -0,0 +1,336 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.interactions;
+
+import android.app.Activity;
+import android.app.AlertDialog;
+import android.app.Fragment;
+import android.app.FragmentManager;
+import android.app.LoaderManager.LoaderCallbacks;
+import android.app.ProgressDialog;
+import android.content.Context;
+import android.content.CursorLoader;
+import android.content.DialogInterface;
+import android.content.DialogInterface.OnDismissListener;
+import android.content.Intent;
+import android.content.Loader;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.provider.ContactsContract.RawContacts;
+
+import com.android.contacts.ContactSaveService;
+import com.android.contacts.R;
+import com.android.contacts.common.model.AccountTypeManager;
+import com.android.contacts.common.model.account.AccountType;
+import com.google.common.collect.Sets;
+
+import java.util.HashSet;
+
+/**
+ * An interaction invoked to delete several contacts at once. The raw contacts of all of them
+ * are checked for read-only accounts with one query, and the contacts are then deleted by a
+ * single request to the {@link ContactSaveService}, whose progress is shown in a dialog.
+ */
+public class MultiContactDeletionInteraction extends Fragment
+        implements LoaderCallbacks<Cursor>, OnDismissListener,
+        ContactSaveService.BulkDeleteListener {
+
+    private static final String FRAGMENT_TAG = "deleteMultipleContacts";
+
+    private static final String KEY_ACTIVE = "active";
+    private static final String KEY_DELETING = "deleting";
+    private static final String KEY_CONTACT_IDS = "contactIds";
+    private static final String KEY_REQUEST_ID = "requestId";
+    public static final String ARG_CONTACT_IDS = "contactIds";
+
+    private static final String[] RAW_CONTACT_PROJECTION = new String[] {
+        RawContacts.CONTACT_ID, // 0
+        RawContacts.ACCOUNT_TYPE, // 1
+        RawContacts.DATA_SET, // 2
+    };
+
+    private static final int COLUMN_INDEX_CONTACT_ID = 0;
+    private static final int COLUMN_INDEX_ACCOUNT_TYPE = 1;
+    private static final int COLUMN_INDEX_DATA_SET = 2;
+
+    private boolean mActive;
+    private boolean mDeleting;
+    private long[] mContactIds;
+    /** The bulk delete started by this interaction, see {@link #doDeleteContacts}. */
+    private int mRequestId;
+    private Context mContext;
+    private AlertDialog mDialog;
+    private ProgressDialog mProgressDialog;
+
+    /**
+     * Starts the interaction.
+     *
+     * @param activity the activity within which to start the interaction
+     * @param contactIds the IDs of the contacts to delete
+     * @return the newly created interaction
+     */
+    public static MultiContactDeletionInteraction start(Activity activity, long[] contactIds) {
+        if (contactIds == null || contactIds.length == 0) {
+            return null;
+        }
+
+        FragmentManager fragmentManager = activity.getFragmentManager();
+        MultiContactDeletionInteraction fragment = (MultiContactDeletionInteraction)
+                fragmentManager.findFragmentByTag(FRAGMENT_TAG);
+        if (fragment == null) {
+            fragment = new MultiContactDeletionInteraction();
+            fragment.setContactIds(contactIds);
+            fragmentManager.beginTransaction().add(fragment, FRAGMENT_TAG)
+                    .commitAllowingStateLoss();
+        } else if (!fragment.mDeleting) {
+            fragment.setContactIds(contactIds);
+        }
+        return fragment;
+    }
+
+    @Override
+    public void onAttach(Activity activity) {
+        super.onAttach(activity);
+        mContext = activity;
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (mDialog != null && mDialog.isShowing()) {
+            mDialog.setOnDismissListener(null);
+            mDialog.dismiss();
+            mDialog = null;
+        }
+    }
+
+    public void setContactIds(long[] contactIds) {
+        mContactIds = contactIds;
+        mActive = true;
+        if (isAdded()) {
+            Bundle args = new Bundle();
+            args.putLongArray(ARG_CONTACT_IDS, mContactIds);
+            getLoaderManager().restartLoader(R.id.dialog_delete_contacts_loader_id, args, this);
+        }
+    }
+
+    @Override
+    public void onStart() {
+        super.onStart();
+        if (mDeleting) {
+            if (ContactSaveService.isBulkDeletePending(mRequestId)) {
+                ContactSaveService.registerBulkDeleteListener(this);
+                showProgressDialog();
+            } else {
+                // Completed while we weren't listening
+                finish();
+            }
+        } else if (mActive) {
+            Bundle args = new Bundle();
+            args.putLongArray(ARG_CONTACT_IDS, mContactIds);
+            getLoaderManager().initLoader(R.id.dialog_delete_contacts_loader_id, args, this);
+        }
+    }
+
+    @Override
+    public void onStop() {
+        super.onStop();
+        ContactSaveService.unregisterBulkDeleteListener(this);
+        if (mDialog != null) {
+            mDialog.hide();
+        }
+        if (mProgressDialog != null) {
+            mProgressDialog.dismiss();
+            mProgressDialog = null;
+        }
+    }
+
+    @Override
+    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
+        final long[] contactIds = args.getLongArray(ARG_CONTACT_IDS);
+        final StringBuilder selection = new StringBuilder();
+        selection.append(RawContacts.DELETED + "=0 AND " + RawContacts.CONTACT_ID + " IN (");
+        for (int i = 0; i < contactIds.length; i++) {
+            if (i > 0) {
+                selection.append(',');
+            }
+            selection.append(contactIds[i]);
+        }
+        selection.append(')');
+        return new CursorLoader(mContext, RawContacts.CONTENT_URI, RAW_CONTACT_PROJECTION,
+                selection.toString(), null, null);
+    }
+
+    @Override
+    public void onLoadFinished(Loader<Cursor> loader, Cursor cursor) {
+        if (mDialog != null) {
+            mDialog.dismiss();
+            mDialog = null;
+        }
+
+        if (!mActive) {
+            return;
+        }
+
+        // Contacts with at least one raw contact from a read-only account
+        HashSet<Long> readOnlyContacts = Sets.newHashSet();
+        HashSet<Long> contacts = Sets.newHashSet();
+
+        AccountTypeManager accountTypes = AccountTypeManager.getInstance(getActivity());
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            final long contactId = cursor.getLong(COLUMN_INDEX_CONTACT_ID);
+            final String accountType = cursor.getString(COLUMN_INDEX_ACCOUNT_TYPE);
+            final String dataSet = cursor.getString(COLUMN_INDEX_DATA_SET);
+            contacts.add(contactId);
+            AccountType type = accountTypes.getAccountType(accountType, dataSet);
+            if (type != null && !type.areContactsWritable()) {
+                readOnlyContacts.add(contactId);
+            }
+        }
+
+        // We don't want onLoadFinished() calls any more, which may come when the database is
+        // updating.
+        getLoaderManager().destroyLoader(R.id.dialog_delete_contacts_loader_id);
+
+        if (contacts.isEmpty()) {
+            // Deleted in the meantime
+            finish();
+            return;
+        }
+
+        final long[] contactIds = new long[contacts.size()];
+        int i = 0;
+        for (Long contactId : contacts) {
+            contactIds[i++] = contactId;
+        }
+        final int readOnlyCount = readOnlyContacts.size();
+        final String message = readOnlyCount > 0
+                ? getResources().getQuantityString(
+                        R.plurals.readOnlyContactsDeleteConfirmation, readOnlyCount,
+                        readOnlyCount)
+                : getResources().getQuantityString(
+                        R.plurals.multipleContactsDeleteConfirmation, contactIds.length,
+                        contactIds.length);
+        showDialog(message, contactIds);
+    }
+
+    @Override
+    public void onLoaderReset(Loader<Cursor> loader) {
+    }
+
+    private void showDialog(String message, final long[] contactIds) {
+        mDialog = new AlertDialog.Builder(getActivity())
+                .setIconAttribute(android.R.attr.alertDialogIcon)
+                .setMessage(message)
+                .setNegativeButton(android.R.string.cancel, null)
+                .setPositiveButton(android.R.string.ok,
+                    new DialogInterface.OnClickListener() {
+                        @Override
+                        public void onClick(DialogInterface dialog, int whichButton) {
+                            doDeleteContacts(contactIds);
+                        }
+                    }
+                )
+                .create();
+
+        mDialog.setOnDismissListener(this);
+        mDialog.show();
+    }
+
+    private void showProgressDialog() {
+        if (mProgressDialog != null) {
+            return;
+        }
+        mProgressDialog = new ProgressDialog(getActivity());
+        mProgressDialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+        mProgressDialog.setMessage(getString(R.string.deletingContactsProgress));
+        mProgressDialog.setMax(mContactIds.length);
+        mProgressDialog.setCancelable(false);
+        mProgressDialog.show();
+    }
+
+    @Override
+    public void onDismiss(DialogInterface dialog) {
+        mDialog = null;
+        if (!mDeleting) {
+            mActive = false;
+            finish();
+        }
+    }
+
+    @Override
+    public void onBulkDeleteProgress(int requestId, int processedCount, int totalCount) {
+        if (requestId == mRequestId && mProgressDialog != null) {
+            mProgressDialog.setMax(totalCount);
+            mProgressDialog.setProgress(processedCount);
+        }
+    }
+
+    @Override
+    public void onBulkDeleteCompleted(int requestId, int deletedCount, int totalCount) {
+        if (requestId != mRequestId) {
+            return;
+        }
+        ContactSaveService.unregisterBulkDeleteListener(this);
+        if (mProgressDialog != null) {
+            mProgressDialog.dismiss();
+            mProgressDialog = null;
+        }
+        finish();
+    }
+
+    @Override
+    public void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putBoolean(KEY_ACTIVE, mActive);
+        outState.putBoolean(KEY_DELETING, mDeleting);
+        outState.putLongArray(KEY_CONTACT_IDS, mContactIds);
+        outState.putInt(KEY_REQUEST_ID, mRequestId);
+    }
+
+    @Override
+    public void onActivityCreated(Bundle savedInstanceState) {
+        super.onActivityCreated(savedInstanceState);
+        if (savedInstanceState != null) {
+            mActive = savedInstanceState.getBoolean(KEY_ACTIVE);
+            mDeleting = savedInstanceState.getBoolean(KEY_DELETING);
+            mContactIds = savedInstanceState.getLongArray(KEY_CONTACT_IDS);
+            mRequestId = savedInstanceState.getInt(KEY_REQUEST_ID);
+        }
+    }
+
+    protected void doDeleteContacts(long[] contactIds) {
+        mContactIds = contactIds;
+        mDeleting = true;
+        // The request is pending as soon as the intent is created, so that onStart() can tell
+        // it from one that is done even before the service received it
+        final Intent intent = ContactSaveService.createDeleteContactsIntent(mContext, contactIds);
+        mRequestId = ContactSaveService.getBulkDeleteRequestId(intent);
+        ContactSaveService.registerBulkDeleteListener(this);
+        mContext.startService(intent);
+        showProgressDialog();
+    }
+
+    private void finish() {
+        mActive = false;
+        mDeleting = false;
+        if (isAdded()) {
+            getFragmentManager().beginTransaction().remove(this).commitAllowingStateLoss();
+        }
+    }
+}
@@ -33,8 +33,17 @@ import android.provider.ContactsContract.Contacts;
 import android.provider.ContactsContract.Directory;
 import android.text.TextUtils;
 import android.util.Log;
+import android.util.SparseBooleanArray;
+import android.view.ActionMode;
+import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.ViewGroup;
+import android.widget.AbsListView.MultiChoiceModeListener;
+import android.widget.ListView;
 
 import com.android.common.widget.CompositeCursorAdapter.Partition;
+import com.android.contacts.R;
 import com.android.contacts.common.list.AutoScrollListView;
 import com.android.contacts.common.list.ContactEntryListFragment;
 import com.android.contacts.common.list.ContactListAdapter;
@@ -42,6 +51,7 @@ import com.android.contacts.common.list.ContactListFilter;
 import com.android.contacts.common.list.DirectoryPartition;
 import com.android.contacts.util.ContactLoaderUtils;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -94,10 +104,50 @@ public abstract class ContactBrowseListFragment extends
     private boolean mRefreshingContactUri;
     private ContactListFilter mFilter;
     private String mPersistentSelectionPrefix = PERSISTENT_SELECTION_PREFIX;
+    private boolean mMultiSelectEnabled;
 
     protected OnContactBrowserActionListener mListener;
     private ContactLookupTask mContactLookupTask;
 
+    /**
+     * Lets the user select several contacts with a long press, and offers to delete them
+     * from the contextual action bar.
+     */
+    private final class MultiSelectModeListener implements MultiChoiceModeListener {
+        @Override
+        public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+            mode.getMenuInflater().inflate(R.menu.contacts_multi_select, menu);
+            return true;
+        }
+
+        @Override
+        public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+            return false;
+        }
+
+        @Override
+        public void onItemCheckedStateChanged(ActionMode mode, int position, long id,
+                boolean checked) {
+            final int count = getListView().getCheckedItemCount();
+            mode.setTitle(getResources().getQuantityString(R.plurals.contactsSelected, count,
+                    count));
+        }
+
+        @Override
+        public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+            if (item.getItemId() == R.id.menu_delete_contacts) {
+                deleteContacts(getCheckedContactIds());
+                mode.finish();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void onDestroyActionMode(ActionMode mode) {
+        }
+    }
+
     private final class ContactLookupTask extends AsyncTask<Void, Void, Uri> {
 
         private final Uri mUri;
@@ -173,6 +223,65 @@ public abstract class ContactBrowseListFragment extends
         return mHandler;
     }
 
+    @Override
+    protected void onCreateView(LayoutInflater inflater, ViewGroup container) {
+        super.onCreateView(inflater, container);
+        configureMultiSelect();
+    }
+
+    /**
+     * Sets whether several contacts can be selected with a long press, to delete them at once.
+     */
+    public void setMultiSelectEnabled(boolean enabled) {
+        mMultiSelectEnabled = enabled;
+        configureMultiSelect();
+    }
+
+    private void configureMultiSelect() {
+        final ListView listView = getListView();
+        if (listView == null) {
+            return; // Before onCreateView -- configured once it is created.
+        }
+        if (mMultiSelectEnabled) {
+            listView.setChoiceMode(ListView.CHOICE_MODE_MULTIPLE_MODAL);
+            listView.setMultiChoiceModeListener(new MultiSelectModeListener());
+        } else {
+            listView.setChoiceMode(ListView.CHOICE_MODE_NONE);
+        }
+    }
+
+    /**
+     * Returns the IDs of the contacts checked in the list. Contacts from remote directories
+     * and the profile can't be deleted from the list, so they are left out.
+     */
+    private long[] getCheckedContactIds() {
+        final ListView listView = getListView();
+        final ContactListAdapter adapter = getAdapter();
+        final SparseBooleanArray checked = listView.getCheckedItemPositions();
+        final int headerCount = listView.getHeaderViewsCount();
+        final ArrayList<Long> contactIds = new ArrayList<Long>();
+        for (int i = 0; i < checked.size(); i++) {
+            final int position = checked.keyAt(i) - headerCount;
+            if (!checked.valueAt(i) || position < 0) {
+                continue;
+            }
+            final Uri contactUri = adapter.getContactUri(position);
+            if (contactUri == null
+                    || contactUri.getQueryParameter(ContactsContract.DIRECTORY_PARAM_KEY) != null) {
+                continue;
+            }
+            final long contactId = ContentUris.parseId(contactUri);
+            if (contactId > 0 && !ContactsContract.isProfileId(contactId)) {
+                contactIds.add(contactId);
+            }
+        }
+        final long[] result = new long[contactIds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = contactIds.get(i);
+        }
+        return result;
+    }
+
     @Override
     public void onAttach(Activity activity) {
         super.onAttach(activity);
@@ -515,11 +624,21 @@ public abstract class ContactBrowseListFragment extends
 
         getListView().invalidateViews();
 
+        onSelectionVerified(selectedPosition);
+
         if (mListener != null) {
             mListener.onSelectionChange();
         }
     }
 
+    /**
+     * Called once the selected contact has been found in the loaded list.
+     *
+     * @param selectedPosition the position of the selected contact in the adapter, or -1
+     */
+    protected void onSelectionVerified(int selectedPosition) {
+    }
+
     /**
      * Automatically selects the first found contact in search mode.  The selection
      * is updated after a delay to allow the user to type without to much UI churn
@@ -614,6 +733,11 @@ public abstract class ContactBrowseListFragment extends
         if (mListener != null) mListener.onDeleteContactAction(contactUri);
     }
 
+    public void deleteContacts(long[] contactIds) {
+        if (contactIds.length == 0) return;
+        if (mListener != null) mListener.onDeleteContactsAction(contactIds);
+    }
+
     public void addToFavorites(Uri contactUri) {
         if (mListener != null) mListener.onAddToFavoritesAction(contactUri);
     }
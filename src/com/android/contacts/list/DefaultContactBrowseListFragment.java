@@ -18,14 +18,18 @@ package com.android.contacts.list;
 import android.content.CursorLoader;
 import android.content.Intent;
 import android.database.Cursor;
+import android.net.Uri;
 import android.provider.ContactsContract.Contacts;
 import android.text.TextUtils;
 import android.util.Log;
 import android.view.LayoutInflater;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.View.OnClickListener;
 import android.view.ViewGroup;
 import android.view.accessibility.AccessibilityEvent;
+import android.widget.AbsListView;
+import android.widget.AbsListView.OnScrollListener;
 import android.widget.Button;
 import android.widget.FrameLayout;
 import android.widget.ListView;
@@ -39,6 +43,10 @@ import com.android.contacts.common.list.DefaultContactListAdapter;
 import com.android.contacts.common.list.ProfileAndContactsLoader;
 import com.android.contacts.editor.ContactEditorFragment;
 import com.android.contacts.common.util.AccountFilterUtil;
+import com.android.contacts.model.ContactPrefetcher;
+import com.google.common.collect.Lists;
+
+import java.util.ArrayList;
 
 /**
  * Fragment containing a contact list used for browsing (as compared to
@@ -60,6 +68,9 @@ public class DefaultContactBrowseListFragment extends ContactBrowseListFragment
     private View mSearchProgress;
     private TextView mSearchProgressText;
 
+    /** Loads the contacts the user is likely to open next into the contact cache. */
+    private ContactPrefetcher mPrefetcher;
+
     private class FilterHeaderClickListener implements OnClickListener {
         @Override
         public void onClick(View view) {
@@ -87,6 +98,85 @@ public class DefaultContactBrowseListFragment extends ContactBrowseListFragment
         viewContact(getAdapter().getContactUri(position));
     }
 
+    @Override
+    protected void onSelectionVerified(int selectedPosition) {
+        final ContactListAdapter adapter = getAdapter();
+        if (adapter == null) return;
+        if (selectedPosition == -1) {
+            getPrefetcher().setOwnedContact(null);
+            return;
+        }
+        // The detail view loads the selected contact itself, so only its neighbors are ours
+        getPrefetcher().setOwnedContact(adapter.getContactUri(selectedPosition));
+        prefetch(selectedPosition + 1);
+        prefetch(selectedPosition - 1);
+    }
+
+    @Override
+    public void onScrollStateChanged(AbsListView view, int scrollState) {
+        super.onScrollStateChanged(view, scrollState);
+        if (scrollState == OnScrollListener.SCROLL_STATE_IDLE) {
+            prefetchVisible();
+        }
+    }
+
+    /**
+     * Starts loading the touched contact before the touch is confirmed as a click.
+     */
+    @Override
+    public boolean onTouch(View view, MotionEvent event) {
+        if (view == getListView() && event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+            final ListView listView = getListView();
+            final int position = listView.pointToPosition((int) event.getX(), (int) event.getY());
+            if (position != ListView.INVALID_POSITION) {
+                prefetch(position - listView.getHeaderViewsCount());
+            }
+        }
+        return super.onTouch(view, event);
+    }
+
+    @Override
+    public void onStop() {
+        super.onStop();
+        if (mPrefetcher != null) {
+            mPrefetcher.cancel();
+        }
+    }
+
+    /**
+     * Prefetches the contacts on screen, top to bottom, in place of any pending ones.
+     */
+    private void prefetchVisible() {
+        final ContactListAdapter adapter = getAdapter();
+        final ListView listView = getListView();
+        if (adapter == null || listView == null) return;
+        final int headerCount = listView.getHeaderViewsCount();
+        final int first = Math.max(0, listView.getFirstVisiblePosition() - headerCount);
+        final int last = Math.min(adapter.getCount() - 1,
+                listView.getLastVisiblePosition() - headerCount);
+        final ArrayList<Uri> contactUris = Lists.newArrayList();
+        for (int position = first; position <= last; position++) {
+            final Uri contactUri = adapter.getContactUri(position);
+            if (contactUri != null) {
+                contactUris.add(contactUri);
+            }
+        }
+        getPrefetcher().prefetchAll(contactUris);
+    }
+
+    private void prefetch(int position) {
+        final ContactListAdapter adapter = getAdapter();
+        if (adapter == null || position < 0 || position >= adapter.getCount()) return;
+        getPrefetcher().prefetch(adapter.getContactUri(position));
+    }
+
+    private ContactPrefetcher getPrefetcher() {
+        if (mPrefetcher == null) {
+            mPrefetcher = new ContactPrefetcher(getContext());
+        }
+        return mPrefetcher;
+    }
+
     @Override
     protected ContactListAdapter createListAdapter() {
         DefaultContactListAdapter adapter = new DefaultContactListAdapter(getContext());
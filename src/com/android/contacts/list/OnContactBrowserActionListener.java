@@ -50,6 +50,11 @@ public interface OnContactBrowserActionListener  {
      */
     void onDeleteContactAction(Uri contactUri);
 
+    /**
+     * Initiates the deletion of several contacts.
+     */
+    void onDeleteContactsAction(long[] contactIds);
+
     /**
      * Adds the specified contact to favorites
      */
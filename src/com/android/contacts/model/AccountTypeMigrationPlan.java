@@ -0,0 +1,682 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.model;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.provider.ContactsContract.CommonDataKinds.Email;
+import android.provider.ContactsContract.CommonDataKinds.Event;
+import android.provider.ContactsContract.CommonDataKinds.GroupMembership;
+import android.provider.ContactsContract.CommonDataKinds.Im;
+import android.provider.ContactsContract.CommonDataKinds.Nickname;
+import android.provider.ContactsContract.CommonDataKinds.Note;
+import android.provider.ContactsContract.CommonDataKinds.Organization;
+import android.provider.ContactsContract.CommonDataKinds.Phone;
+import android.provider.ContactsContract.CommonDataKinds.Photo;
+import android.provider.ContactsContract.CommonDataKinds.Relation;
+import android.provider.ContactsContract.CommonDataKinds.SipAddress;
+import android.provider.ContactsContract.CommonDataKinds.StructuredName;
+import android.provider.ContactsContract.CommonDataKinds.StructuredPostal;
+import android.provider.ContactsContract.CommonDataKinds.Website;
+import android.text.TextUtils;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import com.android.contacts.common.model.AccountTypeManager;
+import com.android.contacts.common.model.ValuesDelta;
+import com.android.contacts.common.model.account.AccountType;
+import com.android.contacts.common.model.account.AccountType.EditField;
+import com.android.contacts.common.model.account.AccountType.EditType;
+import com.android.contacts.common.model.account.AccountType.EventEditType;
+import com.android.contacts.common.model.dataitem.DataKind;
+import com.android.contacts.common.util.CommonDateUtils;
+import com.android.contacts.editor.EventFieldEditorView;
+import com.android.contacts.editor.PhoneticNameEditorView;
+import com.android.contacts.model.dataitem.StructuredNameDataItem;
+import com.android.contacts.util.DateUtils;
+import com.android.contacts.util.NameConverter;
+import com.google.common.collect.Lists;
+
+import java.text.ParsePosition;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * How the data of a new contact is carried over when the editor switches it from one account
+ * type to another, see {@link RawContactModifier#migrateStateForNewContact}.
+ *
+ * Everything that only depends on the two account types, like which kinds are migrated, the
+ * types each kind allows and its limits, is worked out once when the plan is created. Plans
+ * are cached per pair of account types. {@link AccountTypeManager} creates new account types
+ * whenever it reloads, so plans of the old ones are never used again and are collected along
+ * with them.
+ */
+public final class AccountTypeMigrationPlan {
+    private static final String TAG = AccountTypeMigrationPlan.class.getSimpleName();
+
+    /**
+     * Generic mime types with type support (e.g. TYPE_HOME).
+     * Here, "type support" means if the data kind has CommonColumns#TYPE or not. Data kinds which
+     * have their own migrate methods aren't listed here.
+     */
+    private static final Set<String> sGenericMimeTypesWithTypeSupport = new HashSet<String>(
+            Arrays.asList(Phone.CONTENT_ITEM_TYPE,
+                    Email.CONTENT_ITEM_TYPE,
+                    Im.CONTENT_ITEM_TYPE,
+                    Nickname.CONTENT_ITEM_TYPE,
+                    Website.CONTENT_ITEM_TYPE,
+                    Relation.CONTENT_ITEM_TYPE,
+                    SipAddress.CONTENT_ITEM_TYPE));
+    private static final Set<String> sGenericMimeTypesWithoutTypeSupport = new HashSet<String>(
+            Arrays.asList(Organization.CONTENT_ITEM_TYPE,
+                    Note.CONTENT_ITEM_TYPE,
+                    Photo.CONTENT_ITEM_TYPE,
+                    GroupMembership.CONTENT_ITEM_TYPE));
+    // CommonColumns.TYPE cannot be accessed as it is protected interface, so use
+    // Phone.TYPE instead.
+    private static final String COLUMN_FOR_TYPE  = Phone.TYPE;
+    private static final String COLUMN_FOR_LABEL  = Phone.LABEL;
+    private static final int TYPE_CUSTOM = Phone.TYPE_CUSTOM;
+
+    /** Plans by old and new account type. Guarded by itself. */
+    private static final WeakHashMap<AccountType, WeakHashMap<AccountType,
+            AccountTypeMigrationPlan>> sPlans =
+            new WeakHashMap<AccountType, WeakHashMap<AccountType, AccountTypeMigrationPlan>>();
+
+    private final List<KindMigration> mMigrations;
+
+    private AccountTypeMigrationPlan(List<KindMigration> migrations) {
+        mMigrations = migrations;
+    }
+
+    /**
+     * Returns the plan for migrating from the old to the new account type, creating it on
+     * first use.
+     */
+    public static AccountTypeMigrationPlan get(AccountType oldAccountType,
+            AccountType newAccountType) {
+        synchronized (sPlans) {
+            WeakHashMap<AccountType, AccountTypeMigrationPlan> plans = sPlans.get(oldAccountType);
+            if (plans == null) {
+                plans = new WeakHashMap<AccountType, AccountTypeMigrationPlan>();
+                sPlans.put(oldAccountType, plans);
+            }
+            AccountTypeMigrationPlan plan = plans.get(newAccountType);
+            if (plan == null) {
+                plan = create(oldAccountType, newAccountType);
+                plans.put(newAccountType, plan);
+            }
+            return plan;
+        }
+    }
+
+    private static AccountTypeMigrationPlan create(AccountType oldAccountType,
+            AccountType newAccountType) {
+        final List<KindMigration> migrations = Lists.newArrayList();
+        if (newAccountType == oldAccountType) {
+            // Just copying all data in oldState isn't enough, but we can still rely on a lot of
+            // shortcuts.
+            for (DataKind kind : newAccountType.getSortedDataKinds()) {
+                // The fields with short/long form capability must be treated properly.
+                if (StructuredName.CONTENT_ITEM_TYPE.equals(kind.mimeType)) {
+                    migrations.add(new StructuredNameMigration(kind));
+                } else {
+                    migrations.add(new CopyMigration(kind));
+                }
+            }
+        } else {
+            // Migrate data supported by the new account type.
+            // All the other data inside oldState are silently dropped.
+            for (DataKind kind : newAccountType.getSortedDataKinds()) {
+                if (!kind.editable) continue;
+                final String mimeType = kind.mimeType;
+                if (DataKind.PSEUDO_MIME_TYPE_DISPLAY_NAME.equals(mimeType)
+                        || DataKind.PSEUDO_MIME_TYPE_PHONETIC_NAME.equals(mimeType)) {
+                    // Ignore pseudo data.
+                    continue;
+                } else if (StructuredName.CONTENT_ITEM_TYPE.equals(mimeType)) {
+                    migrations.add(new StructuredNameMigration(kind));
+                } else if (StructuredPostal.CONTENT_ITEM_TYPE.equals(mimeType)) {
+                    migrations.add(new PostalMigration(kind));
+                } else if (Event.CONTENT_ITEM_TYPE.equals(mimeType)) {
+                    migrations.add(new EventMigration(kind, null /* default Year */));
+                } else if (sGenericMimeTypesWithoutTypeSupport.contains(mimeType)) {
+                    migrations.add(new GenericMigration(kind));
+                } else if (sGenericMimeTypesWithTypeSupport.contains(mimeType)) {
+                    migrations.add(new GenericWithTypeMigration(kind));
+                } else {
+                    throw new IllegalStateException("Unexpected editable mime-type: " + mimeType);
+                }
+            }
+        }
+        return new AccountTypeMigrationPlan(migrations);
+    }
+
+    /**
+     * Migrates the old state to the newly created one.
+     */
+    public void migrate(Context context, RawContactDelta oldState, RawContactDelta newState) {
+        for (KindMigration migration : mMigrations) {
+            migration.migrate(context, oldState, newState);
+        }
+    }
+
+    /**
+     * Restricts the entries to {@link DataKind#typeOverallMax}.
+     */
+    private static List<ValuesDelta> ensureEntryMaxSize(int typeOverallMax,
+            List<ValuesDelta> mimeEntries) {
+        if (mimeEntries == null) {
+            return null;
+        }
+
+        if (typeOverallMax >= 0 && (mimeEntries.size() > typeOverallMax)) {
+            ArrayList<ValuesDelta> newMimeEntries = new ArrayList<ValuesDelta>(typeOverallMax);
+            for (int i = 0; i < typeOverallMax; i++) {
+                newMimeEntries.add(mimeEntries.get(i));
+            }
+            mimeEntries = newMimeEntries;
+        }
+        return mimeEntries;
+    }
+
+    /**
+     * Migrates the entries of one {@link DataKind} of the new account type.
+     */
+    /* package */ static abstract class KindMigration {
+        public abstract void migrate(Context context, RawContactDelta oldState,
+                RawContactDelta newState);
+    }
+
+    /**
+     * Copies all entries, for migrating to the same account type.
+     */
+    private static final class CopyMigration extends KindMigration {
+        private final String mMimeType;
+
+        public CopyMigration(DataKind kind) {
+            mMimeType = kind.mimeType;
+        }
+
+        @Override
+        public void migrate(Context context, RawContactDelta oldState,
+                RawContactDelta newState) {
+            List<ValuesDelta> entryList = oldState.getMimeEntries(mMimeType);
+            if (entryList != null && !entryList.isEmpty()) {
+                for (ValuesDelta entry : entryList) {
+                    ContentValues values = entry.getAfter();
+                    if (values != null) {
+                        newState.addEntry(ValuesDelta.fromAfter(values));
+                    }
+                }
+            }
+        }
+    }
+
+    /* package */ static final class StructuredNameMigration extends KindMigration {
+        private boolean mSupportDisplayName;
+        private boolean mSupportPhoneticFullName;
+        private boolean mSupportPhoneticFamilyName;
+        private boolean mSupportPhoneticMiddleName;
+        private boolean mSupportPhoneticGivenName;
+
+        public StructuredNameMigration(DataKind newDataKind) {
+            for (EditField editField : newDataKind.fieldList) {
+                if (StructuredName.DISPLAY_NAME.equals(editField.column)) {
+                    mSupportDisplayName = true;
+                }
+                if (DataKind.PSEUDO_COLUMN_PHONETIC_NAME.equals(editField.column)) {
+                    mSupportPhoneticFullName = true;
+                }
+                if (StructuredName.PHONETIC_FAMILY_NAME.equals(editField.column)) {
+                    mSupportPhoneticFamilyName = true;
+                }
+                if (StructuredName.PHONETIC_MIDDLE_NAME.equals(editField.column)) {
+                    mSupportPhoneticMiddleName = true;
+                }
+                if (StructuredName.PHONETIC_GIVEN_NAME.equals(editField.column)) {
+                    mSupportPhoneticGivenName = true;
+                }
+            }
+        }
+
+        @Override
+        public void migrate(Context context, RawContactDelta oldState,
+                RawContactDelta newState) {
+            final ContentValues values =
+                    oldState.getPrimaryEntry(StructuredName.CONTENT_ITEM_TYPE).getAfter();
+            if (values == null) {
+                return;
+            }
+
+            // DISPLAY_NAME <-> PREFIX, GIVEN_NAME, MIDDLE_NAME, FAMILY_NAME, SUFFIX
+            final String displayName = values.getAsString(StructuredName.DISPLAY_NAME);
+            if (!TextUtils.isEmpty(displayName)) {
+                if (!mSupportDisplayName) {
+                    // Old data has a display name, while the new account doesn't allow it.
+                    NameConverter.displayNameToStructuredName(context, displayName, values);
+
+                    // We don't want to migrate unseen data which may confuse users after the
+                    // creation.
+                    values.remove(StructuredName.DISPLAY_NAME);
+                }
+            } else {
+                if (mSupportDisplayName) {
+                    // Old data does not have display name, while the new account requires it.
+                    values.put(StructuredName.DISPLAY_NAME,
+                            NameConverter.structuredNameToDisplayName(context, values));
+                    for (String field : NameConverter.STRUCTURED_NAME_FIELDS) {
+                        values.remove(field);
+                    }
+                }
+            }
+
+            // Phonetic (full) name <-> PHONETIC_FAMILY_NAME, PHONETIC_MIDDLE_NAME,
+            // PHONETIC_GIVEN_NAME
+            final String phoneticFullName =
+                    values.getAsString(DataKind.PSEUDO_COLUMN_PHONETIC_NAME);
+            if (!TextUtils.isEmpty(phoneticFullName)) {
+                if (!mSupportPhoneticFullName) {
+                    // Old data has a phonetic (full) name, while the new account doesn't allow
+                    // it.
+                    final StructuredNameDataItem tmpItem =
+                            PhoneticNameEditorView.parsePhoneticName(phoneticFullName, null);
+                    values.remove(DataKind.PSEUDO_COLUMN_PHONETIC_NAME);
+                    if (mSupportPhoneticFamilyName) {
+                        values.put(StructuredName.PHONETIC_FAMILY_NAME,
+                                tmpItem.getPhoneticFamilyName());
+                    } else {
+                        values.remove(StructuredName.PHONETIC_FAMILY_NAME);
+                    }
+                    if (mSupportPhoneticMiddleName) {
+                        values.put(StructuredName.PHONETIC_MIDDLE_NAME,
+                                tmpItem.getPhoneticMiddleName());
+                    } else {
+                        values.remove(StructuredName.PHONETIC_MIDDLE_NAME);
+                    }
+                    if (mSupportPhoneticGivenName) {
+                        values.put(StructuredName.PHONETIC_GIVEN_NAME,
+                                tmpItem.getPhoneticGivenName());
+                    } else {
+                        values.remove(StructuredName.PHONETIC_GIVEN_NAME);
+                    }
+                }
+            } else {
+                if (mSupportPhoneticFullName) {
+                    // Old data does not have a phonetic (full) name, while the new account
+                    // requires it.
+                    values.put(DataKind.PSEUDO_COLUMN_PHONETIC_NAME,
+                            PhoneticNameEditorView.buildPhoneticName(
+                                    values.getAsString(StructuredName.PHONETIC_FAMILY_NAME),
+                                    values.getAsString(StructuredName.PHONETIC_MIDDLE_NAME),
+                                    values.getAsString(StructuredName.PHONETIC_GIVEN_NAME)));
+                }
+                if (!mSupportPhoneticFamilyName) {
+                    values.remove(StructuredName.PHONETIC_FAMILY_NAME);
+                }
+                if (!mSupportPhoneticMiddleName) {
+                    values.remove(StructuredName.PHONETIC_MIDDLE_NAME);
+                }
+                if (!mSupportPhoneticGivenName) {
+                    values.remove(StructuredName.PHONETIC_GIVEN_NAME);
+                }
+            }
+
+            newState.addEntry(ValuesDelta.fromAfter(values));
+        }
+    }
+
+    /* package */ static final class PostalMigration extends KindMigration {
+        private final int mTypeOverallMax;
+        private final String mFirstColumn;
+        private boolean mSupportFormattedAddress;
+        private boolean mSupportStreet;
+        private final Set<Integer> mSupportedTypes = new HashSet<Integer>();
+        private final Integer mDefaultType;
+
+        public PostalMigration(DataKind newDataKind) {
+            mTypeOverallMax = newDataKind.typeOverallMax;
+            mFirstColumn = newDataKind.fieldList.get(0).column;
+            for (EditField editField : newDataKind.fieldList) {
+                if (StructuredPostal.FORMATTED_ADDRESS.equals(editField.column)) {
+                    mSupportFormattedAddress = true;
+                }
+                if (StructuredPostal.STREET.equals(editField.column)) {
+                    mSupportStreet = true;
+                }
+            }
+
+            if (newDataKind.typeList != null && !newDataKind.typeList.isEmpty()) {
+                for (EditType editType : newDataKind.typeList) {
+                    mSupportedTypes.add(editType.rawValue);
+                }
+            }
+
+            if (newDataKind.defaultValues != null) {
+                mDefaultType = newDataKind.defaultValues.getAsInteger(StructuredPostal.TYPE);
+            } else if (newDataKind.typeList != null && !newDataKind.typeList.isEmpty()) {
+                mDefaultType = newDataKind.typeList.get(0).rawValue;
+            } else {
+                mDefaultType = null;
+            }
+        }
+
+        @Override
+        public void migrate(Context context, RawContactDelta oldState,
+                RawContactDelta newState) {
+            final List<ValuesDelta> mimeEntries = ensureEntryMaxSize(mTypeOverallMax,
+                    oldState.getMimeEntries(StructuredPostal.CONTENT_ITEM_TYPE));
+            if (mimeEntries == null || mimeEntries.isEmpty()) {
+                return;
+            }
+
+            for (ValuesDelta entry : mimeEntries) {
+                final ContentValues values = entry.getAfter();
+                if (values == null) {
+                    continue;
+                }
+                final Integer oldType = values.getAsInteger(StructuredPostal.TYPE);
+                if (!mSupportedTypes.contains(oldType)) {
+                    values.put(StructuredPostal.TYPE, mDefaultType);
+                    if (oldType != null && oldType == StructuredPostal.TYPE_CUSTOM) {
+                        values.remove(StructuredPostal.LABEL);
+                    }
+                }
+
+                final String formattedAddress =
+                        values.getAsString(StructuredPostal.FORMATTED_ADDRESS);
+                if (!TextUtils.isEmpty(formattedAddress)) {
+                    if (!mSupportFormattedAddress) {
+                        // Old data has a formatted address, while the new account doesn't allow
+                        // it.
+                        values.remove(StructuredPostal.FORMATTED_ADDRESS);
+
+                        // Unlike StructuredName we don't have logic to split it, so first
+                        // try to use street field and. If the new account doesn't have one,
+                        // then select first one anyway.
+                        if (mSupportStreet) {
+                            values.put(StructuredPostal.STREET, formattedAddress);
+                        } else {
+                            values.put(mFirstColumn, formattedAddress);
+                        }
+                    }
+                } else {
+                    if (mSupportFormattedAddress) {
+                        // Old data does not have formatted address, while the new account
+                        // requires it. Unlike StructuredName we don't have logic to join
+                        // multiple address values. Use poor join heuristics for now.
+                        String[] structuredData;
+                        final boolean useJapaneseOrder = Locale.JAPANESE.getLanguage().equals(
+                                Locale.getDefault().getLanguage());
+                        if (useJapaneseOrder) {
+                            structuredData = new String[] {
+                                    values.getAsString(StructuredPostal.COUNTRY),
+                                    values.getAsString(StructuredPostal.POSTCODE),
+                                    values.getAsString(StructuredPostal.REGION),
+                                    values.getAsString(StructuredPostal.CITY),
+                                    values.getAsString(StructuredPostal.NEIGHBORHOOD),
+                                    values.getAsString(StructuredPostal.STREET),
+                                    values.getAsString(StructuredPostal.POBOX) };
+                        } else {
+                            structuredData = new String[] {
+                                    values.getAsString(StructuredPostal.POBOX),
+                                    values.getAsString(StructuredPostal.STREET),
+                                    values.getAsString(StructuredPostal.NEIGHBORHOOD),
+                                    values.getAsString(StructuredPostal.CITY),
+                                    values.getAsString(StructuredPostal.REGION),
+                                    values.getAsString(StructuredPostal.POSTCODE),
+                                    values.getAsString(StructuredPostal.COUNTRY) };
+                        }
+                        final StringBuilder builder = new StringBuilder();
+                        for (String elem : structuredData) {
+                            if (!TextUtils.isEmpty(elem)) {
+                                builder.append(elem + "\n");
+                            }
+                        }
+                        values.put(StructuredPostal.FORMATTED_ADDRESS, builder.toString());
+
+                        values.remove(StructuredPostal.POBOX);
+                        values.remove(StructuredPostal.STREET);
+                        values.remove(StructuredPostal.NEIGHBORHOOD);
+                        values.remove(StructuredPostal.CITY);
+                        values.remove(StructuredPostal.REGION);
+                        values.remove(StructuredPostal.POSTCODE);
+                        values.remove(StructuredPostal.COUNTRY);
+                    }
+                }
+
+                newState.addEntry(ValuesDelta.fromAfter(values));
+            }
+        }
+    }
+
+    /* package */ static final class EventMigration extends KindMigration {
+        private final int mTypeOverallMax;
+        private final SparseArray<EventEditType> mAllowedTypes = new SparseArray<EventEditType>();
+        private final Integer mDefaultYear;
+
+        public EventMigration(DataKind newDataKind, Integer defaultYear) {
+            mTypeOverallMax = newDataKind.typeOverallMax;
+            for (EditType editType : newDataKind.typeList) {
+                mAllowedTypes.put(editType.rawValue, (EventEditType) editType);
+            }
+            mDefaultYear = defaultYear;
+        }
+
+        @Override
+        public void migrate(Context context, RawContactDelta oldState,
+                RawContactDelta newState) {
+            final List<ValuesDelta> mimeEntries = ensureEntryMaxSize(mTypeOverallMax,
+                    oldState.getMimeEntries(Event.CONTENT_ITEM_TYPE));
+            if (mimeEntries == null || mimeEntries.isEmpty()) {
+                return;
+            }
+
+            Integer defaultYear = mDefaultYear;
+            for (ValuesDelta entry : mimeEntries) {
+                final ContentValues values = entry.getAfter();
+                if (values == null) {
+                    continue;
+                }
+                final String dateString = values.getAsString(Event.START_DATE);
+                final Integer type = values.getAsInteger(Event.TYPE);
+                if (type != null && (mAllowedTypes.indexOfKey(type) >= 0)
+                        && !TextUtils.isEmpty(dateString)) {
+                    EventEditType suitableType = mAllowedTypes.get(type);
+
+                    final ParsePosition position = new ParsePosition(0);
+                    boolean yearOptional = false;
+                    Date date = CommonDateUtils.DATE_AND_TIME_FORMAT.parse(dateString, position);
+                    if (date == null) {
+                        yearOptional = true;
+                        date = CommonDateUtils.NO_YEAR_DATE_FORMAT.parse(dateString, position);
+                    }
+                    if (date != null) {
+                        if (yearOptional && !suitableType.isYearOptional()) {
+                            // The new EditType doesn't allow optional year. Supply default.
+                            final Calendar calendar = Calendar.getInstance(
+                                    DateUtils.UTC_TIMEZONE, Locale.US);
+                            if (defaultYear == null) {
+                                defaultYear = calendar.get(Calendar.YEAR);
+                            }
+                            calendar.setTime(date);
+                            final int month = calendar.get(Calendar.MONTH);
+                            final int day = calendar.get(Calendar.DAY_OF_MONTH);
+                            // Exchange requires 8:00 for birthdays
+                            calendar.set(defaultYear, month, day,
+                                    EventFieldEditorView.getDefaultHourForBirthday(), 0, 0);
+                            values.put(Event.START_DATE,
+                                    CommonDateUtils.FULL_DATE_FORMAT.format(calendar.getTime()));
+                        }
+                    }
+                    newState.addEntry(ValuesDelta.fromAfter(values));
+                } else {
+                    // Just drop it.
+                }
+            }
+        }
+    }
+
+    /* package */ static final class GenericMigration extends KindMigration {
+        private final String mMimeType;
+        private final int mTypeOverallMax;
+
+        public GenericMigration(DataKind newDataKind) {
+            mMimeType = newDataKind.mimeType;
+            mTypeOverallMax = newDataKind.typeOverallMax;
+        }
+
+        @Override
+        public void migrate(Context context, RawContactDelta oldState,
+                RawContactDelta newState) {
+            final List<ValuesDelta> mimeEntries = ensureEntryMaxSize(mTypeOverallMax,
+                    oldState.getMimeEntries(mMimeType));
+            if (mimeEntries == null || mimeEntries.isEmpty()) {
+                return;
+            }
+
+            for (ValuesDelta entry : mimeEntries) {
+                ContentValues values = entry.getAfter();
+                if (values != null) {
+                    newState.addEntry(ValuesDelta.fromAfter(values));
+                }
+            }
+        }
+    }
+
+    /**
+     * Note that type specified with the old account may be invalid with the new account, while
+     * we want to preserve its data as much as possible. e.g. if a user typed a phone number
+     * with a type which is valid with an old account but not with a new account, the user
+     * probably wants to have the number with default type, rather than seeing complete data
+     * loss.
+     *
+     * Specifically, the default type and the allowed types with their specificMax are worked
+     * out when the plan is created. Then the migration iterates over the entries:
+     * 1. stop iteration if total number of entries reached typeOverallMax specified in
+     *    DataKind
+     * 2. replace unallowed types with defaultType
+     * 3. check if the number of entries is below specificMax specified in AccountType
+     */
+    /* package */ static final class GenericWithTypeMigration extends KindMigration {
+        private final String mMimeType;
+        private final int mTypeOverallMax;
+        private final Integer mDefaultType;
+        private final Set<Integer> mAllowedTypes = new HashSet<Integer>();
+        // key: type, value: the number of entries allowed for the type (specificMax)
+        private final SparseIntArray mTypeSpecificMaxMap = new SparseIntArray();
+
+        public GenericWithTypeMigration(DataKind newDataKind) {
+            mMimeType = newDataKind.mimeType;
+            mTypeOverallMax = newDataKind.typeOverallMax;
+
+            // Here, defaultType can be supplied in two ways
+            // - via kind.defaultValues
+            // - via kind.typeList.get(0).rawValue
+            Integer defaultType = null;
+            if (newDataKind.defaultValues != null) {
+                defaultType = newDataKind.defaultValues.getAsInteger(COLUMN_FOR_TYPE);
+            }
+            if (defaultType != null) {
+                mAllowedTypes.add(defaultType);
+                mTypeSpecificMaxMap.put(defaultType, -1);
+            }
+            // Note: typeList may be used in different purposes when defaultValues are
+            // specified. Especially in IM, typeList contains available protocols (e.g.
+            // PROTOCOL_GOOGLE_TALK) instead of "types" which we want to treate here (e.g.
+            // TYPE_HOME). So we don't add anything other than defaultType into allowedTypes and
+            // typeSpecificMapMax.
+            if (!Im.CONTENT_ITEM_TYPE.equals(newDataKind.mimeType) &&
+                    newDataKind.typeList != null && !newDataKind.typeList.isEmpty()) {
+                for (EditType editType : newDataKind.typeList) {
+                    mAllowedTypes.add(editType.rawValue);
+                    mTypeSpecificMaxMap.put(editType.rawValue, editType.specificMax);
+                }
+                if (defaultType == null) {
+                    defaultType = newDataKind.typeList.get(0).rawValue;
+                }
+            }
+
+            if (defaultType == null) {
+                Log.w(TAG, "Default type isn't available for mimetype " + newDataKind.mimeType);
+            }
+            mDefaultType = defaultType;
+        }
+
+        @Override
+        public void migrate(Context context, RawContactDelta oldState,
+                RawContactDelta newState) {
+            final List<ValuesDelta> mimeEntries = oldState.getMimeEntries(mMimeType);
+            if (mimeEntries == null || mimeEntries.isEmpty()) {
+                return;
+            }
+
+            // key: type, value: the number of current entries.
+            final SparseIntArray currentEntryCount = new SparseIntArray();
+            int totalCount = 0;
+
+            for (ValuesDelta entry : mimeEntries) {
+                if (mTypeOverallMax != -1 && totalCount >= mTypeOverallMax) {
+                    break;
+                }
+
+                final ContentValues values = entry.getAfter();
+                if (values == null) {
+                    continue;
+                }
+
+                final Integer oldType = entry.getAsInteger(COLUMN_FOR_TYPE);
+                final Integer typeForNewAccount;
+                if (!mAllowedTypes.contains(oldType)) {
+                    // The new account doesn't support the type.
+                    if (mDefaultType != null) {
+                        typeForNewAccount = mDefaultType.intValue();
+                        values.put(COLUMN_FOR_TYPE, mDefaultType.intValue());
+                        if (oldType != null && oldType == TYPE_CUSTOM) {
+                            values.remove(COLUMN_FOR_LABEL);
+                        }
+                    } else {
+                        typeForNewAccount = null;
+                        values.remove(COLUMN_FOR_TYPE);
+                    }
+                } else {
+                    typeForNewAccount = oldType;
+                }
+                if (typeForNewAccount != null) {
+                    final int specificMax = mTypeSpecificMaxMap.get(typeForNewAccount, 0);
+                    if (specificMax >= 0) {
+                        final int currentCount = currentEntryCount.get(typeForNewAccount, 0);
+                        if (currentCount >= specificMax) {
+                            continue;
+                        }
+                        currentEntryCount.put(typeForNewAccount, currentCount + 1);
+                    }
+                }
+                newState.addEntry(ValuesDelta.fromAfter(values));
+                totalCount++;
+            }
+        }
+    }
+}
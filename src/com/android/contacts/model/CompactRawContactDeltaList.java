@@ -0,0 +1,506 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.model;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.provider.BaseColumns;
+import android.provider.ContactsContract.Data;
+import android.provider.ContactsContract.RawContacts;
+import android.util.Log;
+
+import com.android.contacts.common.model.ValuesDelta;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Carries a {@link RawContactDeltaList} to the {@link com.android.contacts.ContactSaveService}
+ * in a smaller parcel than the list itself.
+ *
+ * Only what saving needs is written:
+ * <ul>
+ * <li>Unchanged children are reduced to their id and mimetype, enough for
+ * {@link RawContactModifier#trimEmpty} to count them.</li>
+ * <li>The raw contact values only keep the id, version and account, which the version asserts
+ * and the trimming use, plus the changed columns.</li>
+ * <li>Changed and inserted children are written in full.</li>
+ * </ul>
+ * Column names and mimetypes are written once and referenced by index afterwards. Blobs larger
+ * than {@link #MAX_INLINE_BLOB_SIZE} are passed in files in the cache directory instead of
+ * the parcel, as intents can't carry file descriptors. The sender writes these files with
+ * {@link #writeBlobs} before parceling, off the UI thread, and the receiver deletes them
+ * through {@link #release} once the save is done.
+ *
+ * The list returned by {@link #getState} is meant to be saved, not edited: unchanged rows
+ * that were deleted in the meantime can't be restored from their stubs.
+ */
+public final class CompactRawContactDeltaList implements Parcelable {
+    private static final String TAG = CompactRawContactDeltaList.class.getSimpleName();
+
+    /** Blobs larger than this are passed by file. */
+    @VisibleForTesting
+    /* package */ static final int MAX_INLINE_BLOB_SIZE = 16 * 1024;
+
+    private static final String BLOB_DIRECTORY = "save_blobs";
+
+    /** Blob files older than this were never picked up and are deleted. */
+    private static final long MAX_BLOB_FILE_AGE_MS = 24 * 60 * 60 * 1000;
+
+    /** The raw contact columns that saving reads besides the changed ones. */
+    private static final String[] RAW_CONTACT_COLUMNS = new String[] {
+            RawContacts._ID, RawContacts.VERSION, RawContacts.ACCOUNT_NAME,
+            RawContacts.ACCOUNT_TYPE, RawContacts.DATA_SET };
+
+    // How a ValuesDelta is written
+    private static final int ENTRY_STUB = 0;
+    private static final int ENTRY_INSERT = 1;
+    private static final int ENTRY_EXISTING = 2;
+    private static final int ENTRY_DELETED = 3;
+
+    // How a value is written
+    private static final int VALUE_NULL = 0;
+    private static final int VALUE_STRING = 1;
+    private static final int VALUE_LONG = 2;
+    private static final int VALUE_INTEGER = 3;
+    private static final int VALUE_BLOB = 4;
+    private static final int VALUE_BLOB_FILE = 5;
+    private static final int VALUE_OTHER = 6;
+
+    /** Written instead of a string index for a string that is not in the table yet. */
+    private static final int NEW_STRING = -1;
+
+    /** The columns written for a deleted child. */
+    private static final String[] DELETED_DATA_COLUMNS = new String[] {
+            BaseColumns._ID, Data.MIMETYPE };
+
+    private final RawContactDeltaList mState;
+    /** Where large blobs go when writing. */
+    private final File mBlobDirectory;
+    /** Files of the blobs written by {@link #writeBlobs}, which are parceled by path. */
+    private final IdentityHashMap<byte[], File> mWrittenBlobs =
+            new IdentityHashMap<byte[], File>();
+    /** Files of the blobs that were read, to be deleted by {@link #release}. */
+    private final ArrayList<File> mReadBlobs = Lists.newArrayList();
+    /** Whether a blob file couldn't be read, in which case the state is incomplete. */
+    private boolean mMissingBlobs;
+
+    public CompactRawContactDeltaList(Context context, RawContactDeltaList state) {
+        mState = state;
+        mBlobDirectory = new File(context.getCacheDir(), BLOB_DIRECTORY);
+    }
+
+    private CompactRawContactDeltaList(Parcel source) {
+        mState = new RawContactDeltaList();
+        mBlobDirectory = null;
+        new Reader(source).readList(mState);
+    }
+
+    /**
+     * Returns the state to save, or null if a blob file was lost and the state is incomplete.
+     */
+    public RawContactDeltaList getState() {
+        return mMissingBlobs ? null : mState;
+    }
+
+    /**
+     * Writes the blobs larger than {@link #MAX_INLINE_BLOB_SIZE} of the changed children to
+     * files, so that they are parceled by path. This does disk I/O and must be called off the
+     * UI thread, before the list is parceled. Blobs that can't be written are parceled inline.
+     */
+    public void writeBlobs() {
+        if (mBlobDirectory == null) return;
+        if (!mBlobDirectory.isDirectory() && !mBlobDirectory.mkdirs()) {
+            Log.w(TAG, "Unable to create " + mBlobDirectory + ", passing blobs inline");
+            return;
+        }
+        deleteStaleBlobFiles(mBlobDirectory);
+        for (RawContactDelta delta : mState) {
+            for (ValuesDelta entry : delta.getAllEntries()) {
+                final ContentValues after = entry.getAfter();
+                if (after != null && RawContactDelta.isChanged(entry)) {
+                    writeBlobs(after);
+                }
+            }
+        }
+    }
+
+    private void writeBlobs(ContentValues values) {
+        for (Map.Entry<String, Object> value : values.valueSet()) {
+            if (!(value.getValue() instanceof byte[])) continue;
+            final byte[] blob = (byte[]) value.getValue();
+            if (blob.length <= MAX_INLINE_BLOB_SIZE || mWrittenBlobs.containsKey(blob)) continue;
+            File file = null;
+            try {
+                file = File.createTempFile("blob", null, mBlobDirectory);
+                final FileOutputStream out = new FileOutputStream(file);
+                try {
+                    out.write(blob);
+                } finally {
+                    out.close();
+                }
+                mWrittenBlobs.put(blob, file);
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to write blob, passing it inline", e);
+                if (file != null) file.delete();
+            }
+        }
+    }
+
+    /**
+     * Deletes the files of the large blobs, after the state was saved.
+     */
+    public void release() {
+        for (File file : mReadBlobs) {
+            file.delete();
+        }
+        mReadBlobs.clear();
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        new Writer(dest).writeList(mState);
+    }
+
+    public static final Parcelable.Creator<CompactRawContactDeltaList> CREATOR =
+            new Parcelable.Creator<CompactRawContactDeltaList>() {
+        @Override
+        public CompactRawContactDeltaList createFromParcel(Parcel in) {
+            return new CompactRawContactDeltaList(in);
+        }
+
+        @Override
+        public CompactRawContactDeltaList[] newArray(int size) {
+            return new CompactRawContactDeltaList[size];
+        }
+    };
+
+    private final class Writer {
+        private final Parcel mDest;
+        private final HashMap<String, Integer> mStrings = Maps.newHashMap();
+
+        public Writer(Parcel dest) {
+            mDest = dest;
+        }
+
+        public void writeList(RawContactDeltaList state) {
+            mDest.writeInt(state.size());
+            for (RawContactDelta delta : state) {
+                writeDelta(delta);
+            }
+            mDest.writeLongArray(state.getJoinWithRawContactIds());
+            mDest.writeInt(state.isMarkedForSplitting() ? 1 : 0);
+        }
+
+        private void writeDelta(RawContactDelta delta) {
+            mDest.writeInt(delta.isProfile() ? 1 : 0);
+            writeEntry(delta.getValues(), RAW_CONTACT_COLUMNS);
+
+            final ArrayList<ValuesDelta> entries = delta.getAllEntries();
+            mDest.writeInt(entries.size());
+            for (ValuesDelta entry : entries) {
+                if (RawContactDelta.isChanged(entry)) {
+                    writeEntry(entry, entry.isDelete() ? DELETED_DATA_COLUMNS : null);
+                } else {
+                    mDest.writeInt(ENTRY_STUB);
+                    writeValue(entry.getId());
+                    writeString(entry.getMimetype());
+                }
+            }
+        }
+
+        /**
+         * Writes a full entry. If {@code beforeColumns} is given, only these and the changed
+         * columns of the "before" values are written.
+         */
+        private void writeEntry(ValuesDelta entry, String[] beforeColumns) {
+            if (entry.isInsert()) {
+                mDest.writeInt(ENTRY_INSERT);
+                writeValues(entry.getAfter());
+                return;
+            }
+
+            final ContentValues after = entry.getAfter();
+            mDest.writeInt(after == null ? ENTRY_DELETED : ENTRY_EXISTING);
+            ContentValues before = entry.getBefore();
+            if (beforeColumns != null) {
+                final ContentValues columns = new ContentValues();
+                for (String column : beforeColumns) {
+                    copyValue(before, columns, column);
+                }
+                if (after != null) {
+                    for (String column : after.keySet()) {
+                        copyValue(before, columns, column);
+                    }
+                }
+                before = columns;
+            }
+            writeValues(before);
+            if (after != null) {
+                writeValues(after);
+            }
+        }
+
+        private void copyValue(ContentValues from, ContentValues to, String column) {
+            if (from.containsKey(column)) {
+                putValue(to, column, from.get(column));
+            }
+        }
+
+        private void writeValues(ContentValues values) {
+            mDest.writeInt(values.size());
+            for (Map.Entry<String, Object> entry : values.valueSet()) {
+                writeString(entry.getKey());
+                writeValue(entry.getValue());
+            }
+        }
+
+        private void writeValue(Object value) {
+            if (value == null) {
+                mDest.writeInt(VALUE_NULL);
+            } else if (value instanceof String) {
+                mDest.writeInt(VALUE_STRING);
+                mDest.writeString((String) value);
+            } else if (value instanceof Long) {
+                mDest.writeInt(VALUE_LONG);
+                mDest.writeLong((Long) value);
+            } else if (value instanceof Integer) {
+                mDest.writeInt(VALUE_INTEGER);
+                mDest.writeInt((Integer) value);
+            } else if (value instanceof byte[]) {
+                writeBlob((byte[]) value);
+            } else {
+                mDest.writeInt(VALUE_OTHER);
+                mDest.writeValue(value);
+            }
+        }
+
+        private void writeBlob(byte[] blob) {
+            final File file = mWrittenBlobs.get(blob);
+            if (file == null) {
+                mDest.writeInt(VALUE_BLOB);
+                mDest.writeByteArray(blob);
+            } else {
+                mDest.writeInt(VALUE_BLOB_FILE);
+                mDest.writeString(file.getAbsolutePath());
+            }
+        }
+
+        private void writeString(String string) {
+            if (string == null) {
+                mDest.writeInt(NEW_STRING);
+                mDest.writeString(null);
+                return;
+            }
+            final Integer index = mStrings.get(string);
+            if (index != null) {
+                mDest.writeInt(index);
+            } else {
+                mStrings.put(string, mStrings.size());
+                mDest.writeInt(NEW_STRING);
+                mDest.writeString(string);
+            }
+        }
+    }
+
+    private final class Reader {
+        private final Parcel mSource;
+        private final ArrayList<String> mStrings = Lists.newArrayList();
+
+        public Reader(Parcel source) {
+            mSource = source;
+        }
+
+        public void readList(RawContactDeltaList state) {
+            final int size = mSource.readInt();
+            for (int i = 0; i < size; i++) {
+                state.add(readDelta());
+            }
+            final long[] joinWithRawContactIds = mSource.createLongArray();
+            if (joinWithRawContactIds != null) {
+                state.setJoinWithRawContacts(joinWithRawContactIds);
+            }
+            if (mSource.readInt() != 0) {
+                state.markRawContactsForSplitting();
+            }
+        }
+
+        private RawContactDelta readDelta() {
+            final boolean isProfile = mSource.readInt() != 0;
+            final ValuesDelta values = readEntry(mSource.readInt());
+            values.setIdColumn(RawContacts._ID);
+            final RawContactDelta delta = new RawContactDelta(values);
+            if (isProfile) {
+                delta.setProfileQueryUri();
+            }
+
+            final int size = mSource.readInt();
+            for (int i = 0; i < size; i++) {
+                final int type = mSource.readInt();
+                if (type == ENTRY_STUB) {
+                    final ContentValues before = new ContentValues();
+                    before.put(BaseColumns._ID, (Long) readValue());
+                    before.put(Data.MIMETYPE, readString());
+                    delta.addStubEntry(ValuesDelta.fromBefore(before));
+                } else {
+                    delta.addEntry(readEntry(type), true);
+                }
+            }
+            return delta;
+        }
+
+        private ValuesDelta readEntry(int type) {
+            if (type == ENTRY_INSERT) {
+                final ContentValues after = readValues();
+                final Long id = after.getAsLong(BaseColumns._ID);
+                final ValuesDelta entry = ValuesDelta.fromAfter(after);
+                if (id != null) {
+                    // Keep the temporary id instead of the new one fromAfter() assigned
+                    entry.getAfter().put(BaseColumns._ID, id);
+                }
+                return entry;
+            }
+
+            final ValuesDelta entry = ValuesDelta.fromBefore(readValues());
+            if (type == ENTRY_DELETED) {
+                entry.markDeleted();
+            } else {
+                entry.getAfter().putAll(readValues());
+            }
+            return entry;
+        }
+
+        private ContentValues readValues() {
+            final int size = mSource.readInt();
+            final ContentValues values = new ContentValues();
+            for (int i = 0; i < size; i++) {
+                final String key = readString();
+                putValue(values, key, readValue());
+            }
+            return values;
+        }
+
+        private Object readValue() {
+            switch (mSource.readInt()) {
+                case VALUE_NULL:
+                    return null;
+                case VALUE_STRING:
+                    return mSource.readString();
+                case VALUE_LONG:
+                    return mSource.readLong();
+                case VALUE_INTEGER:
+                    return mSource.readInt();
+                case VALUE_BLOB:
+                    return mSource.createByteArray();
+                case VALUE_BLOB_FILE:
+                    return readBlobFile(new File(mSource.readString()));
+                case VALUE_OTHER:
+                    return mSource.readValue(getClass().getClassLoader());
+                default:
+                    throw new IllegalStateException("Unknown value type");
+            }
+        }
+
+        private byte[] readBlobFile(File file) {
+            mReadBlobs.add(file);
+            try {
+                final FileInputStream in = new FileInputStream(file);
+                try {
+                    final byte[] blob = new byte[(int) file.length()];
+                    int offset = 0;
+                    while (offset < blob.length) {
+                        final int count = in.read(blob, offset, blob.length - offset);
+                        if (count < 0) throw new IOException("Unexpected end of " + file);
+                        offset += count;
+                    }
+                    return blob;
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Unable to read blob from " + file, e);
+                mMissingBlobs = true;
+                return null;
+            }
+        }
+
+        private String readString() {
+            final int index = mSource.readInt();
+            if (index != NEW_STRING) {
+                return mStrings.get(index);
+            }
+            final String string = mSource.readString();
+            if (string != null) {
+                mStrings.add(string);
+            }
+            return string;
+        }
+    }
+
+    private static void putValue(ContentValues values, String key, Object value) {
+        if (value == null) {
+            values.putNull(key);
+        } else if (value instanceof String) {
+            values.put(key, (String) value);
+        } else if (value instanceof Long) {
+            values.put(key, (Long) value);
+        } else if (value instanceof Integer) {
+            values.put(key, (Integer) value);
+        } else if (value instanceof byte[]) {
+            values.put(key, (byte[]) value);
+        } else if (value instanceof Boolean) {
+            values.put(key, (Boolean) value);
+        } else if (value instanceof Double) {
+            values.put(key, (Double) value);
+        } else if (value instanceof Float) {
+            values.put(key, (Float) value);
+        } else if (value instanceof Short) {
+            values.put(key, (Short) value);
+        } else if (value instanceof Byte) {
+            values.put(key, (Byte) value);
+        } else {
+            values.put(key, value.toString());
+        }
+    }
+
+    private static void deleteStaleBlobFiles(File directory) {
+        final File[] files = directory.listFiles();
+        if (files == null) return;
+        final long oldest = System.currentTimeMillis() - MAX_BLOB_FILE_AGE_MS;
+        for (File file : files) {
+            if (file.lastModified() < oldest) {
+                file.delete();
+            }
+        }
+    }
+}
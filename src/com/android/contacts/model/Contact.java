@@ -18,6 +18,7 @@ package com.android.contacts.model;
 
 import android.content.ContentValues;
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.net.Uri;
 import android.provider.ContactsContract.CommonDataKinds.Photo;
 import android.provider.ContactsContract.Data;
@@ -26,6 +27,7 @@ import android.provider.ContactsContract.DisplayNameSources;
 
 import com.android.contacts.GroupMetaData;
 import com.android.contacts.common.model.account.AccountType;
+import com.android.contacts.common.util.UriUtils;
 import com.android.contacts.util.DataStatus;
 import com.android.contacts.util.StreamItemEntry;
 import com.google.common.annotations.VisibleForTesting;
@@ -43,8 +45,8 @@ import java.util.ArrayList;
  * also possible for users to manually split and join raw contacts into various contacts.
  *
  * Only the {@link ContactLoader} class can create a Contact object with various flags to allow
- * partial loading of contact data.  Thus, an instance of this class should be treated as
- * a read-only object.
+ * partial loading of contact data.  Contacts are immutable, so the same instance can be handed
+ * to several consumers on different threads; new versions are derived through {@link Builder}.
  */
 public class Contact {
     private enum Status {
@@ -71,20 +73,22 @@ public class Contact {
     private final String mPhoneticName;
     private final boolean mStarred;
     private final Integer mPresence;
-    private ImmutableList<RawContact> mRawContacts;
-    private ImmutableList<StreamItemEntry> mStreamItems;
-    private ImmutableMap<Long,DataStatus> mStatuses;
-    private ImmutableList<AccountType> mInvitableAccountTypes;
-
-    private String mDirectoryDisplayName;
-    private String mDirectoryType;
-    private String mDirectoryAccountType;
-    private String mDirectoryAccountName;
-    private int mDirectoryExportSupport;
-
-    private ImmutableList<GroupMetaData> mGroups;
-
-    private byte[] mPhotoBinaryData;
+    private final ImmutableList<RawContact> mRawContacts;
+    private final ImmutableList<StreamItemEntry> mStreamItems;
+    private final boolean mHasMoreStreamItems;
+    private final ImmutableMap<Long,DataStatus> mStatuses;
+    private final ImmutableList<AccountType> mInvitableAccountTypes;
+
+    private final String mDirectoryDisplayName;
+    private final String mDirectoryType;
+    private final String mDirectoryAccountType;
+    private final String mDirectoryAccountName;
+    private final int mDirectoryExportSupport;
+
+    private final ImmutableList<GroupMetaData> mGroups;
+
+    private final byte[] mPhotoBinaryData;
+    private final Bitmap mPhotoBitmap;
     private final boolean mSendToVoicemail;
     private final String mCustomRingtone;
     private final boolean mIsUserProfile;
@@ -119,7 +123,16 @@ public class Contact {
         mPhoneticName = null;
         mStarred = false;
         mPresence = null;
+        mHasMoreStreamItems = false;
         mInvitableAccountTypes = null;
+        mDirectoryDisplayName = null;
+        mDirectoryType = null;
+        mDirectoryAccountType = null;
+        mDirectoryAccountName = null;
+        mDirectoryExportSupport = 0;
+        mGroups = null;
+        mPhotoBinaryData = null;
+        mPhotoBitmap = null;
         mSendToVoicemail = false;
         mCustomRingtone = null;
         mIsUserProfile = false;
@@ -133,92 +146,229 @@ public class Contact {
         return new Contact(requestedUri, Status.NOT_FOUND, null);
     }
 
-    /**
-     * Constructor to call when contact was found
-     */
-    public Contact(Uri requestedUri, Uri uri, Uri lookupUri, long directoryId, String lookupKey,
-            long id, long nameRawContactId, int displayNameSource, long photoId,
-            String photoUri, String displayName, String altDisplayName, String phoneticName,
-            boolean starred, Integer presence, boolean sendToVoicemail, String customRingtone,
-            boolean isUserProfile) {
+    private Contact(Builder builder) {
         mStatus = Status.LOADED;
         mException = null;
-        mRequestedUri = requestedUri;
-        mLookupUri = lookupUri;
-        mUri = uri;
-        mDirectoryId = directoryId;
-        mLookupKey = lookupKey;
-        mId = id;
-        mRawContacts = null;
-        mStreamItems = null;
-        mStatuses = null;
-        mNameRawContactId = nameRawContactId;
-        mDisplayNameSource = displayNameSource;
-        mPhotoId = photoId;
-        mPhotoUri = photoUri;
-        mDisplayName = displayName;
-        mAltDisplayName = altDisplayName;
-        mPhoneticName = phoneticName;
-        mStarred = starred;
-        mPresence = presence;
-        mInvitableAccountTypes = null;
-        mSendToVoicemail = sendToVoicemail;
-        mCustomRingtone = customRingtone;
-        mIsUserProfile = isUserProfile;
+        mRequestedUri = builder.mRequestedUri;
+        mLookupUri = builder.mLookupUri;
+        mUri = builder.mUri;
+        mDirectoryId = builder.mDirectoryId;
+        mLookupKey = builder.mLookupKey;
+        mId = builder.mId;
+        mNameRawContactId = builder.mNameRawContactId;
+        mDisplayNameSource = builder.mDisplayNameSource;
+        mPhotoId = builder.mPhotoId;
+        mPhotoUri = builder.mPhotoUri;
+        mDisplayName = builder.mDisplayName;
+        mAltDisplayName = builder.mAltDisplayName;
+        mPhoneticName = builder.mPhoneticName;
+        mStarred = builder.mStarred;
+        mPresence = builder.mPresence;
+        mRawContacts = builder.mRawContacts;
+        mStreamItems = builder.mStreamItems;
+        mHasMoreStreamItems = builder.mHasMoreStreamItems;
+        mStatuses = builder.mStatuses;
+        mInvitableAccountTypes = builder.mInvitableAccountTypes;
+
+        mDirectoryDisplayName = builder.mDirectoryDisplayName;
+        mDirectoryType = builder.mDirectoryType;
+        mDirectoryAccountType = builder.mDirectoryAccountType;
+        mDirectoryAccountName = builder.mDirectoryAccountName;
+        mDirectoryExportSupport = builder.mDirectoryExportSupport;
+
+        mGroups = builder.mGroups;
+
+        mPhotoBinaryData = builder.mPhotoBinaryData;
+        mPhotoBitmap = builder.mPhotoBitmap;
+        mSendToVoicemail = builder.mSendToVoicemail;
+        mCustomRingtone = builder.mCustomRingtone;
+        mIsUserProfile = builder.mIsUserProfile;
     }
 
-    public Contact(Uri requestedUri, Contact from) {
-        mRequestedUri = requestedUri;
+    /**
+     * Builds a loaded {@link Contact}. A builder created from an existing contact starts with
+     * all of its parts, so a new version of a contact shares the parts that didn't change, like
+     * the raw contacts, statuses or photo, with the previous one.
+     *
+     * The setters of a builder may be called from different threads as long as each part is
+     * only set by one thread and {@link #build} happens after all of them.
+     */
+    public static final class Builder {
+        private Uri mRequestedUri;
+        private final Uri mLookupUri;
+        private final Uri mUri;
+        private final long mDirectoryId;
+        private final String mLookupKey;
+        private final long mId;
+        private final long mNameRawContactId;
+        private final int mDisplayNameSource;
+        private final long mPhotoId;
+        private final String mPhotoUri;
+        private final String mDisplayName;
+        private final String mAltDisplayName;
+        private final String mPhoneticName;
+        private final boolean mStarred;
+        private final Integer mPresence;
+        private ImmutableList<RawContact> mRawContacts;
+        private ImmutableList<StreamItemEntry> mStreamItems;
+        private boolean mHasMoreStreamItems;
+        private ImmutableMap<Long,DataStatus> mStatuses;
+        private ImmutableList<AccountType> mInvitableAccountTypes;
+
+        private String mDirectoryDisplayName;
+        private String mDirectoryType;
+        private String mDirectoryAccountType;
+        private String mDirectoryAccountName;
+        private int mDirectoryExportSupport;
+
+        private ImmutableList<GroupMetaData> mGroups;
+
+        private byte[] mPhotoBinaryData;
+        private Bitmap mPhotoBitmap;
+        private final boolean mSendToVoicemail;
+        private final String mCustomRingtone;
+        private final boolean mIsUserProfile;
+
+        /**
+         * Starts a contact that was found, from its header data.
+         */
+        public Builder(Uri requestedUri, Uri uri, Uri lookupUri, long directoryId,
+                String lookupKey, long id, long nameRawContactId, int displayNameSource,
+                long photoId, String photoUri, String displayName, String altDisplayName,
+                String phoneticName, boolean starred, Integer presence, boolean sendToVoicemail,
+                String customRingtone, boolean isUserProfile) {
+            mRequestedUri = requestedUri;
+            mLookupUri = lookupUri;
+            mUri = uri;
+            mDirectoryId = directoryId;
+            mLookupKey = lookupKey;
+            mId = id;
+            mNameRawContactId = nameRawContactId;
+            mDisplayNameSource = displayNameSource;
+            mPhotoId = photoId;
+            mPhotoUri = photoUri;
+            mDisplayName = displayName;
+            mAltDisplayName = altDisplayName;
+            mPhoneticName = phoneticName;
+            mStarred = starred;
+            mPresence = presence;
+            mSendToVoicemail = sendToVoicemail;
+            mCustomRingtone = customRingtone;
+            mIsUserProfile = isUserProfile;
+        }
+
+        /**
+         * Starts a new version of a loaded contact.
+         */
+        public Builder(Contact from) {
+            if (!from.isLoaded()) {
+                throw new IllegalArgumentException("Contact is not loaded: " + from);
+            }
+            mRequestedUri = from.mRequestedUri;
+            mLookupUri = from.mLookupUri;
+            mUri = from.mUri;
+            mDirectoryId = from.mDirectoryId;
+            mLookupKey = from.mLookupKey;
+            mId = from.mId;
+            mNameRawContactId = from.mNameRawContactId;
+            mDisplayNameSource = from.mDisplayNameSource;
+            mPhotoId = from.mPhotoId;
+            mPhotoUri = from.mPhotoUri;
+            mDisplayName = from.mDisplayName;
+            mAltDisplayName = from.mAltDisplayName;
+            mPhoneticName = from.mPhoneticName;
+            mStarred = from.mStarred;
+            mPresence = from.mPresence;
+            mRawContacts = from.mRawContacts;
+            mStreamItems = from.mStreamItems;
+            mHasMoreStreamItems = from.mHasMoreStreamItems;
+            mStatuses = from.mStatuses;
+            mInvitableAccountTypes = from.mInvitableAccountTypes;
+
+            mDirectoryDisplayName = from.mDirectoryDisplayName;
+            mDirectoryType = from.mDirectoryType;
+            mDirectoryAccountType = from.mDirectoryAccountType;
+            mDirectoryAccountName = from.mDirectoryAccountName;
+            mDirectoryExportSupport = from.mDirectoryExportSupport;
+
+            mGroups = from.mGroups;
+
+            mPhotoBinaryData = from.mPhotoBinaryData;
+            mPhotoBitmap = from.mPhotoBitmap;
+            mSendToVoicemail = from.mSendToVoicemail;
+            mCustomRingtone = from.mCustomRingtone;
+            mIsUserProfile = from.mIsUserProfile;
+        }
+
+        public Builder setRequestedUri(Uri requestedUri) {
+            mRequestedUri = requestedUri;
+            return this;
+        }
+
+        public Builder setRawContacts(ImmutableList<RawContact> rawContacts) {
+            mRawContacts = rawContacts;
+            return this;
+        }
+
+        public Builder setStatuses(ImmutableMap<Long, DataStatus> statuses) {
+            mStatuses = statuses;
+            return this;
+        }
 
-        mStatus = from.mStatus;
-        mException = from.mException;
-        mLookupUri = from.mLookupUri;
-        mUri = from.mUri;
-        mDirectoryId = from.mDirectoryId;
-        mLookupKey = from.mLookupKey;
-        mId = from.mId;
-        mNameRawContactId = from.mNameRawContactId;
-        mDisplayNameSource = from.mDisplayNameSource;
-        mPhotoId = from.mPhotoId;
-        mPhotoUri = from.mPhotoUri;
-        mDisplayName = from.mDisplayName;
-        mAltDisplayName = from.mAltDisplayName;
-        mPhoneticName = from.mPhoneticName;
-        mStarred = from.mStarred;
-        mPresence = from.mPresence;
-        mRawContacts = from.mRawContacts;
-        mStreamItems = from.mStreamItems;
-        mStatuses = from.mStatuses;
-        mInvitableAccountTypes = from.mInvitableAccountTypes;
-
-        mDirectoryDisplayName = from.mDirectoryDisplayName;
-        mDirectoryType = from.mDirectoryType;
-        mDirectoryAccountType = from.mDirectoryAccountType;
-        mDirectoryAccountName = from.mDirectoryAccountName;
-        mDirectoryExportSupport = from.mDirectoryExportSupport;
-
-        mGroups = from.mGroups;
-
-        mPhotoBinaryData = from.mPhotoBinaryData;
-        mSendToVoicemail = from.mSendToVoicemail;
-        mCustomRingtone = from.mCustomRingtone;
-        mIsUserProfile = from.mIsUserProfile;
+        public Builder setInvitableAccountTypes(ImmutableList<AccountType> accountTypes) {
+            mInvitableAccountTypes = accountTypes;
+            return this;
+        }
+
+        public Builder setGroupMetaData(ImmutableList<GroupMetaData> groups) {
+            mGroups = groups;
+            return this;
+        }
+
+        public Builder setStreamItems(ImmutableList<StreamItemEntry> streamItems,
+                boolean hasMoreStreamItems) {
+            mStreamItems = streamItems;
+            mHasMoreStreamItems = hasMoreStreamItems;
+            return this;
+        }
+
+        /**
+         * @param exportSupport See {@link Directory#EXPORT_SUPPORT}.
+         */
+        public Builder setDirectoryMetaData(String displayName, String directoryType,
+                String accountType, String accountName, int exportSupport) {
+            mDirectoryDisplayName = displayName;
+            mDirectoryType = directoryType;
+            mDirectoryAccountType = accountType;
+            mDirectoryAccountName = accountName;
+            mDirectoryExportSupport = exportSupport;
+            return this;
+        }
+
+        public Builder setPhotoBinaryData(byte[] photoBinaryData) {
+            mPhotoBinaryData = photoBinaryData;
+            return this;
+        }
+
+        public Builder setPhotoBitmap(Bitmap photoBitmap) {
+            mPhotoBitmap = photoBitmap;
+            return this;
+        }
+
+        public Contact build() {
+            return new Contact(this);
+        }
     }
 
     /**
-     * @param exportSupport See {@link Directory#EXPORT_SUPPORT}.
+     * Returns this contact as requested through the given Uri. As contacts are immutable, the
+     * same instance is returned if the Uri doesn't change.
      */
-    public void setDirectoryMetaData(String displayName, String directoryType,
-            String accountType, String accountName, int exportSupport) {
-        mDirectoryDisplayName = displayName;
-        mDirectoryType = directoryType;
-        mDirectoryAccountType = accountType;
-        mDirectoryAccountName = accountName;
-        mDirectoryExportSupport = exportSupport;
-    }
-
-    /* package */ void setPhotoBinaryData(byte[] photoBinaryData) {
-        mPhotoBinaryData = photoBinaryData;
+    public Contact withRequestedUri(Uri requestedUri) {
+        if (UriUtils.areEqual(mRequestedUri, requestedUri)) {
+            return this;
+        }
+        return new Builder(this).setRequestedUri(requestedUri).build();
     }
 
     /**
@@ -357,6 +507,14 @@ public class Contact {
         return mStreamItems;
     }
 
+    /**
+     * Returns true if only the most recent stream items were loaded and there are older ones
+     * that can be loaded with {@link ContactLoader#loadMoreStreamItems()}.
+     */
+    public boolean hasMoreStreamItems() {
+        return mHasMoreStreamItems;
+    }
+
     public ImmutableMap<Long, DataStatus> getStatuses() {
         return mStatuses;
     }
@@ -417,10 +575,23 @@ public class Contact {
         return mDirectoryAccountName;
     }
 
+    /**
+     * Returns the photo as read from the provider, or null if there is no photo or it was
+     * downsampled to {@link #getPhotoBitmap()} while loading.
+     */
     public byte[] getPhotoBinaryData() {
         return mPhotoBinaryData;
     }
 
+    /**
+     * Returns the photo decoded to the size requested with
+     * {@link ContactLoader#setPhotoTargetSize}, or null if the photo wasn't decoded while
+     * loading. In that case, {@link #getPhotoBinaryData()} has to be decoded instead.
+     */
+    public Bitmap getPhotoBitmap() {
+        return mPhotoBitmap;
+    }
+
     public ArrayList<ContentValues> getContentValues() {
         if (mRawContacts.size() != 1) {
             throw new IllegalStateException(
@@ -468,24 +639,4 @@ public class Contact {
         return "{requested=" + mRequestedUri + ",lookupkey=" + mLookupKey +
                 ",uri=" + mUri + ",status=" + mStatus + "}";
     }
-
-    /* package */ void setRawContacts(ImmutableList<RawContact> rawContacts) {
-        mRawContacts = rawContacts;
-    }
-
-    /* package */ void setStatuses(ImmutableMap<Long, DataStatus> statuses) {
-        mStatuses = statuses;
-    }
-
-    /* package */ void setInvitableAccountTypes(ImmutableList<AccountType> accountTypes) {
-        mInvitableAccountTypes = accountTypes;
-    }
-
-    /* package */ void setGroupMetaData(ImmutableList<GroupMetaData> groups) {
-        mGroups = groups;
-    }
-
-    /* package */ void setStreamItems(ImmutableList<StreamItemEntry> streamItems) {
-        mStreamItems = streamItems;
-    }
 }
@@ -0,0 +1,383 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.model;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.provider.ContactsContract.Contacts;
+import android.provider.ContactsContract.RawContacts;
+import android.util.Log;
+import android.util.LongSparseArray;
+import android.util.LruCache;
+
+import com.android.contacts.util.StreamItemEntry;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A process-wide, size-bounded LRU of fully loaded {@link Contact} objects, keyed by lookup URI.
+ *
+ * Entries are sized by a rough estimate of their retained heap (photo bytes, data rows and
+ * stream items), so a handful of contacts with large photos evict each other before a long
+ * list of photo-less contacts does. Entries are dropped when the contact changes: the
+ * {@link ContactLoader} that shows a contact invalidates it from its content observer, and
+ * after changes to the contacts provider the cache compares the raw contact versions of its
+ * entries with one query and evicts only the contacts that changed. A burst of changes, as
+ * written by a sync, is checked once after it settled.
+ *
+ * Loads take a generation before they start and pass it to {@link #put(Contact, int)}. The
+ * cache remembers when each recently invalidated lookup URI was invalidated, so that a load
+ * that raced with the invalidation of its own contact doesn't store its stale result, while
+ * loads of other contacts are kept. A load that raced with a change to the provider is stored
+ * and checked by the next version check.
+ */
+public final class ContactCache {
+    private static final String TAG = ContactCache.class.getSimpleName();
+
+    private static final boolean DEBUG = Log.isLoggable(TAG, Log.DEBUG);
+
+    /** Fraction of the heap limit that the cache may use, expressed as a divisor. */
+    private static final int HEAP_FRACTION = 32;
+
+    /** Estimated retained size of a contact without any data rows, in bytes. */
+    private static final int BASE_CONTACT_SIZE = 1024;
+
+    /** Estimated retained size of a single data row, in bytes. */
+    private static final int DATA_ROW_SIZE = 512;
+
+    /** Estimated retained size of a single stream item, in bytes. */
+    private static final int STREAM_ITEM_SIZE = 2048;
+
+    /** How long the cache waits for changes to settle before checking its entries. */
+    private static final long VERIFY_DELAY_MS = 500;
+
+    /** Number of invalidated lookup URIs whose generation is remembered. */
+    private static final int MAX_INVALIDATIONS = 64;
+
+    private static final String[] VERSION_COLUMNS = new String[] {
+        RawContacts.CONTACT_ID,
+        RawContacts._ID,
+        RawContacts.VERSION,
+    };
+
+    private static ContactCache sInstance;
+
+    private final LruCache<Uri, Contact> mCache;
+    private ContentObserver mObserver;
+    private ContentResolver mResolver;
+    private Handler mVerifyHandler;
+    private int mInvalidationCount;
+    /** Incremented on every invalidation and on every change to the provider. */
+    private int mGeneration;
+    /** The generation of the last change to the provider. */
+    private int mChangeGeneration;
+    /** Loads that started before this generation are not stored at all. */
+    private int mMinGeneration;
+    /** The generation at which each recently invalidated lookup URI was invalidated. */
+    private final LinkedHashMap<Uri, Integer> mInvalidations = Maps.newLinkedHashMap();
+
+    private final Runnable mVerifyRunnable = new Runnable() {
+        @Override
+        public void run() {
+            verify(mResolver);
+        }
+    };
+
+    @VisibleForTesting
+    /* package */ ContactCache(int maxSizeKb) {
+        mCache = new LruCache<Uri, Contact>(maxSizeKb) {
+            @Override
+            protected int sizeOf(Uri key, Contact value) {
+                return estimateSizeKb(value);
+            }
+        };
+    }
+
+    public static synchronized ContactCache getInstance(Context context) {
+        if (sInstance == null) {
+            final long maxMemoryKb = Runtime.getRuntime().maxMemory() / 1024;
+            sInstance = new ContactCache((int) (maxMemoryKb / HEAP_FRACTION));
+            sInstance.registerObserver(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    public static synchronized void setInstanceForTest(ContactCache cache) {
+        sInstance = cache;
+    }
+
+    private void registerObserver(Context context) {
+        final HandlerThread thread =
+                new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        mVerifyHandler = new Handler(thread.getLooper());
+        mResolver = context.getContentResolver();
+        mObserver = new ContentObserver(mVerifyHandler) {
+            @Override
+            public void onChange(boolean selfChange) {
+                onProviderChange();
+            }
+        };
+        mResolver.registerContentObserver(Contacts.CONTENT_URI, true, mObserver);
+    }
+
+    /**
+     * Schedules a check of the cached contacts. Loads in flight may have read the old data,
+     * but they are only marked, so that their results are checked too once stored.
+     */
+    @VisibleForTesting
+    /* package */ synchronized void onProviderChange() {
+        mGeneration++;
+        mChangeGeneration = mGeneration;
+        scheduleVerify();
+    }
+
+    private void scheduleVerify() {
+        if (mVerifyHandler == null) return;
+        mVerifyHandler.removeCallbacks(mVerifyRunnable);
+        mVerifyHandler.postDelayed(mVerifyRunnable, VERIFY_DELAY_MS);
+    }
+
+    /**
+     * Evicts the cached contacts whose raw contacts changed, were added or were removed.
+     * Directory contacts and the profile are not covered by the query and are always evicted.
+     */
+    @VisibleForTesting
+    /* package */ void verify(ContentResolver resolver) {
+        final Map<Uri, Contact> entries = mCache.snapshot();
+        if (entries.isEmpty()) return;
+
+        final StringBuilder selection = new StringBuilder(RawContacts.DELETED + "=0 AND "
+                + RawContacts.CONTACT_ID + " IN (");
+        boolean first = true;
+        for (Contact contact : entries.values()) {
+            if (contact.isDirectoryEntry() || contact.isUserProfile()) continue;
+            if (!first) selection.append(',');
+            selection.append(contact.getId());
+            first = false;
+        }
+        selection.append(')');
+
+        // Versions of the raw contacts, by contact id and raw contact id
+        final LongSparseArray<LongSparseArray<Long>> versions =
+                new LongSparseArray<LongSparseArray<Long>>();
+        if (!first) {
+            final Cursor cursor = resolver.query(RawContacts.CONTENT_URI, VERSION_COLUMNS,
+                    selection.toString(), null, null);
+            if (cursor == null) {
+                evictAll();
+                return;
+            }
+            try {
+                while (cursor.moveToNext()) {
+                    final long contactId = cursor.getLong(0);
+                    LongSparseArray<Long> rawContactVersions = versions.get(contactId);
+                    if (rawContactVersions == null) {
+                        rawContactVersions = new LongSparseArray<Long>();
+                        versions.put(contactId, rawContactVersions);
+                    }
+                    rawContactVersions.put(cursor.getLong(1), cursor.getLong(2));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        int evicted = 0;
+        for (Map.Entry<Uri, Contact> entry : entries.entrySet()) {
+            final Contact contact = entry.getValue();
+            if (!isCurrent(contact, versions.get(contact.getId()))) {
+                invalidate(entry.getKey(), contact);
+                evicted++;
+            }
+        }
+        if (DEBUG) Log.d(TAG, "Evicted " + evicted + " of " + entries.size() + " contacts");
+    }
+
+    private static boolean isCurrent(Contact contact, LongSparseArray<Long> versions) {
+        if (versions == null || contact.isDirectoryEntry() || contact.isUserProfile()) {
+            return false;
+        }
+        final ImmutableList<RawContact> rawContacts = contact.getRawContacts();
+        if (rawContacts == null || rawContacts.size() != versions.size()) return false;
+        for (RawContact rawContact : rawContacts) {
+            final Long version = versions.get(rawContact.getId());
+            if (version == null
+                    || !version.equals(rawContact.getValues().getAsLong(RawContacts.VERSION))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the cached contact for the given lookup URI, or null if there is none.
+     */
+    public Contact get(Uri lookupUri) {
+        if (lookupUri == null) return null;
+        return mCache.get(lookupUri);
+    }
+
+    /**
+     * Returns the current generation, to be passed to {@link #put(Contact, int)} by a load
+     * that starts now.
+     */
+    public synchronized int getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Stores a fully loaded contact under its lookup URI, assuming it is current.
+     */
+    public void put(Contact contact) {
+        put(contact, getGeneration());
+    }
+
+    /**
+     * Stores a fully loaded contact under its lookup URI, unless that contact was invalidated
+     * since the given generation was taken. If the provider changed since then, the contact is
+     * stored and its versions are checked. Contacts that were not found or failed to load are
+     * ignored.
+     */
+    public synchronized void put(Contact contact, int generation) {
+        if (contact == null || !contact.isLoaded() || contact.getLookupUri() == null) return;
+        final Uri lookupUri = contact.getLookupUri();
+        final Integer invalidated = mInvalidations.get(lookupUri);
+        if (generation < mMinGeneration || (invalidated != null && invalidated > generation)) {
+            if (DEBUG) Log.d(TAG, "Dropping stale contact " + lookupUri);
+            return;
+        }
+        mCache.put(lookupUri, contact);
+        if (generation < mChangeGeneration) {
+            scheduleVerify();
+        }
+    }
+
+    /**
+     * Remembers that the given lookup URI was invalidated now. Once too many are remembered,
+     * the oldest is forgotten and loads that started before it was invalidated are dropped.
+     */
+    private void recordInvalidation(Uri lookupUri) {
+        mGeneration++;
+        mInvalidations.remove(lookupUri);
+        mInvalidations.put(lookupUri, mGeneration);
+        if (mInvalidations.size() > MAX_INVALIDATIONS) {
+            final Iterator<Integer> iterator = mInvalidations.values().iterator();
+            mMinGeneration = Math.max(mMinGeneration, iterator.next());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Drops the contact stored under the given lookup URI, if any.
+     */
+    public synchronized void invalidate(Uri lookupUri) {
+        if (lookupUri == null) return;
+        recordInvalidation(lookupUri);
+        if (mCache.remove(lookupUri) != null) {
+            mInvalidationCount++;
+        }
+    }
+
+    /**
+     * Drops the given entry, unless it was replaced in the meantime.
+     */
+    private synchronized void invalidate(Uri lookupUri, Contact contact) {
+        recordInvalidation(lookupUri);
+        final Contact current = mCache.remove(lookupUri);
+        if (current == contact) {
+            mInvalidationCount++;
+        } else if (current != null) {
+            mCache.put(lookupUri, current);
+        }
+    }
+
+    public synchronized void evictAll() {
+        mGeneration++;
+        mMinGeneration = mGeneration;
+        mInvalidations.clear();
+        mCache.evictAll();
+    }
+
+    public int size() {
+        return mCache.size();
+    }
+
+    public int maxSize() {
+        return mCache.maxSize();
+    }
+
+    public int hitCount() {
+        return mCache.hitCount();
+    }
+
+    public int missCount() {
+        return mCache.missCount();
+    }
+
+    public int evictionCount() {
+        return mCache.evictionCount();
+    }
+
+    public synchronized int invalidationCount() {
+        return mInvalidationCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ContactCache[size=" + size() + "KB,maxSize=" + maxSize() + "KB,hits="
+                + hitCount() + ",misses=" + missCount() + ",evictions=" + evictionCount()
+                + ",invalidations=" + invalidationCount() + "]";
+    }
+
+    @VisibleForTesting
+    /* package */ static int estimateSizeKb(Contact contact) {
+        long bytes = BASE_CONTACT_SIZE;
+        final byte[] photo = contact.getPhotoBinaryData();
+        if (photo != null) {
+            bytes += photo.length;
+        }
+        final Bitmap photoBitmap = contact.getPhotoBitmap();
+        if (photoBitmap != null) {
+            bytes += photoBitmap.getByteCount();
+        }
+        final ImmutableList<RawContact> rawContacts = contact.getRawContacts();
+        if (rawContacts != null) {
+            for (RawContact rawContact : rawContacts) {
+                bytes += (long) rawContact.getDataItemCount() * DATA_ROW_SIZE;
+            }
+        }
+        final ImmutableList<StreamItemEntry> streamItems = contact.getStreamItems();
+        if (streamItems != null) {
+            bytes += (long) streamItems.size() * STREAM_ITEM_SIZE;
+        }
+        return (int) Math.max(1, bytes / 1024);
+    }
+}
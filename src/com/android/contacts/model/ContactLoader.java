@@ -17,6 +17,7 @@
 package com.android.contacts.model;
 
 import android.content.AsyncTaskLoader;
+import android.content.ContentProviderClient;
 import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
@@ -26,14 +27,22 @@ import android.content.pm.PackageManager;
 import android.content.pm.PackageManager.NameNotFoundException;
 import android.content.res.AssetFileDescriptor;
 import android.content.res.Resources;
+import android.database.ContentObserver;
 import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Process;
+import android.os.RemoteException;
+import android.os.SystemClock;
 import android.provider.ContactsContract;
 import android.provider.ContactsContract.CommonDataKinds.GroupMembership;
+import android.provider.ContactsContract.CommonDataKinds.Phone;
+import android.provider.ContactsContract.CommonDataKinds.Photo;
 import android.provider.ContactsContract.Contacts;
 import android.provider.ContactsContract.Data;
 import android.provider.ContactsContract.Directory;
-import android.provider.ContactsContract.Groups;
 import android.provider.ContactsContract.RawContacts;
 import android.provider.ContactsContract.StreamItemPhotos;
 import android.provider.ContactsContract.StreamItems;
@@ -42,10 +51,12 @@ import android.util.Log;
 import android.util.LongSparseArray;
 
 import com.android.contacts.GroupMetaData;
+import com.android.contacts.GroupMetaDataCache;
 import com.android.contacts.common.GeoUtil;
 import com.android.contacts.common.model.AccountTypeManager;
 import com.android.contacts.common.model.account.AccountType;
 import com.android.contacts.common.model.account.AccountTypeWithDataSet;
+import com.android.contacts.common.model.account.AccountWithDataSet;
 import com.android.contacts.model.dataitem.DataItem;
 import com.android.contacts.model.dataitem.PhoneDataItem;
 import com.android.contacts.model.dataitem.PhotoDataItem;
@@ -54,10 +65,13 @@ import com.android.contacts.util.DataStatus;
 import com.android.contacts.util.StreamItemEntry;
 import com.android.contacts.util.StreamItemPhotoEntry;
 import com.android.contacts.common.util.UriUtils;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.io.ByteStreams;
 
 import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
@@ -67,6 +81,14 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Loads a single Contact and all it constituent RawContacts.
@@ -76,8 +98,30 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
 
     private static final boolean DEBUG = Log.isLoggable(TAG, Log.DEBUG);
 
-    /** A short-lived cache that can be set by {@link #cacheResult()} */
-    private static Contact sCachedResult = null;
+    /** Maximum number of threads used to run the load stages of all loaders. */
+    private static final int MAX_STAGE_THREADS = 3;
+
+    /** Runs the load stages that follow the entity query, see {@link #runLoadStages}. */
+    private static final ThreadPoolExecutor sStageExecutor = new ThreadPoolExecutor(
+            MAX_STAGE_THREADS, MAX_STAGE_THREADS, 10, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(final Runnable r) {
+                    return new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            r.run();
+                        }
+                    }, "ContactLoader #" + mCount.incrementAndGet());
+                }
+            });
+
+    static {
+        sStageExecutor.allowCoreThreadTimeOut(true);
+    }
 
     private final Uri mRequestedUri;
     private Uri mLookupUri;
@@ -86,8 +130,17 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
     private boolean mLoadInvitableAccountTypes;
     private boolean mPostViewNotification;
     private boolean mComputeFormattedPhoneNumber;
+    private boolean mLoadConcurrently = true;
+    private boolean mReloadIncrementally = true;
+    private int mPhotoTargetSize;
+    private int mStreamItemsPageSize;
+    private volatile int mStreamItemsLimit;
     private Contact mContact;
-    private ForceLoadContentObserver mObserver;
+    /** The contact that was showing when the content observer fired, see {@link #reload}. */
+    private volatile Contact mReloadBase;
+    /** The {@link ContactCache} generation the last result was loaded at. */
+    private volatile int mResultCacheGeneration;
+    private ContactObserver mObserver;
     private final Set<Long> mNotifiedRawContactIds = Sets.newHashSet();
 
     public ContactLoader(Context context, Uri lookupUri, boolean postViewNotification) {
@@ -255,6 +308,29 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
         public static final int SEND_TO_VOICEMAIL = 62;
         public static final int CUSTOM_RINGTONE = 63;
         public static final int IS_USER_PROFILE = 64;
+
+        /**
+         * Columns of the data rows, which are stored in a {@link DataRowTable} per raw contact.
+         * The rows keep the id of their raw contact, as the data items are shared and read-only.
+         */
+        public static final int[] DATA_ROW_COLUMNS = new int[] {
+                DATA_ID, DATA1, DATA2, DATA3, DATA4, DATA5, DATA6, DATA7, DATA8, DATA9, DATA10,
+                DATA11, DATA12, DATA13, DATA14, DATA15, DATA_SYNC1, DATA_SYNC2, DATA_SYNC3,
+                DATA_SYNC4, DATA_VERSION, IS_PRIMARY, IS_SUPERPRIMARY, MIMETYPE, RES_PACKAGE,
+                GROUP_SOURCE_ID, CHAT_CAPABILITY, RAW_CONTACT_ID,
+        };
+
+        public static final DataRowTable.Schema DATA_ROW_SCHEMA = createDataRowSchema();
+
+        private static DataRowTable.Schema createDataRowSchema() {
+            final String[] names = new String[DATA_ROW_COLUMNS.length];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = COLUMNS[DATA_ROW_COLUMNS[i]];
+            }
+            // The data id is the row's own id
+            names[0] = Data._ID;
+            return new DataRowTable.Schema(names).intern(Data.MIMETYPE);
+        }
     }
 
     /**
@@ -278,26 +354,17 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
         public static final int EXPORT_SUPPORT = 5;
     }
 
-    private static class GroupQuery {
+    /**
+     * Projection used to find out which raw contacts changed since the last load.
+     */
+    private static class RawContactVersionQuery {
         static final String[] COLUMNS = new String[] {
-            Groups.ACCOUNT_NAME,
-            Groups.ACCOUNT_TYPE,
-            Groups.DATA_SET,
-            Groups.ACCOUNT_TYPE_AND_DATA_SET,
-            Groups._ID,
-            Groups.TITLE,
-            Groups.AUTO_ADD,
-            Groups.FAVORITES,
+            RawContacts._ID,
+            RawContacts.VERSION,
         };
 
-        public static final int ACCOUNT_NAME = 0;
-        public static final int ACCOUNT_TYPE = 1;
-        public static final int DATA_SET = 2;
-        public static final int ACCOUNT_TYPE_AND_DATA_SET = 3;
-        public static final int ID = 4;
-        public static final int TITLE = 5;
-        public static final int AUTO_ADD = 6;
-        public static final int FAVORITES = 7;
+        public static final int ID = 0;
+        public static final int VERSION = 1;
     }
 
     @Override
@@ -306,48 +373,195 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
             final ContentResolver resolver = getContext().getContentResolver();
             final Uri uriCurrentFormat = ContactLoaderUtils.ensureIsContactUri(
                     resolver, mLookupUri);
-            final Contact cachedResult = sCachedResult;
-            sCachedResult = null;
-            // Is this the same Uri as what we had before already? In that case, reuse that result
-            final Contact result;
-            final boolean resultIsCached;
+            final ContactCache cache = ContactCache.getInstance(getContext());
+            final int cacheGeneration = cache.getGeneration();
+            final Contact cachedResult = cache.get(mLookupUri);
+            // Have we loaded this contact recently? In that case, reuse that result
+            final Contact reloadBase = mReloadBase;
+            mReloadBase = null;
+            Contact result = null;
+            boolean resultIsCached = false;
+            boolean photoLoaded = false;
             if (cachedResult != null &&
-                    UriUtils.areEqual(cachedResult.getLookupUri(), mLookupUri)) {
+                    UriUtils.areEqual(cachedResult.getLookupUri(), mLookupUri) &&
+                    (!mComputeFormattedPhoneNumber || hasFormattedPhoneNumbers(cachedResult))) {
                 // We are using a cached result from earlier. Below, we should make sure
                 // we are not doing any more network or disc accesses
-                result = new Contact(mRequestedUri, cachedResult);
+                result = cachedResult.withRequestedUri(mRequestedUri);
                 resultIsCached = true;
-            } else {
+                photoLoaded = true;
+            } else if (reloadBase != null) {
+                result = reload(resolver, uriCurrentFormat, reloadBase);
+                if (result != null && result.getPhotoId() == reloadBase.getPhotoId()
+                        && TextUtils.equals(result.getPhotoUri(), reloadBase.getPhotoUri())) {
+                    result = new Contact.Builder(result)
+                            .setPhotoBinaryData(reloadBase.getPhotoBinaryData())
+                            .setPhotoBitmap(reloadBase.getPhotoBitmap())
+                            .build();
+                    photoLoaded = true;
+                }
+            }
+            if (result == null) {
                 result = loadContactEntity(resolver, uriCurrentFormat);
-                resultIsCached = false;
             }
             if (result.isLoaded()) {
-                if (result.isDirectoryEntry()) {
-                    if (!resultIsCached) {
-                        loadDirectoryMetaData(result);
-                    }
-                } else if (mLoadGroupMetaData) {
-                    if (result.getGroupMetaData() == null) {
-                        loadGroupMetaData(result);
+                final Contact.Builder builder = new Contact.Builder(result);
+                final List<LoadStage> stages =
+                        createLoadStages(result, builder, resultIsCached, photoLoaded);
+                if (!stages.isEmpty()) {
+                    runLoadStages(stages);
+                    result = builder.build();
+                }
+                if (isLoadInBackgroundCanceled()) {
+                    // The stages may have stopped early, so the result is incomplete. It is not
+                    // delivered either, so it must not end up in the cache.
+                    return result;
+                }
+                cache.put(result, cacheGeneration);
+                mResultCacheGeneration = cacheGeneration;
+                if (DEBUG) Log.d(TAG, cache.toString());
+            }
+            return result;
+        } catch (Exception e) {
+            Log.e(TAG, "Error loading the contact: " + mLookupUri, e);
+            return Contact.forError(mRequestedUri, e);
+        }
+    }
+
+    /**
+     * A step of loading a contact that runs after the entity query. The steps returned by
+     * {@link #createLoadStages} only depend on the raw contacts and the lookup key, and each of
+     * them sets a different part of the {@link Contact.Builder}, so they can run at the same
+     * time.
+     */
+    private abstract static class LoadStage implements Callable<Void> {
+        private final String mName;
+        private long mDuration;
+
+        public LoadStage(String name) {
+            mName = name;
+        }
+
+        protected abstract void load() throws Exception;
+
+        @Override
+        public Void call() throws Exception {
+            final long start = SystemClock.elapsedRealtime();
+            try {
+                load();
+            } finally {
+                mDuration = SystemClock.elapsedRealtime() - start;
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return mName + "=" + mDuration + "ms";
+        }
+    }
+
+    private boolean needsStreamItems(Contact result) {
+        final ImmutableList<StreamItemEntry> streamItems = result.getStreamItems();
+        if (streamItems == null) return true;
+        if (!result.hasMoreStreamItems()) return false;
+        return mStreamItemsLimit <= 0 || streamItems.size() < mStreamItemsLimit;
+    }
+
+    private List<LoadStage> createLoadStages(final Contact result, final Contact.Builder builder,
+            boolean resultIsCached, boolean photoLoaded) {
+        final ArrayList<LoadStage> stages = Lists.newArrayList();
+        if (result.isDirectoryEntry()) {
+            if (!resultIsCached) {
+                stages.add(new LoadStage("directory") {
+                    @Override
+                    protected void load() {
+                        loadDirectoryMetaData(result, builder);
                     }
+                });
+            }
+        } else if (mLoadGroupMetaData && result.getGroupMetaData() == null) {
+            stages.add(new LoadStage("groups") {
+                @Override
+                protected void load() {
+                    loadGroupMetaData(result, builder);
                 }
-                if (mLoadStreamItems && result.getStreamItems() == null) {
-                    loadStreamItems(result);
+            });
+        }
+        // Stream items don't change the version of a raw contact, so the ones carried over by a
+        // reload are refreshed, which only loads the photos of new stream items
+        if (mLoadStreamItems && (!resultIsCached || needsStreamItems(result))) {
+            stages.add(new LoadStage("streamItems") {
+                @Override
+                protected void load() {
+                    loadStreamItems(result, builder);
                 }
-                if (mComputeFormattedPhoneNumber) {
+            });
+        }
+        // A cached result is shared with other loaders, so it must not be modified. Cached results
+        // without formatted numbers are not used by loaders that need them.
+        if (mComputeFormattedPhoneNumber && !resultIsCached) {
+            stages.add(new LoadStage("phoneNumbers") {
+                @Override
+                protected void load() {
                     computeFormattedPhoneNumbers(result);
                 }
-                if (!resultIsCached) loadPhotoBinaryData(result);
+            });
+        }
+        if (!photoLoaded) {
+            stages.add(new LoadStage("photo") {
+                @Override
+                protected void load() {
+                    loadPhotoBinaryData(result, builder);
+                }
+            });
+        }
+        // Note ME profile should never have "Add connection"
+        if (mLoadInvitableAccountTypes && result.getInvitableAccountTypes() == null) {
+            stages.add(new LoadStage("invitableAccountTypes") {
+                @Override
+                protected void load() {
+                    loadInvitableAccountTypes(result, builder);
+                }
+            });
+        }
+        return stages;
+    }
 
-                // Note ME profile should never have "Add connection"
-                if (mLoadInvitableAccountTypes && result.getInvitableAccountTypes() == null) {
-                    loadInvitableAccountTypes(result);
+    /**
+     * Runs the given stages, either one after another on the loader thread or, if concurrent
+     * loading is enabled, on {@link #sStageExecutor} with the first stage running on the loader
+     * thread. Returns once all stages have finished; the first failure is rethrown.
+     */
+    private void runLoadStages(List<LoadStage> stages) throws Exception {
+        final long start = SystemClock.elapsedRealtime();
+        if (!mLoadConcurrently || stages.size() < 2) {
+            for (LoadStage stage : stages) {
+                stage.call();
+            }
+        } else {
+            final ArrayList<Future<Void>> futures = Lists.newArrayList();
+            try {
+                for (int i = 1; i < stages.size(); i++) {
+                    futures.add(sStageExecutor.submit(stages.get(i)));
+                }
+                stages.get(0).call();
+                for (Future<Void> future : futures) {
+                    future.get();
+                }
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof Exception) throw (Exception) cause;
+                throw new RuntimeException(cause);
+            } finally {
+                for (Future<Void> future : futures) {
+                    future.cancel(false);
                 }
             }
-            return result;
-        } catch (Exception e) {
-            Log.e(TAG, "Error loading the contact: " + mLookupUri, e);
-            return Contact.forError(mRequestedUri, e);
+        }
+        if (DEBUG) {
+            Log.d(TAG, "Loaded " + (mLoadConcurrently ? "concurrently" : "sequentially")
+                    + " in " + (SystemClock.elapsedRealtime() - start) + " ms: " + stages);
         }
     }
 
@@ -367,7 +581,7 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
             }
 
             // Create the loaded contact starting with the header data.
-            Contact contact = loadContactHeaderData(cursor, contactUri);
+            Contact.Builder contact = loadContactHeaderData(cursor, contactUri);
 
             // Fill in the raw contacts, which is wrapped in an Entity and any
             // status data.  Initially, result has empty entities and statuses.
@@ -387,8 +601,8 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
                     rawContactsBuilder.add(rawContact);
                 }
                 if (!cursor.isNull(ContactQuery.DATA_ID)) {
-                    ContentValues data = loadDataValues(cursor);
-                    rawContact.addDataItemValues(data);
+                    rawContact.addDataRow(cursor, ContactQuery.DATA_ROW_SCHEMA,
+                            ContactQuery.DATA_ROW_COLUMNS);
 
                     if (!cursor.isNull(ContactQuery.PRESENCE)
                             || !cursor.isNull(ContactQuery.STATUS)) {
@@ -399,10 +613,159 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
                 }
             } while (cursor.moveToNext());
 
+            return contact
+                    .setRawContacts(rawContactsBuilder.build())
+                    .setStatuses(statusesBuilder.build())
+                    .build();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Reloads a contact that was loaded before, re-reading only the raw contacts whose
+     * {@link RawContacts#VERSION} changed since then. Unchanged {@link RawContact} objects are
+     * reused. The entity query is restricted to the changed raw contacts plus the rows that
+     * carry a status, so the header and the statuses are always current. If nothing changed and
+     * there are no statuses, the previous contact is returned as is. The group metadata and
+     * stream items of the previous contact are carried over, as are its invitable account types
+     * if the raw contacts didn't change.
+     *
+     * @return the reloaded contact, or null if it couldn't be reloaded incrementally (for
+     *     example because raw contacts were joined or split) and a full load is needed
+     */
+    private Contact reload(ContentResolver resolver, Uri contactUri, Contact previous) {
+        if (!mReloadIncrementally || !previous.isLoaded() || previous.isDirectoryEntry()
+                || previous.isUserProfile()) {
+            return null;
+        }
+
+        final LongSparseArray<RawContact> previousRawContacts = new LongSparseArray<RawContact>();
+        for (RawContact rawContact : previous.getRawContacts()) {
+            previousRawContacts.put(rawContact.getId(), rawContact);
+        }
+
+        final ArrayList<Long> rawContactIds = Lists.newArrayList();
+        final Set<Long> changedRawContactIds = Sets.newHashSet();
+        final Cursor versionCursor = resolver.query(RawContacts.CONTENT_URI,
+                RawContactVersionQuery.COLUMNS, RawContacts.CONTACT_ID + "=?",
+                new String[] { String.valueOf(previous.getId()) }, RawContacts._ID);
+        if (versionCursor == null) {
+            return null;
+        }
+        try {
+            while (versionCursor.moveToNext()) {
+                final long rawContactId = versionCursor.getLong(RawContactVersionQuery.ID);
+                final long version = versionCursor.getLong(RawContactVersionQuery.VERSION);
+                rawContactIds.add(rawContactId);
+                final RawContact rawContact = previousRawContacts.get(rawContactId);
+                final Long previousVersion = rawContact == null
+                        ? null : rawContact.getValues().getAsLong(RawContacts.VERSION);
+                if (previousVersion == null || previousVersion != version) {
+                    changedRawContactIds.add(rawContactId);
+                }
+            }
+        } finally {
+            versionCursor.close();
+        }
+        if (rawContactIds.isEmpty()) {
+            return null;
+        }
+        final boolean rawContactsUnchanged = changedRawContactIds.isEmpty()
+                && rawContactIds.size() == previousRawContacts.size();
+
+        final StringBuilder selection = new StringBuilder();
+        final String[] selectionArgs = new String[changedRawContactIds.size()];
+        if (!changedRawContactIds.isEmpty()) {
+            selection.append(Contacts.Entity.RAW_CONTACT_ID + " IN (");
+            int i = 0;
+            for (Long rawContactId : changedRawContactIds) {
+                if (i > 0) {
+                    selection.append(",");
+                }
+                selection.append("?");
+                selectionArgs[i++] = String.valueOf(rawContactId);
+            }
+            selection.append(") OR ");
+        }
+        selection.append(Data.PRESENCE + " IS NOT NULL OR " + Data.STATUS + " IS NOT NULL");
+
+        final Uri entityUri = Uri.withAppendedPath(contactUri, Contacts.Entity.CONTENT_DIRECTORY);
+        final Cursor cursor = resolver.query(entityUri, ContactQuery.COLUMNS,
+                selection.toString(), selectionArgs, Contacts.Entity.RAW_CONTACT_ID);
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            if (!cursor.moveToFirst()) {
+                if (rawContactsUnchanged && previous.getStatuses().isEmpty()) {
+                    if (DEBUG) Log.d(TAG, "Nothing changed for " + contactUri);
+                    return previous;
+                }
+                // Without a single row there is no header data, so let the full load handle it
+                return null;
+            }
+            if (cursor.getLong(ContactQuery.CONTACT_ID) != previous.getId()
+                    || !TextUtils.equals(cursor.getString(ContactQuery.LOOKUP_KEY),
+                            previous.getLookupKey())) {
+                return null;
+            }
+            final Contact.Builder contact = loadContactHeaderData(cursor, contactUri);
+
+            final LongSparseArray<RawContact> reloadedRawContacts =
+                    new LongSparseArray<RawContact>();
+            final ImmutableMap.Builder<Long, DataStatus> statusesBuilder =
+                    new ImmutableMap.Builder<Long, DataStatus>();
+            do {
+                final long rawContactId = cursor.getLong(ContactQuery.RAW_CONTACT_ID);
+                if (cursor.isNull(ContactQuery.DATA_ID)) {
+                    if (changedRawContactIds.contains(rawContactId)
+                            && reloadedRawContacts.get(rawContactId) == null) {
+                        reloadedRawContacts.put(rawContactId,
+                                new RawContact(loadRawContactValues(cursor)));
+                    }
+                    continue;
+                }
+                if (changedRawContactIds.contains(rawContactId)) {
+                    RawContact rawContact = reloadedRawContacts.get(rawContactId);
+                    if (rawContact == null) {
+                        rawContact = new RawContact(loadRawContactValues(cursor));
+                        reloadedRawContacts.put(rawContactId, rawContact);
+                    }
+                    rawContact.addDataRow(cursor, ContactQuery.DATA_ROW_SCHEMA,
+                            ContactQuery.DATA_ROW_COLUMNS);
+                }
+                if (!cursor.isNull(ContactQuery.PRESENCE)
+                        || !cursor.isNull(ContactQuery.STATUS)) {
+                    statusesBuilder.put(cursor.getLong(ContactQuery.DATA_ID),
+                            new DataStatus(cursor));
+                }
+            } while (cursor.moveToNext());
+
+            final ImmutableList.Builder<RawContact> rawContactsBuilder =
+                    new ImmutableList.Builder<RawContact>();
+            for (Long rawContactId : rawContactIds) {
+                final RawContact rawContact = changedRawContactIds.contains(rawContactId)
+                        ? reloadedRawContacts.get(rawContactId)
+                        : previousRawContacts.get(rawContactId);
+                if (rawContact == null) {
+                    // The raw contact moved between the two queries
+                    return null;
+                }
+                rawContactsBuilder.add(rawContact);
+            }
             contact.setRawContacts(rawContactsBuilder.build());
             contact.setStatuses(statusesBuilder.build());
-
-            return contact;
+            contact.setGroupMetaData(previous.getGroupMetaData());
+            contact.setStreamItems(previous.getStreamItems(), previous.hasMoreStreamItems());
+            if (rawContactsUnchanged) {
+                contact.setInvitableAccountTypes(previous.getInvitableAccountTypes());
+            }
+            if (DEBUG) {
+                Log.d(TAG, "Reloaded " + changedRawContactIds.size() + " of "
+                        + rawContactIds.size() + " raw contacts for " + contactUri);
+            }
+            return contact.build();
         } finally {
             cursor.close();
         }
@@ -412,27 +775,13 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
      * Looks for the photo data item in entities. If found, creates a new Bitmap instance. If
      * not found, returns null
      */
-    private void loadPhotoBinaryData(Contact contactData) {
+    private void loadPhotoBinaryData(Contact contactData, Contact.Builder builder) {
 
         // If we have a photo URI, try loading that first.
         String photoUri = contactData.getPhotoUri();
         if (photoUri != null) {
             try {
-                AssetFileDescriptor fd = getContext().getContentResolver()
-                       .openAssetFileDescriptor(Uri.parse(photoUri), "r");
-                byte[] buffer = new byte[16 * 1024];
-                FileInputStream fis = fd.createInputStream();
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                try {
-                    int size;
-                    while ((size = fis.read(buffer)) != -1) {
-                        baos.write(buffer, 0, size);
-                    }
-                    contactData.setPhotoBinaryData(baos.toByteArray());
-                } finally {
-                    fis.close();
-                    fd.close();
-                }
+                setPhoto(contactData, builder, readPhoto(Uri.parse(photoUri)));
                 return;
             } catch (IOException ioe) {
                 // Just fall back to the case below.
@@ -447,24 +796,99 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
         }
 
         for (RawContact rawContact : contactData.getRawContacts()) {
-            for (DataItem dataItem : rawContact.getDataItems()) {
+            for (DataItem dataItem : rawContact.getDataItems(Photo.CONTENT_ITEM_TYPE)) {
                 if (dataItem.getId() == photoId) {
-                    if (!(dataItem instanceof PhotoDataItem)) {
-                        break;
-                    }
-
                     final PhotoDataItem photo = (PhotoDataItem) dataItem;
-                    contactData.setPhotoBinaryData(photo.getPhoto());
+                    setPhoto(contactData, builder, photo.getPhoto());
                     break;
                 }
             }
         }
     }
 
+    private byte[] readPhoto(Uri photoUri) throws IOException {
+        AssetFileDescriptor fd = getContext().getContentResolver()
+               .openAssetFileDescriptor(photoUri, "r");
+        FileInputStream fis = fd.createInputStream();
+        try {
+            final long length = fd.getLength();
+            if (length > 0 && length <= Integer.MAX_VALUE) {
+                // Read straight into an array of the right size instead of copying the
+                // photo out of a ByteArrayOutputStream.
+                final byte[] photo = new byte[(int) length];
+                ByteStreams.readFully(fis, photo);
+                return photo;
+            }
+            byte[] buffer = new byte[16 * 1024];
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            int size;
+            while ((size = fis.read(buffer)) != -1) {
+                baos.write(buffer, 0, size);
+            }
+            return baos.toByteArray();
+        } finally {
+            fis.close();
+            fd.close();
+        }
+    }
+
     /**
-     * Sets the "invitable" account types to {@link Contact#mInvitableAccountTypes}.
+     * Sets the photo, as read from the provider, on the contact. If a photo target size was set
+     * and the photo is at least twice as large, it is decoded to a downsampled bitmap no smaller
+     * than that size, which is all the contact keeps of it: the full size photo is read again
+     * from {@link Contact#getPhotoUri} by those that need it. Smaller photos are kept as bytes
+     * only, as a full size bitmap would only double the memory held for the photo.
      */
-    private void loadInvitableAccountTypes(Contact contactData) {
+    private void setPhoto(Contact contactData, Contact.Builder builder, byte[] photo) {
+        builder.setPhotoBinaryData(photo);
+        if (photo == null || mPhotoTargetSize <= 0) {
+            return;
+        }
+
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(photo, 0, photo.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return;
+        }
+
+        options.inSampleSize = computeSampleSize(
+                options.outWidth, options.outHeight, mPhotoTargetSize);
+        if (options.inSampleSize == 1) {
+            return;
+        }
+        options.inJustDecodeBounds = false;
+        final Bitmap bitmap = BitmapFactory.decodeByteArray(photo, 0, photo.length, options);
+        if (bitmap == null) {
+            return;
+        }
+        builder.setPhotoBitmap(bitmap);
+        builder.setPhotoBinaryData(null);
+        if (DEBUG) {
+            Log.d(TAG, "Downsampled photo from " + options.outWidth * options.inSampleSize + "x"
+                    + options.outHeight * options.inSampleSize + " (" + photo.length
+                    + " bytes) to " + bitmap.getWidth() + "x" + bitmap.getHeight());
+        }
+    }
+
+    /**
+     * Returns the largest power of two by which a photo of the given dimensions can be
+     * downsampled without its shorter side dropping below the target size.
+     */
+    @VisibleForTesting
+    /* package */ static int computeSampleSize(int width, int height, int targetSize) {
+        final int shortSide = Math.min(width, height);
+        int sampleSize = 1;
+        while (shortSide / (sampleSize * 2) >= targetSize) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Sets the "invitable" account types on the builder.
+     */
+    private void loadInvitableAccountTypes(Contact contactData, Contact.Builder builder) {
         final ImmutableList.Builder<AccountType> resultListBuilder =
                 new ImmutableList.Builder<AccountType>();
         if (!contactData.isUserProfile()) {
@@ -486,14 +910,13 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
             }
         }
 
-        // Set to mInvitableAccountTypes
-        contactData.setInvitableAccountTypes(resultListBuilder.build());
+        builder.setInvitableAccountTypes(resultListBuilder.build());
     }
 
     /**
      * Extracts Contact level columns from the cursor.
      */
-    private Contact loadContactHeaderData(final Cursor cursor, Uri contactUri) {
+    private Contact.Builder loadContactHeaderData(final Cursor cursor, Uri contactUri) {
         final String directoryParameter =
                 contactUri.getQueryParameter(ContactsContract.DIRECTORY_PARAM_KEY);
         final long directoryId = directoryParameter == null
@@ -524,7 +947,7 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
             lookupUri = contactUri;
         }
 
-        return new Contact(mRequestedUri, contactUri, lookupUri, directoryId, lookupKey,
+        return new Contact.Builder(mRequestedUri, contactUri, lookupUri, directoryId, lookupKey,
                 contactId, nameRawContactId, displayNameSource, photoId, photoUri, displayName,
                 altDisplayName, phoneticName, starred, presence, sendToVoicemail,
                 customRingtone, isUserProfile);
@@ -557,44 +980,6 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
         return cv;
     }
 
-    /**
-     * Extracts Data level columns from the cursor.
-     */
-    private ContentValues loadDataValues(Cursor cursor) {
-        ContentValues cv = new ContentValues();
-
-        cv.put(Data._ID, cursor.getLong(ContactQuery.DATA_ID));
-
-        cursorColumnToContentValues(cursor, cv, ContactQuery.DATA1);
-        cursorColumnToContentValues(cursor, cv, ContactQuery.DATA2);
-        cursorColumnToContentValues(cursor, cv, ContactQuery.DATA3);
-        cursorColumnToContentValues(cursor, cv, ContactQuery.DATA4);
-        cursorColumnToContentValues(cursor, cv, ContactQuery.DATA5);
-        cursorColumnToContentValues(cursor, cv, ContactQuery.DATA6);
-        cursorColumnToContentValues(cursor, cv, ContactQuery.DATA7);
-        cursorColumnToContentValues(cursor, cv, ContactQuery.DATA8);
-        cursorColumnToContentValues(cursor, cv, ContactQuery.DATA9);
-        cursorColumnToContentValues(cursor, cv, ContactQuery.DATA10);
-        cursorColumnToContentValues(cursor, cv, ContactQuery.DATA11);
-        cursorColumnToContentValues(cursor, cv, ContactQuery.DATA12);
-        cursorColumnToContentValues(cursor, cv, ContactQuery.DATA13);
-        cursorColumnToContentValues(cursor, cv, ContactQuery.DATA14);
-        cursorColumnToContentValues(cursor, cv, ContactQuery.DATA15);
-        cursorColumnToContentValues(cursor, cv, ContactQuery.DATA_SYNC1);
-        cursorColumnToContentValues(cursor, cv, ContactQuery.DATA_SYNC2);
-        cursorColumnToContentValues(cursor, cv, ContactQuery.DATA_SYNC3);
-        cursorColumnToContentValues(cursor, cv, ContactQuery.DATA_SYNC4);
-        cursorColumnToContentValues(cursor, cv, ContactQuery.DATA_VERSION);
-        cursorColumnToContentValues(cursor, cv, ContactQuery.IS_PRIMARY);
-        cursorColumnToContentValues(cursor, cv, ContactQuery.IS_SUPERPRIMARY);
-        cursorColumnToContentValues(cursor, cv, ContactQuery.MIMETYPE);
-        cursorColumnToContentValues(cursor, cv, ContactQuery.RES_PACKAGE);
-        cursorColumnToContentValues(cursor, cv, ContactQuery.GROUP_SOURCE_ID);
-        cursorColumnToContentValues(cursor, cv, ContactQuery.CHAT_CAPABILITY);
-
-        return cv;
-    }
-
     private void cursorColumnToContentValues(
             Cursor cursor, ContentValues values, int index) {
         switch (cursor.getType(index)) {
@@ -615,7 +1000,7 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
         }
     }
 
-    private void loadDirectoryMetaData(Contact result) {
+    private void loadDirectoryMetaData(Contact result, Contact.Builder builder) {
         long directoryId = result.getDirectoryId();
 
         Cursor cursor = getContext().getContentResolver().query(
@@ -644,7 +1029,7 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
                     }
                 }
 
-                result.setDirectoryMetaData(
+                builder.setDirectoryMetaData(
                         displayName, directoryType, accountType, accountName, exportSupport);
             }
         } finally {
@@ -654,115 +1039,82 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
 
     /**
      * Loads groups meta-data for all groups associated with all constituent raw contacts'
-     * accounts.
+     * accounts. The groups are read from the process-wide {@link GroupMetaDataCache}.
      */
-    private void loadGroupMetaData(Contact result) {
-        StringBuilder selection = new StringBuilder();
-        ArrayList<String> selectionArgs = new ArrayList<String>();
+    private void loadGroupMetaData(Contact result, Contact.Builder builder) {
+        final GroupMetaDataCache cache = GroupMetaDataCache.getInstance(getContext());
+        final Set<AccountWithDataSet> accounts = Sets.newHashSet();
+        final ImmutableList.Builder<GroupMetaData> groupListBuilder =
+                new ImmutableList.Builder<GroupMetaData>();
         for (RawContact rawContact : result.getRawContacts()) {
             final String accountName = rawContact.getAccountName();
             final String accountType = rawContact.getAccountTypeString();
             final String dataSet = rawContact.getDataSet();
-            if (accountName != null && accountType != null) {
-                if (selection.length() != 0) {
-                    selection.append(" OR ");
-                }
-                selection.append(
-                        "(" + Groups.ACCOUNT_NAME + "=? AND " + Groups.ACCOUNT_TYPE + "=?");
-                selectionArgs.add(accountName);
-                selectionArgs.add(accountType);
-
-                if (dataSet != null) {
-                    selection.append(" AND " + Groups.DATA_SET + "=?");
-                    selectionArgs.add(dataSet);
-                } else {
-                    selection.append(" AND " + Groups.DATA_SET + " IS NULL");
-                }
-                selection.append(")");
+            if (accountName != null && accountType != null
+                    && accounts.add(new AccountWithDataSet(accountName, accountType, dataSet))) {
+                groupListBuilder.addAll(cache.getGroups(accountName, accountType, dataSet));
             }
         }
-        final ImmutableList.Builder<GroupMetaData> groupListBuilder =
-                new ImmutableList.Builder<GroupMetaData>();
-        final Cursor cursor = getContext().getContentResolver().query(Groups.CONTENT_URI,
-                GroupQuery.COLUMNS, selection.toString(), selectionArgs.toArray(new String[0]),
-                null);
-        try {
-            while (cursor.moveToNext()) {
-                final String accountName = cursor.getString(GroupQuery.ACCOUNT_NAME);
-                final String accountType = cursor.getString(GroupQuery.ACCOUNT_TYPE);
-                final String dataSet = cursor.getString(GroupQuery.DATA_SET);
-                final long groupId = cursor.getLong(GroupQuery.ID);
-                final String title = cursor.getString(GroupQuery.TITLE);
-                final boolean defaultGroup = cursor.isNull(GroupQuery.AUTO_ADD)
-                        ? false
-                        : cursor.getInt(GroupQuery.AUTO_ADD) != 0;
-                final boolean favorites = cursor.isNull(GroupQuery.FAVORITES)
-                        ? false
-                        : cursor.getInt(GroupQuery.FAVORITES) != 0;
-
-                groupListBuilder.add(new GroupMetaData(
-                        accountName, accountType, dataSet, groupId, title, defaultGroup,
-                        favorites));
-            }
-        } finally {
-            cursor.close();
-        }
-        result.setGroupMetaData(groupListBuilder.build());
+        builder.setGroupMetaData(groupListBuilder.build());
     }
 
     /**
-     * Loads all stream items and stream item photos belonging to this contact.
+     * Loads the stream items and stream item photos belonging to this contact. If a page size
+     * was set, only the {@link #mStreamItemsLimit} most recent stream items are loaded; stream
+     * items that the contact already has are reused along with their photos.
      */
-    private void loadStreamItems(Contact result) {
-        final Cursor cursor = getContext().getContentResolver().query(
-                Contacts.CONTENT_LOOKUP_URI.buildUpon()
-                        .appendPath(result.getLookupKey())
-                        .appendPath(Contacts.StreamItems.CONTENT_DIRECTORY).build(),
-                null, null, null, null);
+    private void loadStreamItems(Contact result, Contact.Builder builder) {
+        final LongSparseArray<StreamItemEntry> loadedStreamItems =
+                new LongSparseArray<StreamItemEntry>();
+        if (result.getStreamItems() != null) {
+            for (StreamItemEntry streamItem : result.getStreamItems()) {
+                loadedStreamItems.put(streamItem.getId(), streamItem);
+            }
+        }
+
+        final int limit = mStreamItemsLimit;
+        final Uri.Builder streamItemsUri = Contacts.CONTENT_LOOKUP_URI.buildUpon()
+                .appendPath(result.getLookupKey())
+                .appendPath(Contacts.StreamItems.CONTENT_DIRECTORY);
+        if (limit > 0) {
+            // Ask for one more than we need to find out whether there are more
+            streamItemsUri.appendQueryParameter(
+                    ContactsContract.LIMIT_PARAM_KEY, String.valueOf(limit + 1));
+        }
+        final Cursor cursor = getContext().getContentResolver().query(streamItemsUri.build(),
+                null, null, null, StreamItems.TIMESTAMP + " DESC");
         final LongSparseArray<StreamItemEntry> streamItemsById =
                 new LongSparseArray<StreamItemEntry>();
+        final ArrayList<StreamItemEntry> allStreamItems = new ArrayList<StreamItemEntry>();
         final ArrayList<StreamItemEntry> streamItems = new ArrayList<StreamItemEntry>();
+        boolean hasMoreStreamItems = false;
         try {
             while (cursor.moveToNext()) {
+                if (limit > 0 && allStreamItems.size() == limit) {
+                    hasMoreStreamItems = true;
+                    break;
+                }
+                final long id = cursor.getLong(cursor.getColumnIndex(StreamItems._ID));
+                final StreamItemEntry loaded = loadedStreamItems.get(id);
+                if (loaded != null) {
+                    allStreamItems.add(loaded);
+                    continue;
+                }
                 StreamItemEntry streamItem = new StreamItemEntry(cursor);
                 streamItemsById.put(streamItem.getId(), streamItem);
                 streamItems.add(streamItem);
+                allStreamItems.add(streamItem);
             }
         } finally {
             cursor.close();
         }
 
-        // Pre-decode all HTMLs
-        final long start = System.currentTimeMillis();
-        for (StreamItemEntry streamItem : streamItems) {
-            streamItem.decodeHtml(getContext());
-        }
-        final long end = System.currentTimeMillis();
-        if (DEBUG) {
-            Log.d(TAG, "Decoded HTML for " + streamItems.size() + " items, took "
-                    + (end - start) + " ms");
-        }
-
         // Now retrieve any photo records associated with the stream items.
         if (!streamItems.isEmpty()) {
             if (result.isUserProfile()) {
                 // If the stream items we're loading are for the profile, we can't bulk-load the
                 // stream items with a custom selection.
-                for (StreamItemEntry entry : streamItems) {
-                    Cursor siCursor = getContext().getContentResolver().query(
-                            Uri.withAppendedPath(
-                                    ContentUris.withAppendedId(
-                                            StreamItems.CONTENT_URI, entry.getId()),
-                                    StreamItems.StreamItemPhotos.CONTENT_DIRECTORY),
-                            null, null, null, null);
-                    try {
-                        while (siCursor.moveToNext()) {
-                            entry.addPhoto(new StreamItemPhotoEntry(siCursor));
-                        }
-                    } finally {
-                        siCursor.close();
-                    }
-                }
+                loadProfileStreamItemPhotos(streamItems);
             } else {
                 String[] streamItemIdArr = new String[streamItems.size()];
                 StringBuilder streamItemPhotoSelection = new StringBuilder();
@@ -793,16 +1145,61 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
         }
 
         // Set the sorted stream items on the result.
-        Collections.sort(streamItems);
-        result.setStreamItems(new ImmutableList.Builder<StreamItemEntry>()
-                .addAll(streamItems.iterator())
-                .build());
+        Collections.sort(allStreamItems);
+        builder.setStreamItems(new ImmutableList.Builder<StreamItemEntry>()
+                .addAll(allStreamItems.iterator())
+                .build(), hasMoreStreamItems);
+        if (DEBUG) {
+            Log.d(TAG, "Loaded " + streamItems.size() + " new stream items, "
+                    + allStreamItems.size() + " in total, more: " + hasMoreStreamItems);
+        }
+    }
+
+    /**
+     * Loads the photos of the given stream items of the profile. The provider only serves
+     * profile stream item photos through the URI of each stream item, so there has to be a
+     * query per item. The queries share one provider client instead of resolving the provider
+     * each time, and stop when the load is cancelled; the caller then drops the result.
+     */
+    private void loadProfileStreamItemPhotos(List<StreamItemEntry> streamItems) {
+        final ContentProviderClient client = getContext().getContentResolver()
+                .acquireContentProviderClient(ContactsContract.AUTHORITY);
+        if (client == null) {
+            Log.w(TAG, "Unable to acquire provider to load profile stream item photos");
+            return;
+        }
+        try {
+            final int count = streamItems.size();
+            for (int i = 0; i < count && !isLoadInBackgroundCanceled(); i++) {
+                final StreamItemEntry entry = streamItems.get(i);
+                final Cursor cursor = client.query(
+                        Uri.withAppendedPath(
+                                ContentUris.withAppendedId(StreamItems.CONTENT_URI, entry.getId()),
+                                StreamItems.StreamItemPhotos.CONTENT_DIRECTORY),
+                        null, null, null, null);
+                if (cursor == null) {
+                    continue;
+                }
+                try {
+                    while (cursor.moveToNext()) {
+                        entry.addPhoto(new StreamItemPhotoEntry(cursor));
+                    }
+                } finally {
+                    cursor.close();
+                }
+            }
+        } catch (RemoteException e) {
+            Log.w(TAG, "Error loading profile stream item photos", e);
+        } finally {
+            client.release();
+        }
     }
 
     /**
      * Iterates over all data items that represent phone numbers are tries to calculate a formatted
      * number. This function can safely be called several times as no unformatted data is
-     * overwritten
+     * overwritten. It must only be called for a contact that has not been published yet; numbers
+     * of raw contacts carried over from an earlier result are already formatted and left as is.
      */
     private void computeFormattedPhoneNumbers(Contact contactData) {
         final String countryIso = GeoUtil.getCurrentCountryIso(getContext());
@@ -810,18 +1207,33 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
         final int rawContactCount = rawContacts.size();
         for (int rawContactIndex = 0; rawContactIndex < rawContactCount; rawContactIndex++) {
             final RawContact rawContact = rawContacts.get(rawContactIndex);
-            final List<DataItem> dataItems = rawContact.getDataItems();
+            final List<DataItem> dataItems = rawContact.getDataItems(Phone.CONTENT_ITEM_TYPE);
             final int dataCount = dataItems.size();
             for (int dataIndex = 0; dataIndex < dataCount; dataIndex++) {
-                final DataItem dataItem = dataItems.get(dataIndex);
-                if (dataItem instanceof PhoneDataItem) {
-                    final PhoneDataItem phoneDataItem = (PhoneDataItem) dataItem;
+                final PhoneDataItem phoneDataItem = (PhoneDataItem) dataItems.get(dataIndex);
+                if (!phoneDataItem.hasFormattedPhoneNumber()) {
                     phoneDataItem.computeFormattedPhoneNumber(countryIso);
                 }
             }
         }
     }
 
+    private static boolean hasFormattedPhoneNumbers(Contact contactData) {
+        final ImmutableList<RawContact> rawContacts = contactData.getRawContacts();
+        final int rawContactCount = rawContacts.size();
+        for (int rawContactIndex = 0; rawContactIndex < rawContactCount; rawContactIndex++) {
+            final List<DataItem> dataItems =
+                    rawContacts.get(rawContactIndex).getDataItems(Phone.CONTENT_ITEM_TYPE);
+            final int dataCount = dataItems.size();
+            for (int dataIndex = 0; dataIndex < dataCount; dataIndex++) {
+                if (!((PhoneDataItem) dataItems.get(dataIndex)).hasFormattedPhoneNumber()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     @Override
     public void deliverResult(Contact result) {
         unregisterObserver();
@@ -839,7 +1251,7 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
             if (!result.isDirectoryEntry()) {
                 Log.i(TAG, "Registering content observer for " + mLookupUri);
                 if (mObserver == null) {
-                    mObserver = new ForceLoadContentObserver();
+                    mObserver = new ContactObserver();
                 }
                 getContext().getContentResolver().registerContentObserver(
                         mLookupUri, true, mObserver);
@@ -884,6 +1296,28 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
         }
     }
 
+    /**
+     * Works like {@link ForceLoadContentObserver}, but drops the contact from the
+     * {@link ContactCache} first, so that the reload doesn't pick up the stale result.
+     */
+    private final class ContactObserver extends ContentObserver {
+        public ContactObserver() {
+            super(new Handler());
+        }
+
+        @Override
+        public boolean deliverSelfNotifications() {
+            return true;
+        }
+
+        @Override
+        public void onChange(boolean selfChange) {
+            ContactCache.getInstance(getContext()).invalidate(mLookupUri);
+            mReloadBase = mContact;
+            onContentChanged();
+        }
+    }
+
     private void unregisterObserver() {
         if (mObserver != null) {
             getContext().getContentResolver().unregisterContentObserver(mObserver);
@@ -925,6 +1359,59 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
         onContentChanged();
     }
 
+    /**
+     * Sets whether the steps after the entity query (groups, stream items, photo, invitable
+     * account types) run at the same time on a shared pool, or one after another on the loader
+     * thread. Concurrent loading is on by default.
+     */
+    public void setLoadConcurrently(boolean value) {
+        mLoadConcurrently = value;
+    }
+
+    /**
+     * Sets whether a change to the contact only re-reads the raw contacts whose version changed
+     * instead of the whole contact. Incremental reloading is on by default.
+     */
+    public void setReloadIncrementally(boolean value) {
+        mReloadIncrementally = value;
+    }
+
+    /**
+     * Sets the size, in pixels, that the contact photo will be displayed at. If set, a photo
+     * larger than that is decoded on the loader thread to a downsampled bitmap no smaller than
+     * this size, which is available from {@link Contact#getPhotoBitmap()}.
+     */
+    public void setPhotoTargetSize(int photoTargetSize) {
+        mPhotoTargetSize = photoTargetSize;
+    }
+
+    /**
+     * Sets the number of stream items to load at a time. By default, all stream items are
+     * loaded at once. If set, only the most recent page is loaded at first and
+     * {@link #loadMoreStreamItems()} adds the next one.
+     */
+    public void setStreamItemsPageSize(int pageSize) {
+        mStreamItemsPageSize = pageSize;
+        mStreamItemsLimit = pageSize;
+    }
+
+    /**
+     * Loads the next page of stream items, if the loaded contact has more. The new result is
+     * delivered when done. Does nothing while a page is still being loaded.
+     */
+    public void loadMoreStreamItems() {
+        if (mStreamItemsPageSize <= 0 || mContact == null || !mContact.isLoaded()
+                || !mContact.hasMoreStreamItems()
+                || mContact.getStreamItems().size() < mStreamItemsLimit) {
+            return;
+        }
+        mStreamItemsLimit += mStreamItemsPageSize;
+
+        // Cache the current result, so that we only load the additional stream items.
+        cacheResult();
+        onContentChanged();
+    }
+
     public boolean getLoadStreamItems() {
         return mLoadStreamItems;
     }
@@ -959,13 +1446,12 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
 
     /**
      * Caches the result, which is useful when we switch from activity to activity, using the same
-     * contact. If the next load is for a different contact, the cached result will be dropped
+     * contact. The result stays in the {@link ContactCache} until it is evicted or the contact
+     * changes.
      */
     public void cacheResult() {
-        if (mContact == null || !mContact.isLoaded()) {
-            sCachedResult = null;
-        } else {
-            sCachedResult = mContact;
+        if (mContact != null && mContact.isLoaded()) {
+            ContactCache.getInstance(getContext()).put(mContact, mResultCacheGeneration);
         }
     }
 }
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.model;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Process;
+import android.provider.ContactsContract;
+import android.util.Log;
+
+import com.android.contacts.util.ContactPhotoUtils;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Loads contacts that are likely to be opened next into the {@link ContactCache}, so that the
+ * {@link ContactLoader} of the detail view can bind them from memory.
+ *
+ * Contacts are loaded one at a time on a single background thread of the lowest priority.
+ * Only the most recent requests are kept: older ones that did not start yet are dropped once
+ * more than {@link #MAX_PENDING} contacts are waiting. The contact that the detail view is
+ * loading, see {@link #setOwnedContact}, is never prefetched. Stream items and invitable
+ * account types are left to the detail loader, which completes a cached contact with whatever
+ * it is missing.
+ */
+public final class ContactPrefetcher {
+    private static final String TAG = ContactPrefetcher.class.getSimpleName();
+
+    private static final boolean DEBUG = Log.isLoggable(TAG, Log.DEBUG);
+
+    /** Maximum number of contacts waiting to be prefetched, about a screen of the list. */
+    @VisibleForTesting
+    static final int MAX_PENDING = 10;
+
+    private final Context mContext;
+    private final int mPhotoTargetSize;
+    private final boolean mStartThread;
+
+    /** Contacts waiting to be prefetched, most urgent first. Guarded by itself. */
+    private final LinkedList<Uri> mPending = new LinkedList<Uri>();
+    /** The contact that the detail view loads itself. Guarded by {@link #mPending}. */
+    private Uri mOwnedUri;
+    private Thread mThread;
+
+    public ContactPrefetcher(Context context) {
+        this(context, true);
+    }
+
+    /**
+     * @param startThread false to only queue the contacts, without ever loading them
+     */
+    @VisibleForTesting
+    /* package */ ContactPrefetcher(Context context, boolean startThread) {
+        mContext = context.getApplicationContext();
+        mPhotoTargetSize = ContactPhotoUtils.getDisplayPhotoTargetSize(context);
+        mStartThread = startThread;
+    }
+
+    /**
+     * Prefetches the given contact ahead of any other pending contact. Does nothing for
+     * contacts that are already cached or that do not belong to the local directory.
+     */
+    public void prefetch(Uri lookupUri) {
+        synchronized (mPending) {
+            if (!isPrefetchable(lookupUri)) return;
+            mPending.remove(lookupUri);
+            mPending.addFirst(lookupUri);
+            startLocked();
+        }
+    }
+
+    /**
+     * Replaces the pending contacts with the given ones, in order, like the contacts on screen
+     * once scrolling stops, which make any earlier request obsolete.
+     */
+    public void prefetchAll(List<Uri> lookupUris) {
+        synchronized (mPending) {
+            mPending.clear();
+            for (Uri lookupUri : lookupUris) {
+                if (isPrefetchable(lookupUri) && !mPending.contains(lookupUri)) {
+                    mPending.addLast(lookupUri);
+                }
+            }
+            startLocked();
+        }
+    }
+
+    /**
+     * Sets the contact that the detail view is loading, or null. That contact is dropped from
+     * the pending ones and not prefetched until another one is set, so that the prefetcher
+     * does not repeat the work of the detail loader.
+     */
+    public void setOwnedContact(Uri lookupUri) {
+        synchronized (mPending) {
+            mOwnedUri = lookupUri;
+            if (lookupUri != null) {
+                mPending.remove(lookupUri);
+            }
+        }
+    }
+
+    @VisibleForTesting
+    /* package */ List<Uri> getPending() {
+        synchronized (mPending) {
+            return Lists.newArrayList(mPending);
+        }
+    }
+
+    private boolean isPrefetchable(Uri lookupUri) {
+        return lookupUri != null && !isRemote(lookupUri) && !lookupUri.equals(mOwnedUri);
+    }
+
+    private void startLocked() {
+        while (mPending.size() > MAX_PENDING) {
+            mPending.removeLast();
+        }
+        if (mPending.isEmpty() || !mStartThread) return;
+        mPending.notify();
+        if (mThread == null) {
+            mThread = new PrefetchThread();
+            mThread.start();
+        }
+    }
+
+    /**
+     * Drops all contacts that are waiting to be prefetched. A contact that is already being
+     * loaded is still completed and cached.
+     */
+    public void cancel() {
+        synchronized (mPending) {
+            mPending.clear();
+        }
+    }
+
+    private static boolean isRemote(Uri lookupUri) {
+        return lookupUri.getQueryParameter(ContactsContract.DIRECTORY_PARAM_KEY) != null;
+    }
+
+    private void load(Uri lookupUri) {
+        final ContactCache cache = ContactCache.getInstance(mContext);
+        if (cache.get(lookupUri) != null) return;
+
+        final ContactLoader loader = new ContactLoader(mContext, lookupUri,
+                true /* loadGroupMetaData */, false /* loadStreamItems */,
+                false /* loadInvitableAccountTypes */, false /* postViewNotification */,
+                true /* computeFormattedPhoneNumber */);
+        loader.setPhotoTargetSize(mPhotoTargetSize);
+        // Keep to this thread rather than competing with the loader of the visible contact
+        loader.setLoadConcurrently(false);
+        final Contact contact = loader.loadInBackground();
+        if (DEBUG) Log.d(TAG, "Prefetched " + lookupUri + ": loaded=" + contact.isLoaded());
+    }
+
+    private final class PrefetchThread extends Thread {
+        /** How long the thread waits for more work before it ends. */
+        private static final long IDLE_TIMEOUT_MS = 10000;
+
+        public PrefetchThread() {
+            super(TAG);
+        }
+
+        @Override
+        public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_LOWEST);
+            while (true) {
+                final Uri lookupUri;
+                synchronized (mPending) {
+                    if (mPending.isEmpty()) {
+                        try {
+                            mPending.wait(IDLE_TIMEOUT_MS);
+                        } catch (InterruptedException e) {
+                            // Fall through and check the queue once more
+                        }
+                    }
+                    if (mPending.isEmpty()) {
+                        mThread = null;
+                        return;
+                    }
+                    lookupUri = mPending.removeFirst();
+                }
+                try {
+                    load(lookupUri);
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "Unable to prefetch " + lookupUri, e);
+                }
+            }
+        }
+    }
+}
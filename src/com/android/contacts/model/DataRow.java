@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.model;
+
+import android.content.ContentValues;
+
+/**
+ * A single row of the Data table. The row is either backed by a {@link DataRowTable}, which
+ * is how loaded contacts store their data, or by {@link ContentValues}.
+ *
+ * The getters read straight from the table without creating any {@link ContentValues}. The
+ * first call to {@link #getContentValues} copies the row into {@link ContentValues}, which
+ * from then on back the row; this is also what callers that modify the row have to use.
+ */
+public final class DataRow {
+    private final DataRowTable mTable;
+    private final int mIndex;
+    private volatile ContentValues mValues;
+
+    public DataRow(ContentValues values) {
+        mTable = null;
+        mIndex = -1;
+        mValues = values;
+    }
+
+    /* package */ DataRow(DataRowTable table, int index) {
+        mTable = table;
+        mIndex = index;
+    }
+
+    /**
+     * Returns the row as {@link ContentValues}, creating them on first use. Changes to the
+     * returned values are changes to the row.
+     */
+    public ContentValues getContentValues() {
+        ContentValues values = mValues;
+        if (values == null) {
+            synchronized (this) {
+                values = mValues;
+                if (values == null) {
+                    values = mTable.toContentValues(mIndex);
+                    mValues = values;
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Returns the column of the table, or -1 if the table does not have the column.
+     */
+    private int getTableColumn(String key) {
+        return mTable.getSchema().getIndex(key);
+    }
+
+    public boolean containsKey(String key) {
+        final ContentValues values = mValues;
+        if (values != null) return values.containsKey(key);
+        final int column = getTableColumn(key);
+        return column != -1 && !mTable.isNull(mIndex, column);
+    }
+
+    public Object get(String key) {
+        final ContentValues values = mValues;
+        if (values != null) return values.get(key);
+        final int column = getTableColumn(key);
+        return column == -1 ? null : mTable.get(mIndex, column);
+    }
+
+    public String getAsString(String key) {
+        final ContentValues values = mValues;
+        if (values != null) return values.getAsString(key);
+        final int column = getTableColumn(key);
+        return column == -1 ? null : mTable.getAsString(mIndex, column);
+    }
+
+    public Long getAsLong(String key) {
+        final ContentValues values = mValues;
+        if (values != null) return values.getAsLong(key);
+        final int column = getTableColumn(key);
+        return column == -1 ? null : mTable.getAsLong(mIndex, column);
+    }
+
+    public Integer getAsInteger(String key) {
+        final ContentValues values = mValues;
+        if (values != null) return values.getAsInteger(key);
+        final Long value = getAsLong(key);
+        return value == null ? null : value.intValue();
+    }
+
+    public byte[] getAsByteArray(String key) {
+        final ContentValues values = mValues;
+        if (values != null) return values.getAsByteArray(key);
+        final int column = getTableColumn(key);
+        return column == -1 ? null : mTable.getAsByteArray(mIndex, column);
+    }
+
+    @Override
+    public int hashCode() {
+        return getContentValues().hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        return getContentValues().equals(((DataRow) obj).getContentValues());
+    }
+
+    @Override
+    public String toString() {
+        return getContentValues().toString();
+    }
+}
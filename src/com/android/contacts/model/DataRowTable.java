@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.model;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.util.Log;
+
+import com.google.common.collect.Maps;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Compact, column-indexed storage for the data rows of a single raw contact.
+ *
+ * All cells of all rows live in three flat arrays: the cell types, the integer values (kept
+ * unboxed) and the string and blob values. Null cells take no more than their slots, so a row
+ * costs a fraction of a {@link ContentValues} with one map entry and one boxed value per
+ * column. Rows are only appended while the raw contact is loaded; afterwards the table is
+ * read-only and is accessed through the {@link DataRow} handles returned by
+ * {@link #addRow}.
+ */
+public final class DataRowTable {
+    private static final String TAG = DataRowTable.class.getSimpleName();
+
+    private static final int INITIAL_ROW_CAPACITY = 4;
+
+    /**
+     * The column names of a table. Shared by all tables that are loaded by the same query.
+     */
+    public static final class Schema {
+        private final String[] mNames;
+        private final HashMap<String, Integer> mIndices;
+        private final boolean[] mInterned;
+
+        public Schema(String... names) {
+            mNames = names;
+            mIndices = Maps.newHashMapWithExpectedSize(names.length);
+            for (int i = 0; i < names.length; i++) {
+                mIndices.put(names[i], i);
+            }
+            mInterned = new boolean[names.length];
+        }
+
+        /**
+         * Makes the tables intern the strings of the given columns, for columns with few
+         * distinct values such as the mimetype. Interned values that equal a string constant
+         * are the constant itself, so comparing them with {@link String#equals} is an identity
+         * check. Must be called before the schema is used.
+         */
+        public Schema intern(String... names) {
+            for (String name : names) {
+                mInterned[mIndices.get(name)] = true;
+            }
+            return this;
+        }
+
+        public int size() {
+            return mNames.length;
+        }
+
+        public String getName(int column) {
+            return mNames[column];
+        }
+
+        /**
+         * Returns the index of the given column, or -1 if the schema does not have it.
+         */
+        public int getIndex(String name) {
+            final Integer index = mIndices.get(name);
+            return index == null ? -1 : index;
+        }
+    }
+
+    private final Schema mSchema;
+    private final int mColumnCount;
+    private int mRowCount;
+    /** The {@link Cursor}{@code .FIELD_TYPE_*} of every cell. */
+    private byte[] mTypes;
+    /** The values of the integer cells. */
+    private long[] mLongs;
+    /** The values of the string, float and blob cells. */
+    private Object[] mObjects;
+
+    public DataRowTable(Schema schema) {
+        mSchema = schema;
+        mColumnCount = schema.size();
+        final int cells = INITIAL_ROW_CAPACITY * mColumnCount;
+        mTypes = new byte[cells];
+        mLongs = new long[cells];
+        mObjects = new Object[cells];
+    }
+
+    public Schema getSchema() {
+        return mSchema;
+    }
+
+    public int getRowCount() {
+        return mRowCount;
+    }
+
+    /**
+     * Appends the current row of the cursor. Column {@code i} of the schema is read from
+     * column {@code cursorColumns[i]} of the cursor.
+     */
+    public DataRow addRow(Cursor cursor, int[] cursorColumns) {
+        if (cursorColumns.length != mColumnCount) {
+            throw new IllegalArgumentException("Expected " + mColumnCount + " columns, got "
+                    + cursorColumns.length);
+        }
+        ensureCapacity(mRowCount + 1);
+        final int offset = mRowCount * mColumnCount;
+        for (int column = 0; column < mColumnCount; column++) {
+            final int cursorColumn = cursorColumns[column];
+            final int type = cursor.getType(cursorColumn);
+            mTypes[offset + column] = (byte) type;
+            switch (type) {
+                case Cursor.FIELD_TYPE_NULL:
+                    break;
+                case Cursor.FIELD_TYPE_INTEGER:
+                    mLongs[offset + column] = cursor.getLong(cursorColumn);
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    mObjects[offset + column] = cursor.getDouble(cursorColumn);
+                    break;
+                case Cursor.FIELD_TYPE_STRING:
+                    final String value = cursor.getString(cursorColumn);
+                    mObjects[offset + column] = mSchema.mInterned[column] ? value.intern() : value;
+                    break;
+                case Cursor.FIELD_TYPE_BLOB:
+                    mObjects[offset + column] = cursor.getBlob(cursorColumn);
+                    break;
+                default:
+                    throw new IllegalStateException("Invalid or unhandled data type");
+            }
+        }
+        return new DataRow(this, mRowCount++);
+    }
+
+    private void ensureCapacity(int rows) {
+        final int cells = rows * mColumnCount;
+        if (cells <= mTypes.length) return;
+        final int newCells = Math.max(cells, mTypes.length * 2);
+        mTypes = Arrays.copyOf(mTypes, newCells);
+        mLongs = Arrays.copyOf(mLongs, newCells);
+        mObjects = Arrays.copyOf(mObjects, newCells);
+    }
+
+    /* package */ boolean isNull(int row, int column) {
+        return mTypes[row * mColumnCount + column] == Cursor.FIELD_TYPE_NULL;
+    }
+
+    /**
+     * Returns the value of a cell, boxing integers. Follows {@link ContentValues#get}.
+     */
+    /* package */ Object get(int row, int column) {
+        final int cell = row * mColumnCount + column;
+        return mTypes[cell] == Cursor.FIELD_TYPE_INTEGER ? mLongs[cell] : mObjects[cell];
+    }
+
+    /* package */ String getAsString(int row, int column) {
+        final int cell = row * mColumnCount + column;
+        switch (mTypes[cell]) {
+            case Cursor.FIELD_TYPE_NULL:
+                return null;
+            case Cursor.FIELD_TYPE_INTEGER:
+                return String.valueOf(mLongs[cell]);
+            default:
+                return mObjects[cell].toString();
+        }
+    }
+
+    /**
+     * Returns the value of a cell as a long, following the conversions of
+     * {@link ContentValues#getAsLong}.
+     */
+    /* package */ Long getAsLong(int row, int column) {
+        final int cell = row * mColumnCount + column;
+        switch (mTypes[cell]) {
+            case Cursor.FIELD_TYPE_NULL:
+            case Cursor.FIELD_TYPE_BLOB:
+                return null;
+            case Cursor.FIELD_TYPE_INTEGER:
+                return mLongs[cell];
+            case Cursor.FIELD_TYPE_FLOAT:
+                return ((Double) mObjects[cell]).longValue();
+            default:
+                try {
+                    return Long.valueOf(mObjects[cell].toString());
+                } catch (NumberFormatException e) {
+                    Log.e(TAG, "Cannot parse Long value for " + mObjects[cell] + " at key "
+                            + mSchema.getName(column));
+                    return null;
+                }
+        }
+    }
+
+    /* package */ byte[] getAsByteArray(int row, int column) {
+        final int cell = row * mColumnCount + column;
+        return mTypes[cell] == Cursor.FIELD_TYPE_BLOB ? (byte[]) mObjects[cell] : null;
+    }
+
+    /**
+     * Copies a row into a new {@link ContentValues}, leaving out the null cells.
+     */
+    /* package */ ContentValues toContentValues(int row) {
+        final ContentValues values = new ContentValues();
+        final int offset = row * mColumnCount;
+        for (int column = 0; column < mColumnCount; column++) {
+            final int cell = offset + column;
+            final String name = mSchema.getName(column);
+            switch (mTypes[cell]) {
+                case Cursor.FIELD_TYPE_NULL:
+                    break;
+                case Cursor.FIELD_TYPE_INTEGER:
+                    values.put(name, mLongs[cell]);
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    values.put(name, (Double) mObjects[cell]);
+                    break;
+                case Cursor.FIELD_TYPE_STRING:
+                    values.put(name, (String) mObjects[cell]);
+                    break;
+                case Cursor.FIELD_TYPE_BLOB:
+                    values.put(name, (byte[]) mObjects[cell]);
+                    break;
+            }
+        }
+        return values;
+    }
+}
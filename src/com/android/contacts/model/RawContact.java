@@ -19,6 +19,7 @@ package com.android.contacts.model;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Entity;
+import android.database.Cursor;
 import android.net.Uri;
 import android.os.Parcel;
 import android.os.Parcelable;
@@ -31,6 +32,8 @@ import com.android.contacts.common.model.account.AccountType;
 import com.android.contacts.common.model.account.AccountWithDataSet;
 import com.android.contacts.model.dataitem.DataItem;
 import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.Lists;
 
 import java.util.ArrayList;
@@ -52,6 +55,24 @@ final public class RawContact implements Parcelable {
     private AccountTypeManager mAccountTypeManager;
     private final ContentValues mValues;
     private final ArrayList<NamedDataItem> mDataItems;
+    /** Storage of the data rows added by {@link #addDataRow}, if any. */
+    private DataRowTable mDataRows;
+    /** Typed views of the data items, built on first use and dropped when items are added. */
+    private volatile DataItemViews mDataItemViews;
+
+    /**
+     * The {@link DataItem}s of the rows in the Data table, in order and by mimetype.
+     */
+    private static final class DataItemViews {
+        final ImmutableList<DataItem> all;
+        final ImmutableListMultimap<String, DataItem> byMimeType;
+
+        DataItemViews(ImmutableList<DataItem> all,
+                ImmutableListMultimap<String, DataItem> byMimeType) {
+            this.all = all;
+            this.byMimeType = byMimeType;
+        }
+    }
 
     final public static class NamedDataItem implements Parcelable {
         public final Uri mUri;
@@ -62,21 +83,31 @@ final public class RawContact implements Parcelable {
         // DataItem it is. And having parent DataItem's here makes it very difficult to serialize or
         // parcelable.
         //
-        // Instead of having a common DataItem super class, we should refactor this to be a generic
-        // Object where the object is a concrete class that no longer relies on ContentValues.
-        // (this will also make the classes easier to use).
-        // Since instanceof is used later anyways, having a list of Objects won't hurt and is no
-        // worse than having a DataItem.
-        public final ContentValues mContentValues;
+        // Loaded contacts keep their rows in a compact DataRowTable; ContentValues are only
+        // created for the rows that a caller asks for them.
+        private final DataRow mRow;
 
         public NamedDataItem(Uri uri, ContentValues values) {
+            this(uri, new DataRow(values));
+        }
+
+        public NamedDataItem(Uri uri, DataRow row) {
             this.mUri = uri;
-            this.mContentValues = values;
+            this.mRow = row;
         }
 
         public NamedDataItem(Parcel parcel) {
             this.mUri = parcel.readParcelable(Uri.class.getClassLoader());
-            this.mContentValues = parcel.readParcelable(ContentValues.class.getClassLoader());
+            this.mRow = new DataRow(
+                    (ContentValues) parcel.readParcelable(ContentValues.class.getClassLoader()));
+        }
+
+        public DataRow getRow() {
+            return mRow;
+        }
+
+        public ContentValues getContentValues() {
+            return mRow.getContentValues();
         }
 
         @Override
@@ -87,7 +118,7 @@ final public class RawContact implements Parcelable {
         @Override
         public void writeToParcel(Parcel parcel, int i) {
             parcel.writeParcelable(mUri, i);
-            parcel.writeParcelable(mContentValues, i);
+            parcel.writeParcelable(mRow.getContentValues(), i);
         }
 
         public static final Parcelable.Creator<NamedDataItem> CREATOR
@@ -106,7 +137,7 @@ final public class RawContact implements Parcelable {
 
         @Override
         public int hashCode() {
-            return Objects.hashCode(mUri, mContentValues);
+            return Objects.hashCode(mUri, mRow);
         }
 
         @Override
@@ -116,7 +147,7 @@ final public class RawContact implements Parcelable {
 
             final NamedDataItem other = (NamedDataItem) obj;
             return Objects.equal(mUri, other.mUri) &&
-                    Objects.equal(mContentValues, other.mContentValues);
+                    Objects.equal(mRow, other.mRow);
         }
     }
 
@@ -233,7 +264,7 @@ final public class RawContact implements Parcelable {
     }
 
     public long getVersion() {
-        return getValues().getAsLong(RawContacts.DIRTY);
+        return getValues().getAsLong(RawContacts.VERSION);
     }
 
     public String getSourceId() {
@@ -328,27 +359,82 @@ final public class RawContact implements Parcelable {
     public NamedDataItem addNamedDataItemValues(Uri uri, ContentValues values) {
         final NamedDataItem namedItem = new NamedDataItem(uri, values);
         mDataItems.add(namedItem);
+        mDataItemViews = null;
         return namedItem;
     }
 
+    /**
+     * Adds the current row of the cursor as a data item. The row is copied into this raw
+     * contact's {@link DataRowTable} rather than into {@link ContentValues}.
+     *
+     * @param cursorColumns the cursor column of each column of the schema
+     */
+    public void addDataRow(Cursor cursor, DataRowTable.Schema schema, int[] cursorColumns) {
+        if (mDataRows == null || mDataRows.getSchema() != schema) {
+            mDataRows = new DataRowTable(schema);
+        }
+        mDataItems.add(new NamedDataItem(Data.CONTENT_URI,
+                mDataRows.addRow(cursor, cursorColumns)));
+        mDataItemViews = null;
+    }
+
+    /**
+     * Returns the number of data items, including those that are not in the Data table.
+     */
+    public int getDataItemCount() {
+        return mDataItems.size();
+    }
+
     public ArrayList<ContentValues> getContentValues() {
         final ArrayList<ContentValues> list = Lists.newArrayListWithCapacity(mDataItems.size());
         for (NamedDataItem dataItem : mDataItems) {
             if (Data.CONTENT_URI.equals(dataItem.mUri)) {
-                list.add(dataItem.mContentValues);
+                list.add(dataItem.getContentValues());
             }
         }
         return list;
     }
 
+    /**
+     * Returns the data items of the rows in the Data table. The items are created on the first
+     * call and shared by all later calls, so the returned list is immutable.
+     */
     public List<DataItem> getDataItems() {
-        final ArrayList<DataItem> list = Lists.newArrayListWithCapacity(mDataItems.size());
-        for (NamedDataItem dataItem : mDataItems) {
-            if (Data.CONTENT_URI.equals(dataItem.mUri)) {
-                list.add(DataItem.createFrom(dataItem.mContentValues));
+        return getDataItemViews().all;
+    }
+
+    /**
+     * Returns the data items of the given mimetype, like {@link #getDataItems} does for all.
+     */
+    public List<DataItem> getDataItems(String mimeType) {
+        return getDataItemViews().byMimeType.get(mimeType);
+    }
+
+    private DataItemViews getDataItemViews() {
+        DataItemViews views = mDataItemViews;
+        if (views == null) {
+            synchronized (this) {
+                views = mDataItemViews;
+                if (views == null) {
+                    final ImmutableList.Builder<DataItem> all = ImmutableList.builder();
+                    final ImmutableListMultimap.Builder<String, DataItem> byMimeType =
+                            ImmutableListMultimap.builder();
+                    for (NamedDataItem namedDataItem : mDataItems) {
+                        if (Data.CONTENT_URI.equals(namedDataItem.mUri)) {
+                            final DataItem dataItem = DataItem.createFrom(namedDataItem.mRow);
+                            all.add(dataItem);
+                            final String mimeType = dataItem.getMimeType();
+                            if (mimeType != null) {
+                                byMimeType.put(mimeType, dataItem);
+                            }
+                        }
+                    }
+                    views = new DataItemViews(all.build(), byMimeType.build());
+                    mDataItemViews = views;
+                }
             }
         }
-        return list;
+        return views;
     }
 
     public String toString() {
@@ -356,7 +442,7 @@ final public class RawContact implements Parcelable {
         sb.append("RawContact: ").append(mValues);
         for (RawContact.NamedDataItem namedDataItem : mDataItems) {
             sb.append("\n  ").append(namedDataItem.mUri);
-            sb.append("\n  -> ").append(namedDataItem.mContentValues);
+            sb.append("\n  -> ").append(namedDataItem.mRow);
         }
         return sb.toString();
     }
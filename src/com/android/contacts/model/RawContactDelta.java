@@ -37,7 +37,12 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Contains a {@link RawContact} and records any modifications separately so the
@@ -75,6 +80,43 @@ public class RawContactDelta implements Parcelable {
      */
     private final HashMap<String, ArrayList<ValuesDelta>> mEntries = Maps.newHashMap();
 
+    /**
+     * Index of the children in {@link #mEntries} by their {@link BaseColumns#_ID}, kept in
+     * sync by {@link #addEntry}. Children are expected to have distinct ids; when several share
+     * one, the first one added is indexed. The index is authoritative: a child with an id that
+     * is not in it is not one of the children.
+     */
+    private final HashMap<Long, ValuesDelta> mEntriesById = Maps.newHashMap();
+
+    /**
+     * Children that had no id when they were added, which are moved to {@link #mEntriesById}
+     * by {@link #indexAssignedIds} once they have one.
+     */
+    private final ArrayList<ValuesDelta> mEntriesWithoutId = Lists.newArrayList();
+
+    /**
+     * The children that may differ from their "before" state: children that are added, merged
+     * or deleted, and handed out children that have since been edited. All other children are
+     * known to be unchanged and are skipped when building diffs or looking for changes.
+     */
+    private final Set<ValuesDelta> mDirtyEntries =
+            Collections.newSetFromMap(new IdentityHashMap<ValuesDelta, Boolean>());
+
+    /**
+     * Clean children that were handed out to callers, which may edit them. {@link ValuesDelta}
+     * can't tell us about edits, so these are moved to {@link #mDirtyEntries} once their
+     * "after" values show a change; see {@link #updateDirtyEntries()}.
+     */
+    private final Set<ValuesDelta> mWatchedEntries =
+            Collections.newSetFromMap(new IdentityHashMap<ValuesDelta, Boolean>());
+
+    /**
+     * Unchanged children that only carry their id and mimetype, as read from a
+     * {@link CompactRawContactDeltaList}.
+     */
+    private final Set<ValuesDelta> mStubEntries =
+            Collections.newSetFromMap(new IdentityHashMap<ValuesDelta, Boolean>());
+
     public RawContactDelta() {
     }
 
@@ -91,7 +133,7 @@ public class RawContactDelta implements Parcelable {
         rawContactDelta.mValues = ValuesDelta.fromBefore(before.getValues());
         rawContactDelta.mValues.setIdColumn(RawContacts._ID);
         for (final ContentValues values : before.getContentValues()) {
-            rawContactDelta.addEntry(ValuesDelta.fromBefore(values));
+            rawContactDelta.addEntry(ValuesDelta.fromBefore(values), false);
         }
         return rawContactDelta;
     }
@@ -127,12 +169,16 @@ public class RawContactDelta implements Parcelable {
                 final Long childId = remoteEntry.getId();
 
                 // Find or create local match and merge
-                final ValuesDelta localEntry = local.getEntry(childId);
+                final ValuesDelta localEntry = local.findEntry(childId);
+                // A stub has no values to restore a row that was deleted in the meantime
+                if (localEntry == null && remote.mStubEntries.contains(remoteEntry)) continue;
                 final ValuesDelta merged = ValuesDelta.mergeAfter(localEntry, remoteEntry);
 
                 if (localEntry == null && merged != null) {
                     // No local entry before, so insert
                     local.addEntry(merged);
+                } else if (merged != null) {
+                    local.markDirty(merged);
                 }
             }
         }
@@ -158,12 +204,12 @@ public class RawContactDelta implements Parcelable {
 
         for (ValuesDelta entry : mimeEntries) {
             if (entry.isPrimary()) {
-                return entry;
+                return watch(entry);
             }
         }
 
         // When no direct primary, return something
-        return mimeEntries.size() > 0 ? mimeEntries.get(0) : null;
+        return mimeEntries.size() > 0 ? watch(mimeEntries.get(0)) : null;
     }
 
     /**
@@ -188,7 +234,7 @@ public class RawContactDelta implements Parcelable {
         ValuesDelta primary = null;
         for (ValuesDelta entry : mimeEntries) {
             if (entry.isSuperPrimary()) {
-                return entry;
+                return watch(entry);
             } else if (entry.isPrimary()) {
                 primary = entry;
             }
@@ -200,9 +246,9 @@ public class RawContactDelta implements Parcelable {
 
         // When no direct super primary, return something
         if (primary != null) {
-            return primary;
+            return watch(primary);
         }
-        return mimeEntries.size() > 0 ? mimeEntries.get(0) : null;
+        return mimeEntries.size() > 0 ? watch(mimeEntries.get(0)) : null;
     }
 
     /**
@@ -252,13 +298,26 @@ public class RawContactDelta implements Parcelable {
         return mimeEntries;
     }
 
-    public ArrayList<ValuesDelta> getMimeEntries(String mimeType) {
-        return getMimeEntries(mimeType, false);
+    /**
+     * Returns a read-only view of the children of the given mimetype, or null if there are none.
+     * The children are only marked as dirty once the caller edits them; new children must be
+     * added with {@link #addEntry} so that they are indexed and tracked.
+     */
+    public List<ValuesDelta> getMimeEntries(String mimeType) {
+        final ArrayList<ValuesDelta> mimeEntries = getMimeEntries(mimeType, false);
+        if (mimeEntries == null) {
+            return null;
+        }
+        for (ValuesDelta entry : mimeEntries) {
+            watch(entry);
+        }
+        return Collections.unmodifiableList(mimeEntries);
     }
 
     public int getMimeEntriesCount(String mimeType, boolean onlyVisible) {
-        final ArrayList<ValuesDelta> mimeEntries = getMimeEntries(mimeType);
+        final ArrayList<ValuesDelta> mimeEntries = getMimeEntries(mimeType, false);
         if (mimeEntries == null) return 0;
+        if (!onlyVisible) return mimeEntries.size();
 
         int count = 0;
         for (ValuesDelta child : mimeEntries) {
@@ -274,11 +333,106 @@ public class RawContactDelta implements Parcelable {
     }
 
     public ValuesDelta addEntry(ValuesDelta entry) {
+        return addEntry(entry, true);
+    }
+
+    /**
+     * Adds a child, which is tracked as dirty if requested. Children added by callers are
+     * always dirty, as the callers keep them around for editing.
+     */
+    /* package */ ValuesDelta addEntry(ValuesDelta entry, boolean dirty) {
         final String mimeType = entry.getMimetype();
         getMimeEntries(mimeType, true).add(entry);
+        indexEntry(entry);
+        if (dirty) {
+            mDirtyEntries.add(entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Adds an unchanged child that only carries its id and mimetype.
+     */
+    /* package */ void addStubEntry(ValuesDelta entry) {
+        addEntry(entry, false);
+        mStubEntries.add(entry);
+    }
+
+    /**
+     * Returns all children, without marking them dirty.
+     */
+    /* package */ ArrayList<ValuesDelta> getAllEntries() {
+        final ArrayList<ValuesDelta> entries = Lists.newArrayList();
+        for (ArrayList<ValuesDelta> mimeEntries : mEntries.values()) {
+            entries.addAll(mimeEntries);
+        }
+        return entries;
+    }
+
+    /* package */ boolean isProfile() {
+        return Profile.CONTENT_RAW_CONTACTS_URI.equals(mContactsQueryUri);
+    }
+
+    private ValuesDelta markDirty(ValuesDelta entry) {
+        if (entry != null) {
+            mDirtyEntries.add(entry);
+            mWatchedEntries.remove(entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Starts watching a handed out child for edits, unless it is already dirty.
+     */
+    private ValuesDelta watch(ValuesDelta entry) {
+        if (entry != null && !mDirtyEntries.contains(entry)) {
+            mWatchedEntries.add(entry);
+        }
         return entry;
     }
 
+    /**
+     * Moves the watched children that have been edited to {@link #mDirtyEntries}. A clean
+     * child has no "after" values, {@link ValuesDelta#put} adds some and
+     * {@link ValuesDelta#markDeleted} drops them, so this is a constant time check per child.
+     */
+    private void updateDirtyEntries() {
+        final Iterator<ValuesDelta> iterator = mWatchedEntries.iterator();
+        while (iterator.hasNext()) {
+            final ValuesDelta entry = iterator.next();
+            final ContentValues after = entry.getAfter();
+            if (after == null || after.size() > 0) {
+                mDirtyEntries.add(entry);
+                iterator.remove();
+            }
+        }
+    }
+
+    /* package */ static boolean isChanged(ValuesDelta entry) {
+        return entry.isInsert() || entry.isUpdate() || entry.isDelete();
+    }
+
+    /**
+     * Returns the children that may have been changed; all other children are unchanged.
+     */
+    public Set<ValuesDelta> getDirtyEntries() {
+        updateDirtyEntries();
+        return Collections.unmodifiableSet(mDirtyEntries);
+    }
+
+    /**
+     * Returns true if the raw contact or any of its children differ from their "before"
+     * state. Only the dirty children are checked.
+     */
+    public boolean hasChanges() {
+        if (mValues != null && isChanged(mValues)) return true;
+        updateDirtyEntries();
+        for (ValuesDelta entry : mDirtyEntries) {
+            if (isChanged(entry)) return true;
+        }
+        return false;
+    }
+
     public ArrayList<ContentValues> getContentValues() {
         ArrayList<ContentValues> values = Lists.newArrayList();
         for (ArrayList<ValuesDelta> mimeEntries : mEntries.values()) {
@@ -295,20 +449,58 @@ public class RawContactDelta implements Parcelable {
      * Find entry with the given {@link BaseColumns#_ID} value.
      */
     public ValuesDelta getEntry(Long childId) {
+        return watch(findEntry(childId));
+    }
+
+    private ValuesDelta findEntry(Long childId) {
         if (childId == null) {
             // Requesting an "insert" entry, which has no "before"
             return null;
         }
 
-        // Search all children for requested entry
+        indexAssignedIds();
+        final ValuesDelta entry = mEntriesById.get(childId);
+        if (entry != null && !childId.equals(entry.getId())) {
+            // The id of a child changed after it was added, so the index is stale
+            rebuildEntriesById();
+            return mEntriesById.get(childId);
+        }
+        return entry;
+    }
+
+    private void indexEntry(ValuesDelta entry) {
+        final Long childId = entry.getId();
+        if (childId == null) {
+            mEntriesWithoutId.add(entry);
+        } else if (!mEntriesById.containsKey(childId)) {
+            mEntriesById.put(childId, entry);
+        }
+    }
+
+    /**
+     * Indexes the children that were added without an id and were assigned one since.
+     */
+    private void indexAssignedIds() {
+        for (int i = mEntriesWithoutId.size() - 1; i >= 0; i--) {
+            final ValuesDelta entry = mEntriesWithoutId.get(i);
+            final Long childId = entry.getId();
+            if (childId != null) {
+                mEntriesWithoutId.remove(i);
+                if (!mEntriesById.containsKey(childId)) {
+                    mEntriesById.put(childId, entry);
+                }
+            }
+        }
+    }
+
+    private void rebuildEntriesById() {
+        mEntriesById.clear();
+        mEntriesWithoutId.clear();
         for (ArrayList<ValuesDelta> mimeEntries : mEntries.values()) {
             for (ValuesDelta entry : mimeEntries) {
-                if (childId.equals(entry.getId())) {
-                    return entry;
-                }
+                indexEntry(entry);
             }
         }
-        return null;
     }
 
     /**
@@ -344,11 +536,15 @@ public class RawContactDelta implements Parcelable {
     }
 
     private boolean containsEntry(ValuesDelta entry) {
-        for (ArrayList<ValuesDelta> mimeEntries : mEntries.values()) {
-            for (ValuesDelta child : mimeEntries) {
-                // Contained if we find any child that matches
-                if (child.equals(entry)) return true;
-            }
+        // Equal children have equal ids, so only the child with the same id can match
+        final Long childId = entry.getId();
+        if (childId != null) {
+            final ValuesDelta candidate = findEntry(childId);
+            return candidate != null && candidate.equals(entry);
+        }
+        indexAssignedIds();
+        for (ValuesDelta child : mEntriesWithoutId) {
+            if (child.equals(entry)) return true;
         }
         return false;
     }
@@ -361,6 +557,7 @@ public class RawContactDelta implements Parcelable {
         for (ArrayList<ValuesDelta> mimeEntries : mEntries.values()) {
             for (ValuesDelta child : mimeEntries) {
                 child.markDeleted();
+                markDirty(child);
             }
         }
     }
@@ -443,11 +640,14 @@ public class RawContactDelta implements Parcelable {
         builder = mValues.buildDiff(mContactsQueryUri);
         possibleAdd(buildInto, builder);
 
-        // Build operations for all children
+        // Build operations for all changed children, unless the parent was deleted
+        updateDirtyEntries();
+        final boolean hasDirtyEntries = !isContactDelete && !mDirtyEntries.isEmpty();
         for (ArrayList<ValuesDelta> mimeEntries : mEntries.values()) {
+            if (!hasDirtyEntries) break;
             for (ValuesDelta child : mimeEntries) {
-                // Ignore children if parent was deleted
-                if (isContactDelete) continue;
+                // Unchanged children have nothing to write
+                if (!mDirtyEntries.contains(child)) continue;
 
                 // Use the profile data URI if the contact is the profile.
                 if (mContactsQueryUri.equals(Profile.CONTENT_RAW_CONTACTS_URI)) {
@@ -529,7 +729,7 @@ public class RawContactDelta implements Parcelable {
         mContactsQueryUri = source.<Uri> readParcelable(loader);
         for (int i = 0; i < size; i++) {
             final ValuesDelta child = source.<ValuesDelta> readParcelable(loader);
-            this.addEntry(child);
+            this.addEntry(child, isChanged(child));
         }
     }
 
@@ -32,10 +32,13 @@ import android.util.Log;
 
 import com.android.contacts.common.model.ValuesDelta;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * Container for multiple {@link RawContactDelta} objects, usually when editing
@@ -101,23 +104,46 @@ public class RawContactDeltaList extends ArrayList<RawContactDelta> implements P
             RawContactDeltaList remote) {
         if (local == null) local = new RawContactDeltaList();
 
+        // Index the local entities once instead of searching them for every remote one
+        final HashMap<Long, RawContactDelta> localById =
+                Maps.newHashMapWithExpectedSize(local.size());
+        for (RawContactDelta localEntity : local) {
+            indexByRawContactId(localById, localEntity);
+        }
+
         // For each entity in the remote set, try matching over existing
         for (RawContactDelta remoteEntity : remote) {
             final Long rawContactId = remoteEntity.getValues().getId();
 
             // Find or create local match and merge
-            final RawContactDelta localEntity = local.getByRawContactId(rawContactId);
+            final RawContactDelta localEntity =
+                    rawContactId == null ? null : localById.get(rawContactId);
             final RawContactDelta merged = RawContactDelta.mergeAfter(localEntity, remoteEntity);
 
             if (localEntity == null && merged != null) {
                 // No local entry before, so insert
                 local.add(merged);
+                indexByRawContactId(localById, merged);
             }
         }
 
         return local;
     }
 
+    /**
+     * Adds the entity to the index unless it is deleted or the index already has its id,
+     * following {@link #getByRawContactId}.
+     */
+    private static void indexByRawContactId(HashMap<Long, RawContactDelta> index,
+            RawContactDelta entity) {
+        final ValuesDelta values = entity.getValues();
+        if (!values.isVisible()) return;
+        final Long rawContactId = values.getAsLong(RawContacts._ID);
+        if (rawContactId != null && !index.containsKey(rawContactId)) {
+            index.put(rawContactId, entity);
+        }
+    }
+
     /**
      * Build a list of {@link ContentProviderOperation} that will transform all
      * the "before" {@link Entity} states into the modified state which all
@@ -130,6 +156,11 @@ public class RawContactDeltaList extends ArrayList<RawContactDelta> implements P
         }
         final ArrayList<ContentProviderOperation> diff = Lists.newArrayList();
 
+        // Nothing to write, so don't bother asserting versions either
+        if (!mSplitRawContacts && mJoinWithRawContactIds == null && !hasChanges()) {
+            return diff;
+        }
+
         final long rawContactId = this.findRawContactId();
         int firstInsertRow = -1;
 
@@ -211,6 +242,16 @@ public class RawContactDeltaList extends ArrayList<RawContactDelta> implements P
         return diff;
     }
 
+    /**
+     * Returns true if any of the raw contacts differs from its "before" state.
+     */
+    private boolean hasChanges() {
+        for (RawContactDelta delta : this) {
+            if (delta.hasChanges()) return true;
+        }
+        return false;
+    }
+
     private static String diffToString(ArrayList<ContentProviderOperation> ops) {
         StringBuilder sb = new StringBuilder();
         sb.append("[\n");
@@ -356,7 +397,7 @@ public class RawContactDeltaList extends ArrayList<RawContactDelta> implements P
         ValuesDelta primary = null;
         ValuesDelta randomEntry = null;
         for (RawContactDelta delta : this) {
-            final ArrayList<ValuesDelta> mimeEntries = delta.getMimeEntries(mimeType);
+            final List<ValuesDelta> mimeEntries = delta.getMimeEntries(mimeType);
             if (mimeEntries == null) return null;
 
             for (ValuesDelta entry : mimeEntries) {
@@ -391,6 +432,10 @@ public class RawContactDeltaList extends ArrayList<RawContactDelta> implements P
         mJoinWithRawContactIds = rawContactIds;
     }
 
+    /* package */ long[] getJoinWithRawContactIds() {
+        return mJoinWithRawContactIds;
+    }
+
     public boolean isMarkedForJoining() {
         return mJoinWithRawContactIds != null && mJoinWithRawContactIds.length > 0;
     }
@@ -36,16 +36,150 @@ import android.provider.ContactsContract.CommonDataKinds.Website;
 import android.provider.ContactsContract.Contacts.Data;
 
 import com.android.contacts.common.model.dataitem.DataKind;
+import com.android.contacts.model.DataRow;
+import com.google.common.collect.Maps;
+
+import java.util.HashMap;
 
 /**
  * This is the base class for data items, which represents a row from the Data table.
+ *
+ * The mimetype of an item is fixed when it is created, so that items can be shared and indexed
+ * by mimetype, as {@link com.android.contacts.model.RawContact} does.
  */
 public class DataItem {
 
-    private final ContentValues mContentValues;
+    /**
+     * Creates the {@link DataItem} subclass of one mimetype.
+     */
+    private interface Factory {
+        DataItem create(DataRow row, String mimeType);
+    }
+
+    /** The {@link Factory} of every mimetype that has its own subclass. */
+    private static final HashMap<String, Factory> FACTORIES = Maps.newHashMap();
+
+    static {
+        FACTORIES.put(GroupMembership.CONTENT_ITEM_TYPE, new Factory() {
+            @Override
+            public DataItem create(DataRow row, String mimeType) {
+                return new GroupMembershipDataItem(row, mimeType);
+            }
+        });
+        FACTORIES.put(StructuredName.CONTENT_ITEM_TYPE, new Factory() {
+            @Override
+            public DataItem create(DataRow row, String mimeType) {
+                return new StructuredNameDataItem(row, mimeType);
+            }
+        });
+        FACTORIES.put(Phone.CONTENT_ITEM_TYPE, new Factory() {
+            @Override
+            public DataItem create(DataRow row, String mimeType) {
+                return new PhoneDataItem(row, mimeType);
+            }
+        });
+        FACTORIES.put(Email.CONTENT_ITEM_TYPE, new Factory() {
+            @Override
+            public DataItem create(DataRow row, String mimeType) {
+                return new EmailDataItem(row, mimeType);
+            }
+        });
+        FACTORIES.put(StructuredPostal.CONTENT_ITEM_TYPE, new Factory() {
+            @Override
+            public DataItem create(DataRow row, String mimeType) {
+                return new StructuredPostalDataItem(row, mimeType);
+            }
+        });
+        FACTORIES.put(Im.CONTENT_ITEM_TYPE, new Factory() {
+            @Override
+            public DataItem create(DataRow row, String mimeType) {
+                return new ImDataItem(row, mimeType);
+            }
+        });
+        FACTORIES.put(Organization.CONTENT_ITEM_TYPE, new Factory() {
+            @Override
+            public DataItem create(DataRow row, String mimeType) {
+                return new OrganizationDataItem(row, mimeType);
+            }
+        });
+        FACTORIES.put(Nickname.CONTENT_ITEM_TYPE, new Factory() {
+            @Override
+            public DataItem create(DataRow row, String mimeType) {
+                return new NicknameDataItem(row, mimeType);
+            }
+        });
+        FACTORIES.put(Note.CONTENT_ITEM_TYPE, new Factory() {
+            @Override
+            public DataItem create(DataRow row, String mimeType) {
+                return new NoteDataItem(row, mimeType);
+            }
+        });
+        FACTORIES.put(Website.CONTENT_ITEM_TYPE, new Factory() {
+            @Override
+            public DataItem create(DataRow row, String mimeType) {
+                return new WebsiteDataItem(row, mimeType);
+            }
+        });
+        FACTORIES.put(SipAddress.CONTENT_ITEM_TYPE, new Factory() {
+            @Override
+            public DataItem create(DataRow row, String mimeType) {
+                return new SipAddressDataItem(row, mimeType);
+            }
+        });
+        FACTORIES.put(Event.CONTENT_ITEM_TYPE, new Factory() {
+            @Override
+            public DataItem create(DataRow row, String mimeType) {
+                return new EventDataItem(row, mimeType);
+            }
+        });
+        FACTORIES.put(Relation.CONTENT_ITEM_TYPE, new Factory() {
+            @Override
+            public DataItem create(DataRow row, String mimeType) {
+                return new RelationDataItem(row, mimeType);
+            }
+        });
+        FACTORIES.put(Identity.CONTENT_ITEM_TYPE, new Factory() {
+            @Override
+            public DataItem create(DataRow row, String mimeType) {
+                return new IdentityDataItem(row, mimeType);
+            }
+        });
+        FACTORIES.put(Photo.CONTENT_ITEM_TYPE, new Factory() {
+            @Override
+            public DataItem create(DataRow row, String mimeType) {
+                return new PhotoDataItem(row, mimeType);
+            }
+        });
+    }
+
+    private final DataRow mRow;
+    /** The mimetype of the row, read once when the item is created. */
+    private final String mMimeType;
+
+    /**
+     * Creates an empty item of the given mimetype.
+     */
+    protected DataItem(String mimeType) {
+        this(createValues(mimeType));
+    }
 
     protected DataItem(ContentValues values) {
-        mContentValues = values;
+        this(new DataRow(values));
+    }
+
+    protected DataItem(DataRow row) {
+        this(row, row.getAsString(Data.MIMETYPE));
+    }
+
+    protected DataItem(DataRow row, String mimeType) {
+        mRow = row;
+        mMimeType = mimeType;
+    }
+
+    private static ContentValues createValues(String mimeType) {
+        final ContentValues values = new ContentValues();
+        values.put(Data.MIMETYPE, mimeType);
+        return values;
     }
 
     /**
@@ -53,94 +187,90 @@ public class DataItem {
      * content values.  Raw contact is the raw contact that this data item is associated with.
      */
     public static DataItem createFrom(ContentValues values) {
-        final String mimeType = values.getAsString(Data.MIMETYPE);
-        if (GroupMembership.CONTENT_ITEM_TYPE.equals(mimeType)) {
-            return new GroupMembershipDataItem(values);
-        } else if (StructuredName.CONTENT_ITEM_TYPE.equals(mimeType)) {
-            return new StructuredNameDataItem(values);
-        } else if (Phone.CONTENT_ITEM_TYPE.equals(mimeType)) {
-            return new PhoneDataItem(values);
-        } else if (Email.CONTENT_ITEM_TYPE.equals(mimeType)) {
-            return new EmailDataItem(values);
-        } else if (StructuredPostal.CONTENT_ITEM_TYPE.equals(mimeType)) {
-            return new StructuredPostalDataItem(values);
-        } else if (Im.CONTENT_ITEM_TYPE.equals(mimeType)) {
-            return new ImDataItem(values);
-        } else if (Organization.CONTENT_ITEM_TYPE.equals(mimeType)) {
-            return new OrganizationDataItem(values);
-        } else if (Nickname.CONTENT_ITEM_TYPE.equals(mimeType)) {
-            return new NicknameDataItem(values);
-        } else if (Note.CONTENT_ITEM_TYPE.equals(mimeType)) {
-            return new NoteDataItem(values);
-        } else if (Website.CONTENT_ITEM_TYPE.equals(mimeType)) {
-            return new WebsiteDataItem(values);
-        } else if (SipAddress.CONTENT_ITEM_TYPE.equals(mimeType)) {
-            return new SipAddressDataItem(values);
-        } else if (Event.CONTENT_ITEM_TYPE.equals(mimeType)) {
-            return new EventDataItem(values);
-        } else if (Relation.CONTENT_ITEM_TYPE.equals(mimeType)) {
-            return new RelationDataItem(values);
-        } else if (Identity.CONTENT_ITEM_TYPE.equals(mimeType)) {
-            return new IdentityDataItem(values);
-        } else if (Photo.CONTENT_ITEM_TYPE.equals(mimeType)) {
-            return new PhotoDataItem(values);
+        return createFrom(new DataRow(values));
+    }
+
+    /**
+     * Factory for creating subclasses of DataItem objects based on the mimetype of the row.
+     */
+    public static DataItem createFrom(DataRow row) {
+        final String mimeType = row.getAsString(Data.MIMETYPE);
+        final Factory factory = mimeType == null ? null : FACTORIES.get(mimeType);
+        if (factory != null) {
+            return factory.create(row, mimeType);
         }
 
         // generic
-        return new DataItem(values);
+        return new DataItem(row, mimeType);
     }
 
+    /**
+     * Returns the values of the data item. If the item belongs to a loaded contact, its row is
+     * copied into {@link ContentValues} on first use, so prefer the typed getters for reading.
+     */
     public ContentValues getContentValues() {
-        return mContentValues;
+        return mRow.getContentValues();
+    }
+
+    protected boolean containsKey(String key) {
+        return mRow.containsKey(key);
     }
 
-    public void setRawContactId(long rawContactId) {
-        mContentValues.put(Data.RAW_CONTACT_ID, rawContactId);
+    protected String getAsString(String key) {
+        return mRow.getAsString(key);
+    }
+
+    protected Long getAsLong(String key) {
+        return mRow.getAsLong(key);
+    }
+
+    protected Integer getAsInteger(String key) {
+        return mRow.getAsInteger(key);
+    }
+
+    protected byte[] getAsByteArray(String key) {
+        return mRow.getAsByteArray(key);
     }
 
     /**
      * Returns the data id.
      */
     public long getId() {
-        return mContentValues.getAsLong(Data._ID);
+        return getAsLong(Data._ID);
     }
 
     public long getRawContactId() {
-        return mContentValues.getAsLong(Data.RAW_CONTACT_ID);
+        return getAsLong(Data.RAW_CONTACT_ID);
     }
     /**
      * Returns the mimetype of the data.
      */
     public String getMimeType() {
-        return mContentValues.getAsString(Data.MIMETYPE);
-    }
-
-    public void setMimeType(String mimeType) {
-        mContentValues.put(Data.MIMETYPE, mimeType);
+        return mMimeType;
     }
 
     public boolean isPrimary() {
-        Integer primary = mContentValues.getAsInteger(Data.IS_PRIMARY);
+        Integer primary = getAsInteger(Data.IS_PRIMARY);
         return primary != null && primary != 0;
     }
 
     public boolean isSuperPrimary() {
-        Integer superPrimary = mContentValues.getAsInteger(Data.IS_SUPER_PRIMARY);
+        Integer superPrimary = getAsInteger(Data.IS_SUPER_PRIMARY);
         return superPrimary != null && superPrimary != 0;
     }
 
     public int getDataVersion() {
-        return mContentValues.getAsInteger(Data.DATA_VERSION);
+        return getAsInteger(Data.DATA_VERSION);
     }
 
     public boolean hasKindTypeColumn(DataKind kind) {
         final String key = kind.typeColumn;
-        return key != null && mContentValues.containsKey(key);
+        return key != null && mRow.containsKey(key);
     }
 
     public int getKindTypeColumn(DataKind kind) {
         final String key = kind.typeColumn;
-        return mContentValues.getAsInteger(key);
+        return getAsInteger(key);
     }
 
     /**
@@ -151,7 +281,7 @@ public class DataItem {
         if (kind.actionBody == null) {
             return null;
         }
-        CharSequence actionBody = kind.actionBody.inflateUsing(context, mContentValues);
+        CharSequence actionBody = kind.actionBody.inflateUsing(context, getContentValues());
         return actionBody == null ? null : actionBody.toString();
     }
 
@@ -16,40 +16,41 @@
 
 package com.android.contacts.model.dataitem;
 
-import android.content.ContentValues;
 import android.provider.ContactsContract;
 import android.provider.ContactsContract.CommonDataKinds.Email;
 
+import com.android.contacts.model.DataRow;
+
 /**
  * Represents an email data item, wrapping the columns in
  * {@link ContactsContract.CommonDataKinds.Email}.
  */
 public class EmailDataItem extends DataItem {
 
-    /* package */ EmailDataItem(ContentValues values) {
-        super(values);
+    /* package */ EmailDataItem(DataRow row, String mimeType) {
+        super(row, mimeType);
     }
 
     public String getAddress() {
-        return getContentValues().getAsString(Email.ADDRESS);
+        return getAsString(Email.ADDRESS);
     }
 
     public String getDisplayName() {
-        return getContentValues().getAsString(Email.DISPLAY_NAME);
+        return getAsString(Email.DISPLAY_NAME);
     }
 
     public String getData() {
-        return getContentValues().getAsString(Email.DATA);
+        return getAsString(Email.DATA);
     }
 
     /**
      * Values is one of Email.TYPE_*
      */
     public int getType() {
-        return getContentValues().getAsInteger(Email.TYPE);
+        return getAsInteger(Email.TYPE);
     }
 
     public String getLabel() {
-        return getContentValues().getAsString(Email.LABEL);
+        return getAsString(Email.LABEL);
     }
 }
@@ -16,32 +16,33 @@
 
 package com.android.contacts.model.dataitem;
 
-import android.content.ContentValues;
 import android.provider.ContactsContract;
 import android.provider.ContactsContract.CommonDataKinds.Event;
 
+import com.android.contacts.model.DataRow;
+
 /**
  * Represents an event data item, wrapping the columns in
  * {@link ContactsContract.CommonDataKinds.Event}.
  */
 public class EventDataItem extends DataItem {
 
-    /* package */ EventDataItem(ContentValues values) {
-        super(values);
+    /* package */ EventDataItem(DataRow row, String mimeType) {
+        super(row, mimeType);
     }
 
     public String getStartDate() {
-        return getContentValues().getAsString(Event.START_DATE);
+        return getAsString(Event.START_DATE);
     }
 
     /**
      * Values are one of Event.TYPE_*
      */
     public int getType() {
-        return getContentValues().getAsInteger(Event.TYPE);
+        return getAsInteger(Event.TYPE);
     }
 
     public String getLabel() {
-        return getContentValues().getAsString(Event.LABEL);
+        return getAsString(Event.LABEL);
     }
 }
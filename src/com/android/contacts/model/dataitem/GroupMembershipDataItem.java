@@ -16,25 +16,26 @@
 
 package com.android.contacts.model.dataitem;
 
-import android.content.ContentValues;
 import android.provider.ContactsContract;
 import android.provider.ContactsContract.CommonDataKinds.GroupMembership;
 
+import com.android.contacts.model.DataRow;
+
 /**
  * Represents a group memebership data item, wrapping the columns in
  * {@link ContactsContract.CommonDataKinds.GroupMembership}.
  */
 public class GroupMembershipDataItem extends DataItem {
 
-    /* package */ GroupMembershipDataItem(ContentValues values) {
-        super(values);
+    /* package */ GroupMembershipDataItem(DataRow row, String mimeType) {
+        super(row, mimeType);
     }
 
     public long getGroupRowId() {
-        return getContentValues().getAsLong(GroupMembership.GROUP_ROW_ID);
+        return getAsLong(GroupMembership.GROUP_ROW_ID);
     }
 
     public String getGroupSourceId() {
-        return getContentValues().getAsString(GroupMembership.GROUP_SOURCE_ID);
+        return getAsString(GroupMembership.GROUP_SOURCE_ID);
     }
 }
@@ -16,25 +16,26 @@
 
 package com.android.contacts.model.dataitem;
 
-import android.content.ContentValues;
 import android.provider.ContactsContract;
 import android.provider.ContactsContract.CommonDataKinds.Identity;
 
+import com.android.contacts.model.DataRow;
+
 /**
  * Represents an identity data item, wrapping the columns in
  * {@link ContactsContract.CommonDataKinds.Identity}.
  */
 public class IdentityDataItem extends DataItem {
 
-    /* package */ IdentityDataItem(ContentValues values) {
-        super(values);
+    /* package */ IdentityDataItem(DataRow row, String mimeType) {
+        super(row, mimeType);
     }
 
     public String getIdentity() {
-        return getContentValues().getAsString(Identity.IDENTITY);
+        return getAsString(Identity.IDENTITY);
     }
 
     public String getNamespace() {
-        return getContentValues().getAsString(Identity.NAMESPACE);
+        return getAsString(Identity.NAMESPACE);
     }
 }
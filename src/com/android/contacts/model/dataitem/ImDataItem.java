@@ -21,6 +21,8 @@ import android.provider.ContactsContract;
 import android.provider.ContactsContract.CommonDataKinds.Email;
 import android.provider.ContactsContract.CommonDataKinds.Im;
 
+import com.android.contacts.model.DataRow;
+
 /**
  * Represents an IM data item, wrapping the columns in
  * {@link ContactsContract.CommonDataKinds.Im}.
@@ -29,8 +31,8 @@ public class ImDataItem extends DataItem {
 
     private final boolean mCreatedFromEmail;
 
-    /* package */ ImDataItem(ContentValues values) {
-        super(values);
+    /* package */ ImDataItem(DataRow row, String mimeType) {
+        super(row, mimeType);
         mCreatedFromEmail = false;
     }
 
@@ -40,16 +42,16 @@ public class ImDataItem extends DataItem {
     }
 
     public static ImDataItem createFromEmail(EmailDataItem item) {
-        ImDataItem im = new ImDataItem(new ContentValues(item.getContentValues()), true);
-        im.setMimeType(Im.CONTENT_ITEM_TYPE);
-        return im;
+        final ContentValues values = new ContentValues(item.getContentValues());
+        values.put(ContactsContract.Data.MIMETYPE, Im.CONTENT_ITEM_TYPE);
+        return new ImDataItem(values, true);
     }
 
     public String getData() {
         if (mCreatedFromEmail) {
-            return getContentValues().getAsString(Email.DATA);
+            return getAsString(Email.DATA);
         } else {
-            return getContentValues().getAsString(Im.DATA);
+            return getAsString(Im.DATA);
         }
     }
 
@@ -57,18 +59,18 @@ public class ImDataItem extends DataItem {
      * Values are one of Im.TYPE_*
      */
     public int getType() {
-        return getContentValues().getAsInteger(Im.TYPE);
+        return getAsInteger(Im.TYPE);
     }
 
     public String getLabel() {
-        return getContentValues().getAsString(Im.LABEL);
+        return getAsString(Im.LABEL);
     }
 
     /**
      * Values are one of Im.PROTOCOL_
      */
     public Integer getProtocol() {
-        return getContentValues().getAsInteger(Im.PROTOCOL);
+        return getAsInteger(Im.PROTOCOL);
     }
 
     public boolean isProtocolValid() {
@@ -76,11 +78,11 @@ public class ImDataItem extends DataItem {
     }
 
     public String getCustomProtocol() {
-        return getContentValues().getAsString(Im.CUSTOM_PROTOCOL);
+        return getAsString(Im.CUSTOM_PROTOCOL);
     }
 
     public int getChatCapability() {
-        Integer result = getContentValues().getAsInteger(Im.CHAT_CAPABILITY);
+        Integer result = getAsInteger(Im.CHAT_CAPABILITY);
         return result == null ? 0 : result;
     }
 
@@ -20,6 +20,8 @@ import android.content.ContentValues;
 import android.provider.ContactsContract;
 import android.provider.ContactsContract.CommonDataKinds.Nickname;
 
+import com.android.contacts.model.DataRow;
+
 /**
  * Represents a nickname data item, wrapping the columns in
  * {@link ContactsContract.CommonDataKinds.Nickname}.
@@ -30,18 +32,22 @@ public class NicknameDataItem extends DataItem {
         super(values);
     }
 
+    /* package */ NicknameDataItem(DataRow row, String mimeType) {
+        super(row, mimeType);
+    }
+
     public String getName() {
-        return getContentValues().getAsString(Nickname.NAME);
+        return getAsString(Nickname.NAME);
     }
 
     /**
      * Types are defined as Nickname.TYPE_*
      */
     public int getType() {
-        return getContentValues().getAsInteger(Nickname.TYPE);
+        return getAsInteger(Nickname.TYPE);
     }
 
     public String getLabel() {
-        return getContentValues().getAsString(Nickname.LABEL);
+        return getAsString(Nickname.LABEL);
     }
 }
@@ -16,21 +16,22 @@
 
 package com.android.contacts.model.dataitem;
 
-import android.content.ContentValues;
 import android.provider.ContactsContract;
 import android.provider.ContactsContract.CommonDataKinds.Note;
 
+import com.android.contacts.model.DataRow;
+
 /**
  * Represents a note data item, wrapping the columns in
  * {@link ContactsContract.CommonDataKinds.Note}.
  */
 public class NoteDataItem extends DataItem {
 
-    /* package */ NoteDataItem(ContentValues values) {
-        super(values);
+    /* package */ NoteDataItem(DataRow row, String mimeType) {
+        super(row, mimeType);
     }
 
     public String getNote() {
-        return getContentValues().getAsString(Note.NOTE);
+        return getAsString(Note.NOTE);
     }
 }
@@ -16,60 +16,61 @@
 
 package com.android.contacts.model.dataitem;
 
-import android.content.ContentValues;
 import android.provider.ContactsContract;
 import android.provider.ContactsContract.CommonDataKinds.Organization;
 
+import com.android.contacts.model.DataRow;
+
 /**
  * Represents an organization data item, wrapping the columns in
  * {@link ContactsContract.CommonDataKinds.Organization}.
  */
 public class OrganizationDataItem extends DataItem {
 
-    /* package */ OrganizationDataItem(ContentValues values) {
-        super(values);
+    /* package */ OrganizationDataItem(DataRow row, String mimeType) {
+        super(row, mimeType);
     }
 
     public String getCompany() {
-        return getContentValues().getAsString(Organization.COMPANY);
+        return getAsString(Organization.COMPANY);
     }
 
     /**
      * Values are one of Organization.TYPE_*
      */
     public int getType() {
-        return getContentValues().getAsInteger(Organization.TYPE);
+        return getAsInteger(Organization.TYPE);
     }
 
     public String getLabel() {
-        return getContentValues().getAsString(Organization.LABEL);
+        return getAsString(Organization.LABEL);
     }
 
     public String getTitle() {
-        return getContentValues().getAsString(Organization.TITLE);
+        return getAsString(Organization.TITLE);
     }
 
     public String getDepartment() {
-        return getContentValues().getAsString(Organization.DEPARTMENT);
+        return getAsString(Organization.DEPARTMENT);
     }
 
     public String getJobDescription() {
-        return getContentValues().getAsString(Organization.JOB_DESCRIPTION);
+        return getAsString(Organization.JOB_DESCRIPTION);
     }
 
     public String getSymbol() {
-        return getContentValues().getAsString(Organization.SYMBOL);
+        return getAsString(Organization.SYMBOL);
     }
 
     public String getPhoneticName() {
-        return getContentValues().getAsString(Organization.PHONETIC_NAME);
+        return getAsString(Organization.PHONETIC_NAME);
     }
 
     public String getOfficeLocation() {
-        return getContentValues().getAsString(Organization.OFFICE_LOCATION);
+        return getAsString(Organization.OFFICE_LOCATION);
     }
 
     public String getPhoneticNameStyle() {
-        return getContentValues().getAsString(Organization.PHONETIC_NAME_STYLE);
+        return getAsString(Organization.PHONETIC_NAME_STYLE);
     }
 }
@@ -16,13 +16,13 @@
 
 package com.android.contacts.model.dataitem;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.provider.ContactsContract;
 import android.provider.ContactsContract.CommonDataKinds.Phone;
-import android.telephony.PhoneNumberUtils;
 
 import com.android.contacts.common.model.dataitem.DataKind;
+import com.android.contacts.model.DataRow;
+import com.android.contacts.util.PhoneNumberFormatCache;
 
 /**
  * Represents a phone data item, wrapping the columns in
@@ -32,41 +32,54 @@ public class PhoneDataItem extends DataItem {
 
     public static final String KEY_FORMATTED_PHONE_NUMBER = "formattedPhoneNumber";
 
-    /* package */ PhoneDataItem(ContentValues values) {
-        super(values);
+    /* package */ PhoneDataItem(DataRow row, String mimeType) {
+        super(row, mimeType);
     }
 
     public String getNumber() {
-        return getContentValues().getAsString(Phone.NUMBER);
+        return getAsString(Phone.NUMBER);
     }
 
     /**
      * Returns the normalized phone number in E164 format.
      */
     public String getNormalizedNumber() {
-        return getContentValues().getAsString(Phone.NORMALIZED_NUMBER);
+        return getAsString(Phone.NORMALIZED_NUMBER);
     }
 
     public String getFormattedPhoneNumber() {
-        return getContentValues().getAsString(KEY_FORMATTED_PHONE_NUMBER);
+        return getAsString(KEY_FORMATTED_PHONE_NUMBER);
+    }
+
+    /**
+     * Returns whether {@link #computeFormattedPhoneNumber} has been called for this item, or
+     * there is no number to format.
+     */
+    public boolean hasFormattedPhoneNumber() {
+        return getNumber() == null || containsKey(KEY_FORMATTED_PHONE_NUMBER);
     }
 
     /**
      * Values are Phone.TYPE_*
      */
     public int getType() {
-        return getContentValues().getAsInteger(Phone.TYPE);
+        return getAsInteger(Phone.TYPE);
     }
 
     public String getLabel() {
-        return getContentValues().getAsString(Phone.LABEL);
+        return getAsString(Phone.LABEL);
     }
 
+    /**
+     * Formats the number and keeps it with the row. This is the only change allowed to an item
+     * of a {@link com.android.contacts.model.RawContact}, and only while the contact is being
+     * loaded, before its items are shared with other threads.
+     */
     public void computeFormattedPhoneNumber(String defaultCountryIso) {
         final String phoneNumber = getNumber();
         if (phoneNumber != null) {
-            final String formattedPhoneNumber = PhoneNumberUtils.formatNumber(phoneNumber,
-                    getNormalizedNumber(), defaultCountryIso);
+            final String formattedPhoneNumber = PhoneNumberFormatCache.getInstance().format(
+                    phoneNumber, getNormalizedNumber(), defaultCountryIso);
             getContentValues().put(KEY_FORMATTED_PHONE_NUMBER, formattedPhoneNumber);
         }
     }
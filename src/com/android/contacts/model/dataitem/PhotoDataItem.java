@@ -16,25 +16,26 @@
 
 package com.android.contacts.model.dataitem;
 
-import android.content.ContentValues;
 import android.provider.ContactsContract;
 import android.provider.ContactsContract.Contacts.Photo;
 
+import com.android.contacts.model.DataRow;
+
 /**
  * Represents a photo data item, wrapping the columns in
  * {@link ContactsContract.Contacts.Photo}.
  */
 public class PhotoDataItem extends DataItem {
 
-    /* package */ PhotoDataItem(ContentValues values) {
-        super(values);
+    /* package */ PhotoDataItem(DataRow row, String mimeType) {
+        super(row, mimeType);
     }
 
     public long getPhotoFileId() {
-        return getContentValues().getAsLong(Photo.PHOTO_FILE_ID);
+        return getAsLong(Photo.PHOTO_FILE_ID);
     }
 
     public byte[] getPhoto() {
-        return getContentValues().getAsByteArray(Photo.PHOTO);
+        return getAsByteArray(Photo.PHOTO);
     }
 }
@@ -16,32 +16,33 @@
 
 package com.android.contacts.model.dataitem;
 
-import android.content.ContentValues;
 import android.provider.ContactsContract;
 import android.provider.ContactsContract.CommonDataKinds.Relation;
 
+import com.android.contacts.model.DataRow;
+
 /**
  * Represents a relation data item, wrapping the columns in
  * {@link ContactsContract.CommonDataKinds.Relation}.
  */
 public class RelationDataItem extends DataItem {
 
-    /* package */ RelationDataItem(ContentValues values) {
-        super(values);
+    /* package */ RelationDataItem(DataRow row, String mimeType) {
+        super(row, mimeType);
     }
 
     public String getName() {
-        return getContentValues().getAsString(Relation.NAME);
+        return getAsString(Relation.NAME);
     }
 
     /**
      * Values are one of Relation.TYPE_*
      */
     public int getType() {
-        return getContentValues().getAsInteger(Relation.TYPE);
+        return getAsInteger(Relation.TYPE);
     }
 
     public String getLabel() {
-        return getContentValues().getAsString(Relation.LABEL);
+        return getAsString(Relation.LABEL);
     }
 }
@@ -16,32 +16,33 @@
 
 package com.android.contacts.model.dataitem;
 
-import android.content.ContentValues;
 import android.provider.ContactsContract;
 import android.provider.ContactsContract.CommonDataKinds.SipAddress;
 
+import com.android.contacts.model.DataRow;
+
 /**
  * Represents a sip address data item, wrapping the columns in
  * {@link ContactsContract.CommonDataKinds.SipAddress}.
  */
 public class SipAddressDataItem extends DataItem {
 
-    /* package */ SipAddressDataItem(ContentValues values) {
-        super(values);
+    /* package */ SipAddressDataItem(DataRow row, String mimeType) {
+        super(row, mimeType);
     }
 
     public String getSipAddress() {
-        return getContentValues().getAsString(SipAddress.SIP_ADDRESS);
+        return getAsString(SipAddress.SIP_ADDRESS);
     }
 
     /**
      * Value is one of SipAddress.TYPE_*
      */
     public int getType() {
-        return getContentValues().getAsInteger(SipAddress.TYPE);
+        return getAsInteger(SipAddress.TYPE);
     }
 
     public String getLabel() {
-        return getContentValues().getAsString(SipAddress.LABEL);
+        return getAsString(SipAddress.LABEL);
     }
 }
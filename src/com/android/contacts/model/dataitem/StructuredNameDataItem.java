@@ -16,10 +16,10 @@
 
 package com.android.contacts.model.dataitem;
 
-import android.content.ContentValues;
 import android.provider.ContactsContract;
 import android.provider.ContactsContract.CommonDataKinds.StructuredName;
-import android.provider.ContactsContract.Contacts.Data;
+
+import com.android.contacts.model.DataRow;
 
 /**
  * Represents a structured name data item, wrapping the columns in
@@ -28,16 +28,15 @@ import android.provider.ContactsContract.Contacts.Data;
 public class StructuredNameDataItem extends DataItem {
 
     public StructuredNameDataItem() {
-        super(new ContentValues());
-        getContentValues().put(Data.MIMETYPE, StructuredName.CONTENT_ITEM_TYPE);
+        super(StructuredName.CONTENT_ITEM_TYPE);
     }
 
-    /* package */ StructuredNameDataItem(ContentValues values) {
-        super(values);
+    /* package */ StructuredNameDataItem(DataRow row, String mimeType) {
+        super(row, mimeType);
     }
 
     public String getDisplayName() {
-        return getContentValues().getAsString(StructuredName.DISPLAY_NAME);
+        return getAsString(StructuredName.DISPLAY_NAME);
     }
 
     public void setDisplayName(String name) {
@@ -45,43 +44,43 @@ public class StructuredNameDataItem extends DataItem {
     }
 
     public String getGivenName() {
-        return getContentValues().getAsString(StructuredName.GIVEN_NAME);
+        return getAsString(StructuredName.GIVEN_NAME);
     }
 
     public String getFamilyName() {
-        return getContentValues().getAsString(StructuredName.FAMILY_NAME);
+        return getAsString(StructuredName.FAMILY_NAME);
     }
 
     public String getPrefix() {
-        return getContentValues().getAsString(StructuredName.PREFIX);
+        return getAsString(StructuredName.PREFIX);
     }
 
     public String getMiddleName() {
-        return getContentValues().getAsString(StructuredName.MIDDLE_NAME);
+        return getAsString(StructuredName.MIDDLE_NAME);
     }
 
     public String getSuffix() {
-        return getContentValues().getAsString(StructuredName.SUFFIX);
+        return getAsString(StructuredName.SUFFIX);
     }
 
     public String getPhoneticGivenName() {
-        return getContentValues().getAsString(StructuredName.PHONETIC_GIVEN_NAME);
+        return getAsString(StructuredName.PHONETIC_GIVEN_NAME);
     }
 
     public String getPhoneticMiddleName() {
-        return getContentValues().getAsString(StructuredName.PHONETIC_MIDDLE_NAME);
+        return getAsString(StructuredName.PHONETIC_MIDDLE_NAME);
     }
 
     public String getPhoneticFamilyName() {
-        return getContentValues().getAsString(StructuredName.PHONETIC_FAMILY_NAME);
+        return getAsString(StructuredName.PHONETIC_FAMILY_NAME);
     }
 
     public String getFullNameStyle() {
-        return getContentValues().getAsString(StructuredName.FULL_NAME_STYLE);
+        return getAsString(StructuredName.FULL_NAME_STYLE);
     }
 
     public String getPhoneticNameStyle() {
-        return getContentValues().getAsString(StructuredName.PHONETIC_NAME_STYLE);
+        return getAsString(StructuredName.PHONETIC_NAME_STYLE);
     }
 
     public void setPhoneticFamilyName(String name) {
@@ -16,60 +16,61 @@
 
 package com.android.contacts.model.dataitem;
 
-import android.content.ContentValues;
 import android.provider.ContactsContract;
 import android.provider.ContactsContract.CommonDataKinds.StructuredPostal;
 
+import com.android.contacts.model.DataRow;
+
 /**
  * Represents a structured postal data item, wrapping the columns in
  * {@link ContactsContract.CommonDataKinds.StructuredPostal}.
  */
 public class StructuredPostalDataItem extends DataItem {
 
-    /* package */ StructuredPostalDataItem(ContentValues values) {
-        super(values);
+    /* package */ StructuredPostalDataItem(DataRow row, String mimeType) {
+        super(row, mimeType);
     }
 
     public String getFormattedAddress() {
-        return getContentValues().getAsString(StructuredPostal.FORMATTED_ADDRESS);
+        return getAsString(StructuredPostal.FORMATTED_ADDRESS);
     }
 
     /**
      * Values are one of StructuredPostal.TYPE_*
      */
     public int getType() {
-        return getContentValues().getAsInteger(StructuredPostal.TYPE);
+        return getAsInteger(StructuredPostal.TYPE);
     }
 
     public String getLabel() {
-        return getContentValues().getAsString(StructuredPostal.LABEL);
+        return getAsString(StructuredPostal.LABEL);
     }
 
     public String getStreet() {
-        return getContentValues().getAsString(StructuredPostal.STREET);
+        return getAsString(StructuredPostal.STREET);
     }
 
     public String getPOBox() {
-        return getContentValues().getAsString(StructuredPostal.POBOX);
+        return getAsString(StructuredPostal.POBOX);
     }
 
     public String getNeighborhood() {
-        return getContentValues().getAsString(StructuredPostal.NEIGHBORHOOD);
+        return getAsString(StructuredPostal.NEIGHBORHOOD);
     }
 
     public String getCity() {
-        return getContentValues().getAsString(StructuredPostal.CITY);
+        return getAsString(StructuredPostal.CITY);
     }
 
     public String getRegion() {
-        return getContentValues().getAsString(StructuredPostal.REGION);
+        return getAsString(StructuredPostal.REGION);
     }
 
     public String getPostcode() {
-        return getContentValues().getAsString(StructuredPostal.POSTCODE);
+        return getAsString(StructuredPostal.POSTCODE);
     }
 
     public String getCountry() {
-        return getContentValues().getAsString(StructuredPostal.COUNTRY);
+        return getAsString(StructuredPostal.COUNTRY);
     }
 }
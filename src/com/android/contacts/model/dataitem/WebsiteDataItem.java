@@ -16,32 +16,33 @@
 
 package com.android.contacts.model.dataitem;
 
-import android.content.ContentValues;
 import android.provider.ContactsContract;
 import android.provider.ContactsContract.CommonDataKinds.Website;
 
+import com.android.contacts.model.DataRow;
+
 /**
  * Represents a website data item, wrapping the columns in
  * {@link ContactsContract.CommonDataKinds.Website}.
  */
 public class WebsiteDataItem extends DataItem {
 
-    /* package */ WebsiteDataItem(ContentValues values) {
-        super(values);
+    /* package */ WebsiteDataItem(DataRow row, String mimeType) {
+        super(row, mimeType);
     }
 
     public String getUrl() {
-        return getContentValues().getAsString(Website.URL);
+        return getAsString(Website.URL);
     }
 
     /**
      * Value is one of Website.TYPE_*
      */
     public int getType() {
-        return getContentValues().getAsInteger(Website.TYPE);
+        return getAsInteger(Website.TYPE);
     }
 
     public String getLabel() {
-        return getContentValues().getAsString(Website.LABEL);
+        return getAsString(Website.LABEL);
     }
 }
@@ -70,6 +70,7 @@ import com.android.contacts.model.dataitem.EmailDataItem;
 import com.android.contacts.model.dataitem.ImDataItem;
 import com.android.contacts.common.util.Constants;
 import com.android.contacts.util.DataStatus;
+import com.android.contacts.util.ContactPhotoUtils;
 import com.android.contacts.util.ImageViewDrawableSetter;
 import com.android.contacts.util.SchedulingUtils;
 import com.android.contacts.common.util.StopWatch;
@@ -556,10 +557,13 @@ public class QuickContactActivity extends Activity {
             if (mLookupUri == null) {
                 Log.wtf(TAG, "Lookup uri wasn't initialized. Loader was started too early");
             }
-            return new ContactLoader(getApplicationContext(), mLookupUri,
+            final ContactLoader loader = new ContactLoader(getApplicationContext(), mLookupUri,
                     false /*loadGroupMetaData*/, false /*loadStreamItems*/,
                     false /*loadInvitableAccountTypes*/, false /*postViewNotification*/,
                     true /*computeFormattedPhoneNumber*/);
+            loader.setPhotoTargetSize(
+                    ContactPhotoUtils.getDisplayPhotoTargetSize(QuickContactActivity.this));
+            return loader;
         }
     };
 
@@ -139,10 +139,14 @@ public class SocialWidgetProvider extends AppWidgetProvider {
                     context.getString(R.string.invalidContactMessage), null, null, null);
             setPhoto(views, ContactBadgeUtil.loadDefaultAvatarPhoto(context, false, false));
         } else {
+            Bitmap bitmap = contactData.getPhotoBitmap();
             byte[] photo = contactData.getPhotoBinaryData();
-            setPhoto(views, photo != null
-                    ? BitmapFactory.decodeByteArray(photo, 0, photo.length)
-                            : ContactBadgeUtil.loadDefaultAvatarPhoto(context, false, false));
+            if (bitmap == null && photo != null) {
+                bitmap = BitmapFactory.decodeByteArray(photo, 0, photo.length);
+            }
+            setPhoto(views, bitmap != null
+                    ? bitmap
+                    : ContactBadgeUtil.loadDefaultAvatarPhoto(context, false, false));
 
             // TODO: Rotate between all the stream items?
 
@@ -18,7 +18,9 @@
 package com.android.contacts.util;
 
 import android.content.ClipData;
+import android.content.ContentResolver;
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
 import android.content.Intent;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
@@ -26,16 +28,19 @@ import android.net.Uri;
 import android.os.Environment;
 import android.provider.MediaStore;
 import android.support.v4.content.FileProvider;
+import android.util.DisplayMetrics;
 import android.util.Log;
 
 import com.google.common.io.Closeables;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
@@ -117,6 +122,15 @@ public class ContactPhotoUtils {
         }
     }
 
+    /**
+     * Returns the size, in pixels, to decode contact photos to when loading a contact for
+     * display. No view shows a contact photo larger than the shorter side of the screen.
+     */
+    public static int getDisplayPhotoTargetSize(Context context) {
+        final DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        return Math.min(metrics.widthPixels, metrics.heightPixels);
+    }
+
     public static void addCropExtras(Intent intent, int photoSize) {
         intent.putExtra("crop", "true");
         intent.putExtra("scale", true);
@@ -141,25 +155,40 @@ public class ContactPhotoUtils {
     }
 
     /**
-     * Given an input photo stored in a uri, save it to a destination uri
+     * Given an input photo stored in a uri, save it to a destination uri. If the input is a
+     * regular file of known length, the bytes are transferred between the file descriptors by the
+     * kernel, without copying them through the heap. Other inputs, like pipes, are copied through
+     * a small buffer. An empty input is a failure.
      */
     public static boolean savePhotoFromUriToUri(Context context, Uri inputUri, Uri outputUri,
             boolean deleteAfterSave) {
+        final ContentResolver resolver = context.getContentResolver();
         FileOutputStream outputStream = null;
-        InputStream inputStream = null;
+        FileInputStream inputStream = null;
         try {
-            outputStream = context.getContentResolver()
-                    .openAssetFileDescriptor(outputUri, "rw").createOutputStream();
-            inputStream = context.getContentResolver().openInputStream(
-                    inputUri);
-
-            final byte[] buffer = new byte[16 * 1024];
-            int length;
-            int totalLength = 0;
-            while ((length = inputStream.read(buffer)) > 0) {
-                outputStream.write(buffer, 0, length);
-                totalLength += length;
+            outputStream = resolver.openAssetFileDescriptor(outputUri, "rw")
+                    .createOutputStream();
+            final AssetFileDescriptor inputFd = resolver.openAssetFileDescriptor(inputUri, "r");
+            inputStream = inputFd.createInputStream();
+
+            final FileChannel inputChannel = inputStream.getChannel();
+            final long start = inputFd.getStartOffset();
+            final long size = inputChannel.size();
+            // Files shared through a FileProvider come with an unknown length, which is then
+            // the rest of the file. The size of anything but a regular file, like a pipe, is 0.
+            final long length = inputFd.getLength() != AssetFileDescriptor.UNKNOWN_LENGTH
+                    ? inputFd.getLength() : size - start;
+            final long totalLength;
+            if (size > 0 && length > 0 && start + length <= size) {
+                totalLength = transfer(inputChannel, start, length, outputStream.getChannel());
+            } else {
+                totalLength = copy(inputStream, outputStream);
+            }
+            if (totalLength == 0) {
+                throw new IOException("Photo is empty");
             }
+            // Only report success once the photo is on disk
+            outputStream.getFD().sync();
             Log.v(TAG, "Wrote " + totalLength + " bytes for photo " + inputUri.toString());
         } catch (IOException e) {
             Log.e(TAG, "Failed to write photo: " + inputUri.toString() + " because: " + e);
@@ -168,11 +197,36 @@ public class ContactPhotoUtils {
             Closeables.closeQuietly(inputStream);
             Closeables.closeQuietly(outputStream);
             if (deleteAfterSave) {
-                context.getContentResolver().delete(inputUri, null, null);
+                resolver.delete(inputUri, null, null);
             }
         }
         return true;
     }
+
+    private static long transfer(FileChannel input, long start, long length, FileChannel output)
+            throws IOException {
+        long totalLength = 0;
+        while (totalLength < length) {
+            final long count = input.transferTo(start + totalLength, length - totalLength, output);
+            if (count <= 0) {
+                throw new IOException("Photo ended after " + totalLength + " of " + length
+                        + " bytes");
+            }
+            totalLength += count;
+        }
+        return totalLength;
+    }
+
+    private static long copy(InputStream input, FileOutputStream output) throws IOException {
+        final byte[] buffer = new byte[16 * 1024];
+        long totalLength = 0;
+        int length;
+        while ((length = input.read(buffer)) > 0) {
+            output.write(buffer, 0, length);
+            totalLength += length;
+        }
+        return totalLength;
+    }
 }
 
 
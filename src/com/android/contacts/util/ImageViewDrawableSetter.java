@@ -38,6 +38,7 @@ import java.util.Arrays;
 public class ImageViewDrawableSetter {
     private ImageView mTarget;
     private byte[] mCompressed;
+    private Bitmap mDecoded;
     private Drawable mPreviousDrawable;
     private int mDurationInMillis = 0;
     private static final String TAG = "ImageViewDrawableSetter";
@@ -51,7 +52,7 @@ public class ImageViewDrawableSetter {
 
     public void setupContactPhoto(Contact contactData, ImageView photoView) {
         setTarget(photoView);
-        setCompressedImage(contactData.getPhotoBinaryData());
+        setCompressedImage(contactData.getPhotoBinaryData(), contactData.getPhotoBitmap());
     }
 
     public void setTransitionDuration(int durationInMillis) {
@@ -71,6 +72,7 @@ public class ImageViewDrawableSetter {
         if (mTarget != target) {
             mTarget = target;
             mCompressed = null;
+            mDecoded = null;
             mPreviousDrawable = null;
         }
     }
@@ -80,10 +82,19 @@ public class ImageViewDrawableSetter {
     }
 
     protected Bitmap setCompressedImage(byte[] compressed) {
+        return setCompressedImage(compressed, null);
+    }
+
+    /**
+     * Like {@link #setCompressedImage(byte[])}, but uses the given bitmap instead of decoding
+     * the compressed image if it is not null. The compressed image may then be null.
+     */
+    protected Bitmap setCompressedImage(byte[] compressed, Bitmap decoded) {
         if (mPreviousDrawable == null) {
             // If we don't already have a drawable, skip the exit-early test
             // below; otherwise we might not end up setting the default image.
-        } else if (mPreviousDrawable != null && Arrays.equals(mCompressed, compressed)) {
+        } else if (mPreviousDrawable != null && mDecoded == decoded
+                && Arrays.equals(mCompressed, compressed)) {
             // TODO: the worst case is when the arrays are equal but not
             // identical. This takes about 1ms (more with high-res photos). A
             // possible optimization is to sparsely sample chunks of the arrays
@@ -91,12 +102,13 @@ public class ImageViewDrawableSetter {
             return previousBitmap();
         }
 
-        final Drawable newDrawable = (compressed == null)
+        final Drawable newDrawable = (compressed == null && decoded == null)
                 ? defaultDrawable()
-                : decodedBitmapDrawable(compressed);
+                : decodedBitmapDrawable(compressed, decoded);
 
         // Remember this for next time, so that we can check if it changed.
         mCompressed = compressed;
+        mDecoded = decoded;
 
         // If we don't have a new Drawable, something went wrong... bail out.
         if (newDrawable == null) return previousBitmap();
@@ -141,9 +153,11 @@ public class ImageViewDrawableSetter {
         }
     }
 
-    private BitmapDrawable decodedBitmapDrawable(byte[] compressed) {
+    private BitmapDrawable decodedBitmapDrawable(byte[] compressed, Bitmap decoded) {
         Resources rsrc = mTarget.getResources();
-        Bitmap bitmap = BitmapFactory.decodeByteArray(compressed, 0, compressed.length);
+        Bitmap bitmap = decoded != null
+                ? decoded
+                : BitmapFactory.decodeByteArray(compressed, 0, compressed.length);
         return new BitmapDrawable(rsrc, bitmap);
     }
 
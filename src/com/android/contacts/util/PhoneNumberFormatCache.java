@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.util;
+
+import android.telephony.PhoneNumberUtils;
+import android.util.LruCache;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * A process-wide, bounded cache of formatted phone numbers.
+ *
+ * Formatting a number with {@link PhoneNumberUtils#formatNumber(String, String, String)} is
+ * expensive and the same numbers get formatted again on every reload of a contact. The
+ * formatting depends on the country, so the country is part of the key.
+ */
+public final class PhoneNumberFormatCache {
+    private static final int MAX_SIZE = 256;
+
+    /** Stored for numbers that cannot be formatted, as {@link LruCache} doesn't take null. */
+    private static final String UNFORMATTABLE = "";
+
+    private static PhoneNumberFormatCache sInstance;
+
+    private final LruCache<String, String> mCache;
+
+    @VisibleForTesting
+    /* package */ PhoneNumberFormatCache(int maxSize) {
+        mCache = new LruCache<String, String>(maxSize);
+    }
+
+    public static synchronized PhoneNumberFormatCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new PhoneNumberFormatCache(MAX_SIZE);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Formats the number like {@link PhoneNumberUtils#formatNumber(String, String, String)}
+     * does, reusing the result of an earlier call with the same arguments.
+     *
+     * @return the formatted number, or null if the number could not be formatted
+     */
+    public String format(String number, String normalizedNumber, String countryIso) {
+        if (number == null) return null;
+
+        final String key = countryIso + '\0' + number + '\0' + normalizedNumber;
+        final String cached = mCache.get(key);
+        if (cached != null) {
+            return cached == UNFORMATTABLE ? null : cached;
+        }
+        final String formatted = PhoneNumberUtils.formatNumber(
+                number, normalizedNumber, countryIso);
+        mCache.put(key, formatted == null ? UNFORMATTABLE : formatted);
+        return formatted;
+    }
+
+    public int size() {
+        return mCache.size();
+    }
+
+    public int hitCount() {
+        return mCache.hitCount();
+    }
+
+    public int missCount() {
+        return mCache.missCount();
+    }
+}
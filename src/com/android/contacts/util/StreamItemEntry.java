@@ -152,11 +152,15 @@ public class StreamItemEntry implements Comparable<StreamItemEntry> {
 
     /**
      * Make {@link #getDecodedText} and {@link #getDecodedComments} available.  Must be called
-     * before calling those.
+     * before calling those.  Decoding is done once, so it is cheap to call this every time the
+     * item is bound to a view.
      *
      * We can't do this automatically in the getters, because it'll require a {@link Context}.
      */
     public void decodeHtml(Context context) {
+        if (mDecoded) {
+            return;
+        }
         final Html.ImageGetter imageGetter = ContactDetailDisplayUtils.getImageGetter(context);
         if (mText != null) {
             mDecodedText = HtmlUtils.fromHtml(context, mText, imageGetter, null);
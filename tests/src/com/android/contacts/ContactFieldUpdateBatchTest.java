@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Intent;
+import android.net.Uri;
+import android.provider.ContactsContract.Contacts;
+import android.provider.ContactsContract.Data;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import java.util.ArrayList;
+
+/**
+ * Unit test for {@link ContactFieldUpdateBatch}.
+ */
+@SmallTest
+public class ContactFieldUpdateBatchTest extends AndroidTestCase {
+    private static final Uri CONTACT_URI = ContentUris.withAppendedId(Contacts.CONTENT_URI, 1);
+    private static final Uri OTHER_CONTACT_URI =
+            ContentUris.withAppendedId(Contacts.CONTENT_URI, 2);
+
+    private static ContentValues getValues(ContentProviderOperation operation) {
+        return operation.resolveValueBackReferences(new ContentProviderResult[0], 0);
+    }
+
+    public void testTogglesCollapse() {
+        final ContactFieldUpdateBatch batch = new ContactFieldUpdateBatch();
+        batch.add(ContactSaveService.createSetStarredIntent(getContext(), CONTACT_URI, true));
+        batch.add(ContactSaveService.createSetStarredIntent(getContext(), CONTACT_URI, false));
+        batch.add(ContactSaveService.createSetRingtone(getContext(), CONTACT_URI, "ring"));
+        batch.add(ContactSaveService.createSetStarredIntent(getContext(), OTHER_CONTACT_URI,
+                true));
+
+        final ArrayList<ContentProviderOperation> operations = batch.buildOperations();
+        assertEquals(2, operations.size());
+        assertEquals(CONTACT_URI, operations.get(0).getUri());
+        final ContentValues values = getValues(operations.get(0));
+        assertEquals(2, values.size());
+        assertFalse(values.getAsBoolean(Contacts.STARRED));
+        assertEquals("ring", values.getAsString(Contacts.CUSTOM_RINGTONE));
+        assertEquals(OTHER_CONTACT_URI, operations.get(1).getUri());
+        assertTrue(batch.affectsCallerInfo());
+    }
+
+    public void testLastDefaultWins() {
+        final ContactFieldUpdateBatch batch = new ContactFieldUpdateBatch();
+        batch.add(ContactSaveService.createSetSuperPrimaryIntent(getContext(), 10));
+        batch.add(ContactSaveService.createSetSuperPrimaryIntent(getContext(), 11));
+        batch.add(ContactSaveService.createClearPrimaryIntent(getContext(), 10));
+        batch.add(ContactSaveService.createSetSuperPrimaryIntent(getContext(), 10));
+
+        final ArrayList<ContentProviderOperation> operations = batch.buildOperations();
+        assertEquals(2, operations.size());
+        assertEquals(ContentUris.withAppendedId(Data.CONTENT_URI, 11),
+                operations.get(0).getUri());
+        assertEquals(ContentUris.withAppendedId(Data.CONTENT_URI, 10),
+                operations.get(1).getUri());
+        assertEquals(1, getValues(operations.get(1)).getAsInteger(Data.IS_SUPER_PRIMARY)
+                .intValue());
+        assertFalse(batch.affectsCallerInfo());
+    }
+
+    public void testCallbacksKept() {
+        final ContactFieldUpdateBatch batch = new ContactFieldUpdateBatch();
+        for (int i = 0; i < 3; i++) {
+            final Intent intent = ContactSaveService.createSetStarredIntent(
+                    getContext(), CONTACT_URI, i % 2 == 0);
+            intent.putExtra(ContactSaveService.EXTRA_CALLBACK_INTENT, new Intent("callback" + i));
+            batch.add(intent);
+        }
+        assertEquals(1, batch.buildOperations().size());
+        assertEquals(3, batch.getCallbackIntents().size());
+        assertEquals("callback2", batch.getCallbackIntents().get(2).getAction());
+
+        batch.clear();
+        assertTrue(batch.isEmpty());
+    }
+}
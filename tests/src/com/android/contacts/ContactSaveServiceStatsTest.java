@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts;
+
+import android.os.Bundle;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.android.contacts.ContactSaveServiceStats.Histogram;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for {@link ContactSaveServiceStats}.
+ */
+@SmallTest
+public class ContactSaveServiceStatsTest extends TestCase {
+    public void testPercentiles() {
+        final Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getPercentile(50));
+        for (int i = 100; i >= 1; i--) {
+            histogram.add(i);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(50, histogram.getPercentile(50));
+        assertEquals(95, histogram.getPercentile(95));
+        assertEquals(99, histogram.getPercentile(99));
+        assertEquals(100, histogram.getPercentile(100));
+    }
+
+    public void testWindowKeepsRecentSamples() {
+        final Histogram histogram = new Histogram();
+        for (int i = 0; i < ContactSaveServiceStats.WINDOW_SIZE; i++) {
+            histogram.add(1000);
+        }
+        for (int i = 0; i < ContactSaveServiceStats.WINDOW_SIZE; i++) {
+            histogram.add(1);
+        }
+        assertEquals(2 * ContactSaveServiceStats.WINDOW_SIZE, histogram.getCount());
+        assertEquals(1, histogram.getPercentile(99));
+    }
+
+    public void testRecordAndBundle() {
+        final ContactSaveServiceStats stats = new ContactSaveServiceStats();
+        final long start = System.nanoTime();
+        final long next = stats.recordPhase("buildDiff", start);
+        assertTrue(next >= start);
+        stats.recordAction(ContactSaveService.ACTION_SAVE_CONTACT, start);
+        stats.recordAction(ContactSaveService.ACTION_SAVE_CONTACT, start);
+        stats.recordDequeue(5, 2);
+
+        assertEquals(2, stats.getAction(ContactSaveService.ACTION_SAVE_CONTACT).getCount());
+        assertEquals(1, stats.getPhase("buildDiff").getCount());
+
+        final Bundle bundle = stats.toBundle();
+        assertEquals(2, bundle.getBundle(ContactSaveServiceStats.PREFIX_ACTION
+                + ContactSaveService.ACTION_SAVE_CONTACT).getLong(
+                        ContactSaveServiceStats.KEY_COUNT));
+        assertEquals(5000, bundle.getBundle(ContactSaveServiceStats.METRIC_QUEUE_WAIT)
+                .getLong(ContactSaveServiceStats.KEY_P50));
+        assertEquals(2, bundle.getBundle(ContactSaveServiceStats.METRIC_QUEUE_DEPTH)
+                .getLong(ContactSaveServiceStats.KEY_P99));
+    }
+
+    public void testCounters() {
+        final ContactSaveServiceStats stats = new ContactSaveServiceStats();
+        assertEquals(0, stats.getCount("conflicts"));
+        stats.increment("conflicts");
+        stats.increment("conflicts");
+        stats.increment("retries");
+        assertEquals(2, stats.getCount("conflicts"));
+
+        final Bundle bundle = stats.toBundle();
+        assertEquals(2, bundle.getLong(ContactSaveServiceStats.PREFIX_COUNTER + "conflicts"));
+        assertEquals(1, bundle.getLong(ContactSaveServiceStats.PREFIX_COUNTER + "retries"));
+        assertFalse(bundle.containsKey(ContactSaveServiceStats.PREFIX_COUNTER + "saves"));
+    }
+}
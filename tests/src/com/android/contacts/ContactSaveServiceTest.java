@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentUris;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.provider.ContactsContract.Contacts;
+import android.test.ServiceTestCase;
+import android.test.suitebuilder.annotation.MediumTest;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.android.contacts.common.test.mocks.ContactsMockContext;
+import com.android.contacts.common.test.mocks.MockContentProvider;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+
+/**
+ * Tests for the bulk delete of {@link ContactSaveService}.
+ */
+public class ContactSaveServiceTest extends ServiceTestCase<ContactSaveService> {
+    private static final long TIMEOUT_MS = 5000;
+
+    public ContactSaveServiceTest() {
+        super(ContactSaveService.class);
+    }
+
+    @SmallTest
+    public void testDeleteContactsBatches() {
+        final ArrayList<Long> contactIds = Lists.newArrayList();
+        for (long contactId = 1; contactId <= 2 * ContactSaveService.DELETE_CHUNK_SIZE + 1;
+                contactId++) {
+            contactIds.add(contactId);
+        }
+
+        final ArrayList<ArrayList<ContentProviderOperation>> batches =
+                ContactSaveService.buildDeleteContactsBatches(contactIds);
+        assertEquals(3, batches.size());
+        assertEquals(ContactSaveService.DELETE_CHUNK_SIZE, batches.get(0).size());
+        assertEquals(ContactSaveService.DELETE_CHUNK_SIZE, batches.get(1).size());
+        assertEquals(1, batches.get(2).size());
+        assertEquals(ContentUris.withAppendedId(Contacts.CONTENT_URI, 1),
+                batches.get(0).get(0).getUri());
+        assertEquals(ContentUris.withAppendedId(Contacts.CONTENT_URI,
+                2 * ContactSaveService.DELETE_CHUNK_SIZE + 1), batches.get(2).get(0).getUri());
+        assertTrue(batches.get(2).get(0).isYieldAllowed());
+
+        assertTrue(ContactSaveService.buildDeleteContactsBatches(
+                new ArrayList<Long>()).isEmpty());
+    }
+
+    @SmallTest
+    public void testResolveLookupUrisWithOneQuery() {
+        final ContactsMockContext context = new ContactsMockContext(getContext());
+        final MockContentProvider provider = context.getContactsProvider();
+        provider.expectQuery(Contacts.CONTENT_URI)
+                .withProjection(Contacts._ID, Contacts.LOOKUP_KEY)
+                .withSelection(Contacts.LOOKUP_KEY + " IN (?,?)", "lookup1", "lookup2")
+                .returnRow(2L, "lookup2")
+                .returnRow(1L, "lookup1");
+
+        final ArrayList<Uri> lookupUris = Lists.newArrayList(
+                Contacts.getLookupUri(1, "lookup1"), Contacts.getLookupUri(2, "lookup2"));
+        final LinkedHashSet<Long> contactIds = Sets.newLinkedHashSet();
+        ContactSaveService.resolveLookupUris(context.getContentResolver(), lookupUris,
+                contactIds);
+        provider.verify();
+        assertEquals(Lists.newArrayList(1L, 2L), Lists.newArrayList(contactIds));
+    }
+
+    @SmallTest
+    public void testRequestIsPendingOnceIntentIsCreated() {
+        final Intent first = ContactSaveService.createDeleteContactsIntent(getContext(),
+                new long[] { 1, 2 });
+        final Intent second = ContactSaveService.createDeleteContactsIntent(getContext(),
+                new long[] { 3 });
+        final int firstRequestId = ContactSaveService.getBulkDeleteRequestId(first);
+        final int secondRequestId = ContactSaveService.getBulkDeleteRequestId(second);
+        assertTrue(firstRequestId != secondRequestId);
+        assertTrue(ContactSaveService.isBulkDeletePending(firstRequestId));
+        assertTrue(ContactSaveService.isBulkDeletePending(secondRequestId));
+        assertFalse(ContactSaveService.isBulkDeletePending(0));
+    }
+
+    @MediumTest
+    public void testRequestIsDoneOnceHandled() {
+        final Intent intent = ContactSaveService.createDeleteContactsIntent(getContext(),
+                new long[0]);
+        final int requestId = ContactSaveService.getBulkDeleteRequestId(intent);
+        startService(intent);
+
+        final long deadline = SystemClock.elapsedRealtime() + TIMEOUT_MS;
+        while (ContactSaveService.isBulkDeletePending(requestId)
+                && SystemClock.elapsedRealtime() < deadline) {
+            SystemClock.sleep(10);
+        }
+        assertFalse(ContactSaveService.isBulkDeletePending(requestId));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.contacts;
+
+import android.database.Cursor;
+import android.provider.ContactsContract.Groups;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.android.contacts.common.test.mocks.ContactsMockContext;
+import com.android.contacts.common.test.mocks.MockContentProvider;
+
+import java.util.List;
+
+/**
+ * Tests for {@link GroupMetaDataCache}.
+ */
+@SmallTest
+public class GroupMetaDataCacheTest extends AndroidTestCase {
+    private ContactsMockContext mMockContext;
+    private MockContentProvider mContactsProvider;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mMockContext = new ContactsMockContext(getContext());
+        mContactsProvider = mMockContext.getContactsProvider();
+    }
+
+    private void expectGroupsQuery() {
+        mContactsProvider.expectQuery(Groups.CONTENT_URI)
+                .withProjection(GroupMetaDataLoader.COLUMNS)
+                .withSelection(GroupMetaDataLoader.SELECTION)
+                .returnRow("account1", "type1", null, 1L, "Friends", 1, 0, 0, 0)
+                .returnRow("account1", "type1", null, 2L, "Starred", 0, 1, 1, 0)
+                .returnRow("account2", "type1", "plus", 3L, "Family", 0, 0, 0, 0);
+    }
+
+    public void testGroupsByAccount() {
+        expectGroupsQuery();
+        final GroupMetaDataCache cache = new GroupMetaDataCache(mMockContext);
+
+        final List<GroupMetaData> groups = cache.getGroups("account1", "type1", null);
+        assertEquals(2, groups.size());
+        assertEquals("Friends", groups.get(0).getTitle());
+        assertTrue(groups.get(0).isDefaultGroup());
+        assertTrue(groups.get(1).isFavorites());
+
+        assertEquals(1, cache.getGroups("account2", "type1", "plus").size());
+        assertEquals(0, cache.getGroups("account2", "type1", null).size());
+        mContactsProvider.verify();
+    }
+
+    public void testCursorHasLoaderProjection() {
+        expectGroupsQuery();
+        final GroupMetaDataCache cache = new GroupMetaDataCache(mMockContext);
+
+        final Cursor cursor = cache.newCursor();
+        try {
+            assertEquals(3, cursor.getCount());
+            assertTrue(cursor.moveToPosition(1));
+            assertEquals("account1", cursor.getString(GroupMetaDataLoader.ACCOUNT_NAME));
+            assertEquals(2L, cursor.getLong(GroupMetaDataLoader.GROUP_ID));
+            assertEquals(1, cursor.getInt(GroupMetaDataLoader.IS_READ_ONLY));
+            assertTrue(cursor.isNull(GroupMetaDataLoader.DATA_SET));
+        } finally {
+            cursor.close();
+        }
+        // The second cursor is served without a query
+        cache.newCursor().close();
+        mContactsProvider.verify();
+    }
+
+    public void testInvalidateReloadsAndNotifies() {
+        expectGroupsQuery();
+        final GroupMetaDataCache cache = new GroupMetaDataCache(mMockContext);
+        final int[] notifications = new int[1];
+        cache.registerListener(new GroupMetaDataCache.Listener() {
+            @Override
+            public void onGroupMetaDataChanged() {
+                notifications[0]++;
+            }
+        });
+
+        cache.getGroups("account1", "type1", null);
+        cache.invalidate();
+        assertEquals(1, notifications[0]);
+
+        expectGroupsQuery();
+        assertEquals(2, cache.getGroups("account1", "type1", null).size());
+        mContactsProvider.verify();
+    }
+}
@@ -562,6 +562,30 @@ public class RawContactDeltaListTests extends AndroidTestCase {
         assertEquals((Long)VER_SECOND, getVersion(merged, CONTACT_BOB));
     }
 
+    public void testMergeSeveralRawContacts() {
+        final RawContactDeltaList first = buildSet(
+                buildBeforeEntity(mContext, CONTACT_MARY, VER_FIRST, buildPhone(PHONE_GREEN)),
+                buildBeforeEntity(mContext, CONTACT_BOB, VER_FIRST, buildPhone(PHONE_RED)),
+                buildAfterEntity(buildPhone(PHONE_BLUE)));
+        final RawContactDeltaList second = buildSet(
+                buildBeforeEntity(mContext, CONTACT_BOB, VER_SECOND, buildPhone(PHONE_RED)),
+                buildBeforeEntity(mContext, CONTACT_MARY, VER_SECOND, buildPhone(PHONE_GREEN)));
+
+        // Change a phone of each existing raw contact
+        getPhone(first, CONTACT_BOB, PHONE_RED).put(Phone.NUMBER, TEST_PHONE);
+        getPhone(first, CONTACT_MARY, PHONE_GREEN).markDeleted();
+
+        // Both are matched in spite of the different order, the insert is appended
+        final RawContactDeltaList merged = RawContactDeltaList.mergeAfter(second, first);
+        assertEquals(3, merged.size());
+        assertEquals((Long)VER_SECOND, getVersion(merged, CONTACT_BOB));
+        assertEquals((Long)VER_SECOND, getVersion(merged, CONTACT_MARY));
+        assertEquals(TEST_PHONE,
+                getPhone(merged, CONTACT_BOB, PHONE_RED).getAsString(Phone.NUMBER));
+        assertTrue(getPhone(merged, CONTACT_MARY, PHONE_GREEN).isDelete());
+        assertTrue(merged.get(2).isContactInsert());
+    }
+
     public void testMergeAfterEnsureAndTrim() {
         final RawContactDeltaList first = buildSet(buildBeforeEntity(mContext, CONTACT_BOB,
                 VER_FIRST, buildEmail(EMAIL_YELLOW)));
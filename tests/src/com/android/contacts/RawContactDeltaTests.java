@@ -34,6 +34,7 @@ import android.test.suitebuilder.annotation.LargeTest;
 
 import com.android.contacts.model.RawContact;
 import com.android.contacts.model.RawContactDelta;
+import com.android.contacts.model.RawContactDeltaList;
 import com.android.contacts.common.model.ValuesDelta;
 import com.google.common.collect.Lists;
 
@@ -143,6 +144,38 @@ public class RawContactDeltaTests extends AndroidTestCase {
         assertEquals("Unexpected change when merging", source, merged);
     }
 
+    public void testGetEntryAfterParcelAndMerge() {
+        // Build a contact with many rows, as looked up while re-parenting
+        final RawContact before = getRawContact(mContext, TEST_CONTACT_ID, TEST_PHONE_ID);
+        for (long i = 1; i <= 200; i++) {
+            final ContentValues phone = new ContentValues();
+            phone.put(Data._ID, TEST_PHONE_ID + i);
+            phone.put(Data.MIMETYPE, Phone.CONTENT_ITEM_TYPE);
+            phone.put(Phone.NUMBER, TEST_PHONE_NUMBER_1);
+            before.addDataItemValues(phone);
+        }
+        final RawContactDelta source = RawContactDelta.fromBefore(before);
+        source.getEntry(TEST_PHONE_ID + 100).put(Phone.NUMBER, TEST_PHONE_NUMBER_2);
+
+        final Parcel parcel = Parcel.obtain();
+        parcel.writeParcelable(source, 0);
+        parcel.setDataPosition(0);
+        final RawContactDelta parceled = parcel.readParcelable(getClass().getClassLoader());
+        parcel.recycle();
+
+        assertEquals(source, parceled);
+        assertEquals(TEST_PHONE_NUMBER_2,
+                parceled.getEntry(TEST_PHONE_ID + 100).getAsString(Phone.NUMBER));
+        assertNull(parceled.getEntry(TEST_PHONE_ID + 201));
+
+        final RawContactDelta merged = RawContactDelta.mergeAfter(
+                RawContactDelta.fromBefore(before), parceled);
+        assertEquals(source, merged);
+        assertEquals(201, merged.getEntryCount(false));
+        assertEquals(TEST_PHONE_NUMBER_2,
+                merged.getEntry(TEST_PHONE_ID + 100).getAsString(Phone.NUMBER));
+    }
+
     public void testValuesDiffDelete() {
         final ContentValues before = new ContentValues();
         before.put(Data._ID, TEST_PHONE_ID);
@@ -173,6 +206,86 @@ public class RawContactDeltaTests extends AndroidTestCase {
         assertTrue("Created changes when none needed", (diff.size() == 0));
     }
 
+    public void testDirtyEntries() {
+        final RawContact before = getRawContact(mContext, TEST_CONTACT_ID, TEST_PHONE_ID);
+        final RawContactDelta source = RawContactDelta.fromBefore(before);
+        assertTrue(source.getDirtyEntries().isEmpty());
+        assertFalse(source.hasChanges());
+
+        // Handing out entries doesn't make them dirty, editing them does
+        final ValuesDelta child = source.getEntry(TEST_PHONE_ID);
+        source.getMimeEntries(Phone.CONTENT_ITEM_TYPE);
+        assertTrue(source.getDirtyEntries().isEmpty());
+        assertFalse(source.hasChanges());
+
+        child.put(Phone.NUMBER, TEST_PHONE_NUMBER_2);
+        assertTrue(source.getDirtyEntries().contains(child));
+        assertTrue(source.hasChanges());
+
+        // Unchanged entries stay clean across a parcel, changed ones stay dirty
+        final Parcel parcel = Parcel.obtain();
+        parcel.writeParcelable(source, 0);
+        parcel.setDataPosition(0);
+        final RawContactDelta parceled = parcel.readParcelable(getClass().getClassLoader());
+        parcel.recycle();
+        assertEquals(1, parceled.getDirtyEntries().size());
+        assertTrue(parceled.hasChanges());
+    }
+
+    public void testDeletedEntryIsDirty() {
+        final RawContact before = getRawContact(mContext, TEST_CONTACT_ID, TEST_PHONE_ID);
+        final RawContactDelta source = RawContactDelta.fromBefore(before);
+
+        final ValuesDelta child = source.getMimeEntries(Phone.CONTENT_ITEM_TYPE).get(0);
+        child.markDeleted();
+        assertTrue(source.getDirtyEntries().contains(child));
+        assertTrue(source.hasChanges());
+    }
+
+    public void testEntryIndexedOnceIdIsAssigned() {
+        final RawContact before = getRawContact(mContext, TEST_CONTACT_ID, TEST_PHONE_ID);
+        final RawContactDelta source = RawContactDelta.fromBefore(before);
+
+        final ContentValues phone = new ContentValues();
+        phone.put(Data.MIMETYPE, Phone.CONTENT_ITEM_TYPE);
+        phone.put(Phone.NUMBER, TEST_PHONE_NUMBER_2);
+        final ValuesDelta child = ValuesDelta.fromBefore(phone);
+        source.addEntry(child);
+        assertNull(source.getEntry(TEST_PHONE_ID + 1));
+
+        child.put(Data._ID, TEST_PHONE_ID + 1);
+        assertSame(child, source.getEntry(TEST_PHONE_ID + 1));
+
+        // A child with an id that is not indexed is not contained
+        final RawContactDelta other = RawContactDelta.fromBefore(before);
+        assertFalse(source.equals(other));
+    }
+
+    public void testMimeEntriesAreReadOnly() {
+        final RawContact before = getRawContact(mContext, TEST_CONTACT_ID, TEST_PHONE_ID);
+        final RawContactDelta source = RawContactDelta.fromBefore(before);
+
+        final ContentValues phone = new ContentValues();
+        phone.put(Data.MIMETYPE, Phone.CONTENT_ITEM_TYPE);
+        phone.put(Phone.NUMBER, TEST_PHONE_NUMBER_2);
+        try {
+            source.getMimeEntries(Phone.CONTENT_ITEM_TYPE).add(ValuesDelta.fromAfter(phone));
+            fail("Children can only be added with addEntry");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+        assertEquals(1, source.getMimeEntriesCount(Phone.CONTENT_ITEM_TYPE, false));
+    }
+
+    public void testListDiffUnchanged() {
+        final RawContact before = getRawContact(mContext, TEST_CONTACT_ID, TEST_PHONE_ID);
+        final RawContactDeltaList set = new RawContactDeltaList();
+        set.add(RawContactDelta.fromBefore(before));
+
+        // Without changes, not even the version asserts are built
+        assertTrue(set.buildDiff().isEmpty());
+    }
+
     public void testEntityDiffNoneInsert() {
         final RawContact before = getRawContact(mContext, TEST_CONTACT_ID, TEST_PHONE_ID);
         final RawContactDelta source = RawContactDelta.fromBefore(before);
@@ -39,6 +39,7 @@ import android.test.AndroidTestCase;
 import android.test.suitebuilder.annotation.LargeTest;
 
 import com.android.contacts.common.model.AccountTypeManager;
+import com.android.contacts.model.AccountTypeMigrationPlan;
 import com.android.contacts.model.RawContact;
 import com.android.contacts.model.RawContactDelta;
 import com.android.contacts.common.model.ValuesDelta;
@@ -1232,4 +1233,44 @@ public class RawContactModifierTests extends AndroidTestCase {
         assertEquals("company1", outputValues.getAsString(Organization.COMPANY));
         assertEquals("department1", outputValues.getAsString(Organization.DEPARTMENT));
     }
+
+    public void testMigrateStateForNewContactReusesPlan() {
+        AccountType oldAccountType = new GoogleAccountType(getContext(), "");
+        AccountType newAccountType = new ExchangeAccountType(getContext(), "", EXCHANGE_ACCT_TYPE);
+        assertSame(AccountTypeMigrationPlan.get(oldAccountType, newAccountType),
+                AccountTypeMigrationPlan.get(oldAccountType, newAccountType));
+
+        // Reloaded account types get a plan of their own
+        AccountType reloadedAccountType =
+                new ExchangeAccountType(getContext(), "", EXCHANGE_ACCT_TYPE);
+        assertNotSame(AccountTypeMigrationPlan.get(oldAccountType, newAccountType),
+                AccountTypeMigrationPlan.get(oldAccountType, reloadedAccountType));
+
+        for (int i = 0; i < 2; i++) {
+            RawContactDelta oldState = new RawContactDelta();
+            ContentValues mockNameValues = new ContentValues();
+            mockNameValues.put(Data.MIMETYPE, StructuredName.CONTENT_ITEM_TYPE);
+            mockNameValues.put(StructuredName.DISPLAY_NAME, TEST_NAME);
+            oldState.addEntry(ValuesDelta.fromAfter(mockNameValues));
+            mockNameValues = new ContentValues();
+            mockNameValues.put(Data.MIMETYPE, Phone.CONTENT_ITEM_TYPE);
+            mockNameValues.put(Phone.TYPE, Phone.TYPE_CUSTOM);
+            mockNameValues.put(Phone.LABEL, "custom_type");
+            mockNameValues.put(Phone.NUMBER, TEST_PHONE);
+            oldState.addEntry(ValuesDelta.fromAfter(mockNameValues));
+
+            RawContactDelta newState = new RawContactDelta();
+            RawContactModifier.migrateStateForNewContact(getContext(), oldState, newState,
+                    oldAccountType, newAccountType);
+
+            List<ValuesDelta> list = newState.getMimeEntries(Phone.CONTENT_ITEM_TYPE);
+            assertNotNull(list);
+            assertEquals(1, list.size());
+            ContentValues outputValues = list.get(0).getAfter();
+            assertEquals(Phone.TYPE_MOBILE, outputValues.getAsInteger(Phone.TYPE).intValue());
+            assertNull(outputValues.getAsString(Phone.LABEL));
+            assertEquals(TEST_PHONE, outputValues.getAsString(Phone.NUMBER));
+            assertNotNull(newState.getMimeEntries(StructuredName.CONTENT_ITEM_TYPE));
+        }
+    }
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.model;
+
+import android.content.ContentValues;
+import android.os.Parcel;
+import android.provider.ContactsContract.CommonDataKinds.Phone;
+import android.provider.ContactsContract.CommonDataKinds.Photo;
+import android.provider.ContactsContract.Data;
+import android.provider.ContactsContract.RawContacts;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.android.contacts.common.model.ValuesDelta;
+
+import java.io.File;
+
+/**
+ * Unit test for {@link CompactRawContactDeltaList}.
+ */
+@SmallTest
+public class CompactRawContactDeltaListTest extends AndroidTestCase {
+    private static final long RAW_CONTACT_ID = 12;
+
+    private static ContentValues buildPhone(long id, String number) {
+        final ContentValues values = new ContentValues();
+        values.put(Data._ID, id);
+        values.put(Data.MIMETYPE, Phone.CONTENT_ITEM_TYPE);
+        values.put(Phone.NUMBER, number);
+        values.put(Phone.TYPE, Phone.TYPE_HOME);
+        return values;
+    }
+
+    private static RawContactDeltaList buildState() {
+        final ContentValues values = new ContentValues();
+        values.put(RawContacts._ID, RAW_CONTACT_ID);
+        values.put(RawContacts.VERSION, 43);
+        values.put(RawContacts.ACCOUNT_TYPE, "com.example");
+        values.put(RawContacts.SOURCE_ID, "unneeded");
+        final RawContact rawContact = new RawContact(values);
+        for (long id = 1; id <= 10; id++) {
+            rawContact.addDataItemValues(buildPhone(id, "555-000" + id));
+        }
+
+        final RawContactDeltaList state = new RawContactDeltaList();
+        state.add(RawContactDelta.fromBefore(rawContact));
+        return state;
+    }
+
+    private CompactRawContactDeltaList parcel(RawContactDeltaList state) {
+        final Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeParcelable(new CompactRawContactDeltaList(getContext(), state), 0);
+            parcel.setDataPosition(0);
+            return parcel.readParcelable(getClass().getClassLoader());
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    public void testSameDiff() {
+        final RawContactDeltaList state = buildState();
+        final RawContactDelta delta = state.get(0);
+        delta.getEntry(3L).put(Phone.NUMBER, "555-1234");
+        delta.getEntry(4L).markDeleted();
+        delta.addEntry(ValuesDelta.fromAfter(buildPhone(-1, "555-5678")));
+
+        final RawContactDeltaList parceled = parcel(state).getState();
+        assertEquals(state.buildDiff().toString(), parceled.buildDiff().toString());
+
+        // Unchanged phones are still there for trimming, but only as stubs
+        final RawContactDelta parceledDelta = parceled.get(0);
+        assertEquals(11, parceledDelta.getEntryCount(false));
+        assertEquals(3, parceledDelta.getDirtyEntries().size());
+        assertFalse(parceledDelta.getEntry(5L).containsKey(Phone.NUMBER));
+        assertNull(parceledDelta.getValues().getAsString(RawContacts.SOURCE_ID));
+        assertEquals("com.example",
+                parceledDelta.getValues().getAsString(RawContacts.ACCOUNT_TYPE));
+    }
+
+    public void testUnchanged() {
+        final RawContactDeltaList parceled = parcel(buildState()).getState();
+        assertTrue(parceled.buildDiff().isEmpty());
+    }
+
+    private static byte[] addLargePhoto(RawContactDeltaList state) {
+        final byte[] photo = new byte[CompactRawContactDeltaList.MAX_INLINE_BLOB_SIZE + 1];
+        photo[photo.length - 1] = 42;
+        final ContentValues values = new ContentValues();
+        values.put(Data.MIMETYPE, Photo.CONTENT_ITEM_TYPE);
+        values.put(Photo.PHOTO, photo);
+        state.get(0).addEntry(ValuesDelta.fromAfter(values));
+        return photo;
+    }
+
+    public void testLargeBlobPassedByFile() {
+        final RawContactDeltaList state = buildState();
+        final byte[] photo = addLargePhoto(state);
+
+        final CompactRawContactDeltaList compactState =
+                new CompactRawContactDeltaList(getContext(), state);
+        compactState.writeBlobs();
+        final Parcel parcel = Parcel.obtain();
+        parcel.writeParcelable(compactState, 0);
+        assertTrue(parcel.dataSize() < photo.length);
+        parcel.setDataPosition(0);
+        final CompactRawContactDeltaList parceled =
+                parcel.readParcelable(getClass().getClassLoader());
+        parcel.recycle();
+
+        final ValuesDelta parceledPhoto =
+                parceled.getState().get(0).getPrimaryEntry(Photo.CONTENT_ITEM_TYPE);
+        final byte[] parceledBytes = parceledPhoto.getAsByteArray(Photo.PHOTO);
+        assertEquals(photo.length, parceledBytes.length);
+        assertEquals(42, parceledBytes[photo.length - 1]);
+
+        final File directory = new File(getContext().getCacheDir(), "save_blobs");
+        assertEquals(1, directory.list().length);
+        parceled.release();
+        assertEquals(0, directory.list().length);
+    }
+
+    public void testMissingBlobFileFailsState() {
+        final RawContactDeltaList state = buildState();
+        addLargePhoto(state);
+
+        final CompactRawContactDeltaList compactState =
+                new CompactRawContactDeltaList(getContext(), state);
+        compactState.writeBlobs();
+        final Parcel parcel = Parcel.obtain();
+        parcel.writeParcelable(compactState, 0);
+        final File directory = new File(getContext().getCacheDir(), "save_blobs");
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        parcel.setDataPosition(0);
+        final CompactRawContactDeltaList parceled =
+                parcel.readParcelable(getClass().getClassLoader());
+        parcel.recycle();
+
+        assertNull(parceled.getState());
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.contacts.model;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.provider.ContactsContract.Contacts;
+import android.provider.ContactsContract.Directory;
+import android.provider.ContactsContract.DisplayNameSources;
+import android.provider.ContactsContract.RawContacts;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.android.contacts.common.test.mocks.ContactsMockContext;
+import com.android.contacts.common.test.mocks.MockContentProvider;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Unit test for {@link ContactCache}.
+ */
+@SmallTest
+public class ContactCacheTest extends AndroidTestCase {
+
+    private static Contact buildContact(long contactId, byte[] photo) {
+        final String lookupKey = "lookup" + contactId;
+        final Uri lookupUri = ContentUris.withAppendedId(
+                Uri.withAppendedPath(Contacts.CONTENT_LOOKUP_URI, lookupKey), contactId);
+        return new Contact.Builder(lookupUri, lookupUri, lookupUri, Directory.DEFAULT,
+                lookupKey, contactId, -1, DisplayNameSources.UNDEFINED, 0, null, null, null,
+                null, false, null, false, null, false)
+                .setRawContacts(ImmutableList.<RawContact>of())
+                .setPhotoBinaryData(photo)
+                .build();
+    }
+
+    private static Contact buildContact(long contactId, long rawContactId, long version) {
+        final ContentValues values = new ContentValues();
+        values.put(RawContacts._ID, rawContactId);
+        values.put(RawContacts.VERSION, version);
+        return new Contact.Builder(buildContact(contactId, null))
+                .setRawContacts(ImmutableList.of(new RawContact(values)))
+                .build();
+    }
+
+    public void testPutAndGet() {
+        final ContactCache cache = new ContactCache(1024);
+        final Contact contact = buildContact(1, null);
+        cache.put(contact);
+
+        assertSame(contact, cache.get(contact.getLookupUri()));
+        assertNull(cache.get(buildContact(2, null).getLookupUri()));
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    public void testIgnoresUnloadedContacts() {
+        final ContactCache cache = new ContactCache(1024);
+        cache.put(Contact.forNotFound(Uri.EMPTY));
+        cache.put(Contact.forError(Uri.EMPTY, new Exception()));
+        assertEquals(0, cache.size());
+    }
+
+    public void testInvalidate() {
+        final ContactCache cache = new ContactCache(1024);
+        final Contact contact = buildContact(1, null);
+        cache.put(contact);
+        cache.invalidate(contact.getLookupUri());
+
+        assertNull(cache.get(contact.getLookupUri()));
+        assertEquals(1, cache.invalidationCount());
+
+        // Invalidating a missing entry is not counted
+        cache.invalidate(contact.getLookupUri());
+        assertEquals(1, cache.invalidationCount());
+    }
+
+    public void testEvictsLeastRecentlyUsedByPhotoSize() {
+        // Room for two contacts with a 40k photo each, but not three
+        final ContactCache cache = new ContactCache(100);
+        final Contact first = buildContact(1, new byte[40 * 1024]);
+        final Contact second = buildContact(2, new byte[40 * 1024]);
+        final Contact third = buildContact(3, new byte[40 * 1024]);
+
+        cache.put(first);
+        cache.put(second);
+        cache.get(first.getLookupUri());
+        cache.put(third);
+
+        assertSame(first, cache.get(first.getLookupUri()));
+        assertNull(cache.get(second.getLookupUri()));
+        assertSame(third, cache.get(third.getLookupUri()));
+        assertEquals(1, cache.evictionCount());
+    }
+
+    public void testSizeCountsDownsampledPhoto() {
+        // A downsampled photo is kept as a bitmap only
+        final Contact contact = new Contact.Builder(buildContact(1, null))
+                .setPhotoBitmap(Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888))
+                .build();
+        assertTrue(ContactCache.estimateSizeKb(contact) >= 100 * 100 * 4 / 1024);
+    }
+
+    public void testCachedContactIsShared() {
+        final ContactCache cache = new ContactCache(1024);
+        final Contact contact = buildContact(1, new byte[] { 42 });
+        cache.put(contact);
+
+        final Contact cached = cache.get(contact.getLookupUri());
+        assertSame(contact, cached.withRequestedUri(contact.getRequestedUri()));
+
+        // Requesting it through another Uri shares everything but the Uri
+        final Uri requestedUri = ContentUris.withAppendedId(Contacts.CONTENT_URI, 1);
+        final Contact requested = cached.withRequestedUri(requestedUri);
+        assertEquals(requestedUri, requested.getRequestedUri());
+        assertSame(contact.getRawContacts(), requested.getRawContacts());
+        assertSame(contact.getPhotoBinaryData(), requested.getPhotoBinaryData());
+        assertSame(contact, cache.get(contact.getLookupUri()));
+    }
+
+    public void testPutAfterInvalidateIsDropped() {
+        final ContactCache cache = new ContactCache(1024);
+        final Contact contact = buildContact(1, null);
+        final int generation = cache.getGeneration();
+        // The contact changes while it is being loaded
+        cache.invalidate(contact.getLookupUri());
+        cache.put(contact, generation);
+        assertNull(cache.get(contact.getLookupUri()));
+
+        cache.put(contact, cache.getGeneration());
+        assertSame(contact, cache.get(contact.getLookupUri()));
+    }
+
+    public void testPutAfterInvalidatingAnotherContactIsKept() {
+        final ContactCache cache = new ContactCache(1024);
+        final Contact contact = buildContact(1, null);
+        final int generation = cache.getGeneration();
+        cache.invalidate(buildContact(2, null).getLookupUri());
+        cache.put(contact, generation);
+        assertSame(contact, cache.get(contact.getLookupUri()));
+    }
+
+    public void testPutAfterProviderChangeIsKept() {
+        final ContactCache cache = new ContactCache(1024);
+        final Contact contact = buildContact(1, null);
+        final int generation = cache.getGeneration();
+        // Left to the version check rather than dropped
+        cache.onProviderChange();
+        cache.put(contact, generation);
+        assertSame(contact, cache.get(contact.getLookupUri()));
+    }
+
+    public void testPutAfterForgottenInvalidationIsDropped() {
+        final ContactCache cache = new ContactCache(1024);
+        final Contact contact = buildContact(1, null);
+        final int generation = cache.getGeneration();
+        cache.invalidate(contact.getLookupUri());
+        // Enough other invalidations that the one of the contact is no longer remembered
+        for (long contactId = 2; contactId < 200; contactId++) {
+            cache.invalidate(buildContact(contactId, null).getLookupUri());
+        }
+        cache.put(contact, generation);
+        assertNull(cache.get(contact.getLookupUri()));
+    }
+
+    public void testVerifyEvictsOnlyChangedContacts() {
+        final ContactsMockContext context = new ContactsMockContext(getContext());
+        final MockContentProvider provider = context.getContactsProvider();
+        final ContactCache cache = new ContactCache(1024);
+        final Contact unchanged = buildContact(1, 10, 1);
+        final Contact changed = buildContact(2, 20, 1);
+        final Contact removed = buildContact(3, 30, 1);
+        cache.put(unchanged);
+        cache.put(changed);
+        cache.put(removed);
+
+        provider.expectQuery(RawContacts.CONTENT_URI)
+                .withProjection(RawContacts.CONTACT_ID, RawContacts._ID, RawContacts.VERSION)
+                .withSelection(RawContacts.DELETED + "=0 AND " + RawContacts.CONTACT_ID
+                        + " IN (1,2,3)")
+                .returnRow(1L, 10L, 1L)
+                .returnRow(2L, 20L, 2L);
+        cache.verify(context.getContentResolver());
+        provider.verify();
+
+        assertSame(unchanged, cache.get(unchanged.getLookupUri()));
+        assertNull(cache.get(changed.getLookupUri()));
+        assertNull(cache.get(removed.getLookupUri()));
+        assertEquals(2, cache.invalidationCount());
+    }
+}
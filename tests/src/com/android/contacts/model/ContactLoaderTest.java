@@ -66,10 +66,13 @@ public class ContactLoaderTest extends LoaderTestCase {
         AccountTypeManager.setInstanceForTest(
                 new MockAccountTypeManager(
                         new AccountType[]{accountType}, new AccountWithDataSet[]{account}));
+
+        ContactCache.setInstanceForTest(new ContactCache(1024));
     }
 
     @Override
     protected void tearDown() throws Exception {
+        ContactCache.setInstanceForTest(null);
         mMockContext = null;
         mContactsProvider = null;
         super.tearDown();
@@ -285,6 +288,15 @@ public class ContactLoaderTest extends LoaderTestCase {
         mContactsProvider.verify();
     }
 
+    public void testComputeSampleSize() {
+        assertEquals(1, ContactLoader.computeSampleSize(96, 96, 720));
+        assertEquals(1, ContactLoader.computeSampleSize(720, 720, 720));
+        assertEquals(2, ContactLoader.computeSampleSize(1440, 2000, 720));
+        assertEquals(4, ContactLoader.computeSampleSize(4000, 3000, 720));
+        // The shorter side decides, so the photo never gets smaller than the target
+        assertEquals(1, ContactLoader.computeSampleSize(4000, 1000, 720));
+    }
+
     class ContactQueries {
         public void fetchAllData(
                 Uri baseUri, long contactId, long rawContactId, long dataId, String encodedLookup) {
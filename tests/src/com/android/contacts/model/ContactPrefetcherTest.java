@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.model;
+
+import android.net.Uri;
+import android.provider.ContactsContract;
+import android.provider.ContactsContract.Contacts;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.google.common.collect.Lists;
+
+import java.util.ArrayList;
+
+/**
+ * Unit test for {@link ContactPrefetcher}. The contacts are only queued, never loaded.
+ */
+@SmallTest
+public class ContactPrefetcherTest extends AndroidTestCase {
+
+    private ContactPrefetcher mPrefetcher;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPrefetcher = new ContactPrefetcher(getContext(), false /* startThread */);
+    }
+
+    private static Uri lookupUri(long contactId) {
+        return Contacts.getLookupUri(contactId, "lookup" + contactId);
+    }
+
+    public void testPrefetchPutsNewestFirst() {
+        mPrefetcher.prefetch(lookupUri(1));
+        mPrefetcher.prefetch(lookupUri(2));
+        mPrefetcher.prefetch(lookupUri(1));
+        assertEquals(Lists.newArrayList(lookupUri(1), lookupUri(2)), mPrefetcher.getPending());
+    }
+
+    public void testPrefetchAllReplacesPending() {
+        mPrefetcher.prefetch(lookupUri(100));
+
+        final ArrayList<Uri> visible = Lists.newArrayList();
+        for (long contactId = 1; contactId <= ContactPrefetcher.MAX_PENDING + 2; contactId++) {
+            visible.add(lookupUri(contactId));
+        }
+        mPrefetcher.prefetchAll(visible);
+
+        // The top of the screen is kept
+        assertEquals(visible.subList(0, ContactPrefetcher.MAX_PENDING),
+                mPrefetcher.getPending());
+    }
+
+    public void testOwnedContactIsSkipped() {
+        mPrefetcher.prefetch(lookupUri(1));
+        mPrefetcher.prefetch(lookupUri(2));
+        mPrefetcher.setOwnedContact(lookupUri(2));
+        assertEquals(Lists.newArrayList(lookupUri(1)), mPrefetcher.getPending());
+
+        mPrefetcher.prefetch(lookupUri(2));
+        mPrefetcher.prefetchAll(Lists.newArrayList(lookupUri(1), lookupUri(2), lookupUri(3)));
+        assertEquals(Lists.newArrayList(lookupUri(1), lookupUri(3)), mPrefetcher.getPending());
+
+        // Once the detail view moves on, the contact can be prefetched again
+        mPrefetcher.setOwnedContact(null);
+        mPrefetcher.prefetch(lookupUri(2));
+        assertEquals(lookupUri(2), mPrefetcher.getPending().get(0));
+    }
+
+    public void testRemoteContactsAreSkipped() {
+        final Uri remote = lookupUri(1).buildUpon()
+                .appendQueryParameter(ContactsContract.DIRECTORY_PARAM_KEY, "2").build();
+        mPrefetcher.prefetch(remote);
+        mPrefetcher.prefetch(null);
+        assertTrue(mPrefetcher.getPending().isEmpty());
+    }
+}
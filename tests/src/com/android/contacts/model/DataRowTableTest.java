@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.contacts.model;
+
+import android.content.ContentValues;
+import android.database.MatrixCursor;
+import android.provider.ContactsContract.CommonDataKinds.Phone;
+import android.provider.ContactsContract.Data;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.android.contacts.model.dataitem.DataItem;
+import com.android.contacts.model.dataitem.PhoneDataItem;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for {@link DataRowTable} and {@link DataRow}.
+ */
+@SmallTest
+public class DataRowTableTest extends TestCase {
+    private static final DataRowTable.Schema SCHEMA = new DataRowTable.Schema(
+            Data._ID, Data.MIMETYPE, Phone.NUMBER, Phone.TYPE, Phone.LABEL, Data.DATA15);
+
+    private static final int[] CURSOR_COLUMNS = new int[] { 0, 1, 2, 3, 4, 5 };
+
+    private static MatrixCursor buildCursor() {
+        final MatrixCursor cursor = new MatrixCursor(new String[] {
+                "data_id", "mimetype", "data1", "data2", "data3", "data15" });
+        cursor.addRow(new Object[] { 1L, Phone.CONTENT_ITEM_TYPE, "555-1234", 2, null, null });
+        cursor.addRow(new Object[] { 2L, Phone.CONTENT_ITEM_TYPE, "555-5678", 0, "Work",
+                new byte[] { 1, 2, 3 } });
+        return cursor;
+    }
+
+    private static DataRow[] loadRows(DataRowTable table) {
+        final MatrixCursor cursor = buildCursor();
+        final DataRow[] rows = new DataRow[cursor.getCount()];
+        while (cursor.moveToNext()) {
+            rows[cursor.getPosition()] = table.addRow(cursor, CURSOR_COLUMNS);
+        }
+        cursor.close();
+        return rows;
+    }
+
+    public void testTypedGetters() {
+        final DataRowTable table = new DataRowTable(SCHEMA);
+        final DataRow[] rows = loadRows(table);
+
+        assertEquals(2, table.getRowCount());
+        assertEquals(Long.valueOf(1), rows[0].getAsLong(Data._ID));
+        assertEquals("555-1234", rows[0].getAsString(Phone.NUMBER));
+        assertEquals(Integer.valueOf(2), rows[0].getAsInteger(Phone.TYPE));
+        assertEquals("2", rows[0].getAsString(Phone.TYPE));
+        assertFalse(rows[0].containsKey(Phone.LABEL));
+        assertNull(rows[0].getAsString(Phone.LABEL));
+        assertNull(rows[0].getAsString(Data.RAW_CONTACT_ID));
+
+        assertEquals("Work", rows[1].getAsString(Phone.LABEL));
+        assertEquals(3, rows[1].getAsByteArray(Data.DATA15).length);
+    }
+
+    public void testContentValuesView() {
+        final DataRow row = loadRows(new DataRowTable(SCHEMA))[0];
+
+        final ContentValues expected = new ContentValues();
+        expected.put(Data._ID, 1L);
+        expected.put(Data.MIMETYPE, Phone.CONTENT_ITEM_TYPE);
+        expected.put(Phone.NUMBER, "555-1234");
+        expected.put(Phone.TYPE, 2L);
+        assertEquals(expected, row.getContentValues());
+
+        // Changes to the view are changes to the row
+        row.getContentValues().put(Phone.LABEL, "Home");
+        assertSame(row.getContentValues(), row.getContentValues());
+        assertEquals("Home", row.getAsString(Phone.LABEL));
+    }
+
+    public void testDataItem() {
+        final DataRow row = loadRows(new DataRowTable(SCHEMA))[1];
+        final PhoneDataItem phone = (PhoneDataItem) DataItem.createFrom(row);
+
+        assertEquals(2, phone.getId());
+        assertEquals("555-5678", phone.getNumber());
+        assertEquals("Work", phone.getLabel());
+
+        phone.computeFormattedPhoneNumber("US");
+        assertNotNull(phone.getFormattedPhoneNumber());
+        assertNotNull(((PhoneDataItem) DataItem.createFrom(row)).getFormattedPhoneNumber());
+    }
+
+    public void testGrowsPastInitialCapacity() {
+        final DataRowTable table = new DataRowTable(SCHEMA);
+        DataRow[] rows = null;
+        for (int i = 0; i < 10; i++) {
+            rows = loadRows(table);
+        }
+        assertEquals(20, table.getRowCount());
+        assertEquals("555-5678", rows[1].getAsString(Phone.NUMBER));
+    }
+}
@@ -0,0 +1,399 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.model;
+
+import android.content.ContentValues;
+import android.os.Build;
+import android.os.Parcel;
+import android.provider.ContactsContract.CommonDataKinds.Email;
+import android.provider.ContactsContract.CommonDataKinds.Event;
+import android.provider.ContactsContract.CommonDataKinds.GroupMembership;
+import android.provider.ContactsContract.CommonDataKinds.Organization;
+import android.provider.ContactsContract.CommonDataKinds.Phone;
+import android.provider.ContactsContract.CommonDataKinds.Photo;
+import android.provider.ContactsContract.CommonDataKinds.StructuredName;
+import android.provider.ContactsContract.CommonDataKinds.StructuredPostal;
+import android.provider.ContactsContract.CommonDataKinds.Website;
+import android.provider.ContactsContract.Data;
+import android.provider.ContactsContract.RawContacts;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+
+import com.android.contacts.common.model.ValuesDelta;
+import com.android.contacts.common.model.account.AccountType;
+import com.android.contacts.common.model.account.GoogleAccountType;
+import com.android.contacts.model.dataitem.DataItem;
+import com.android.contacts.model.dataitem.LegacyDataItemFactory;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Benchmarks of the model operations that run on every load, edit and save of a contact:
+ * creating the data items, building the diff, merging after a version conflict, parceling and
+ * trimming empty rows. This is the one suite for the model; add new benchmarks here so that
+ * all results share the same format.
+ *
+ * Each operation is timed for every combination of {@link #ROW_COUNTS} data rows per raw
+ * contact and {@link #RAW_CONTACT_COUNTS} raw contacts. The results are logged under the class
+ * name and written as JSON to {@link #RESULTS_FILE} in the files directory, to be pulled and
+ * compared across releases:
+ *
+ * <pre>
+ * adb shell am instrument -w -e class com.android.contacts.model.ModelBenchmark \
+ *         com.android.contacts.tests/android.test.InstrumentationTestRunner
+ * </pre>
+ */
+@LargeTest
+public class ModelBenchmark extends AndroidTestCase {
+    private static final String TAG = ModelBenchmark.class.getSimpleName();
+
+    private static final int[] ROW_COUNTS = new int[] { 1, 10, 100, 500, 2000 };
+    private static final int[] RAW_CONTACT_COUNTS = new int[] { 1, 5, 20 };
+
+    /** Rounds are reduced for large states, but never below this. */
+    private static final int MIN_ROUNDS = 3;
+    private static final int MAX_ROUNDS = 20;
+    /** Total number of data rows processed per benchmark and size, across all rounds. */
+    private static final int ROWS_PER_SIZE = 100000;
+
+    /** Every this many rows is changed by the user. */
+    private static final int CHANGED_ROW_INTERVAL = 10;
+
+    private static final String RESULTS_FILE = "model_benchmark.json";
+
+    /** The mimetypes of the rows of {@link #buildRows}, later ones being costlier to match. */
+    private static final String[] MIMETYPES = new String[] {
+            StructuredName.CONTENT_ITEM_TYPE,
+            Phone.CONTENT_ITEM_TYPE,
+            Phone.CONTENT_ITEM_TYPE,
+            Email.CONTENT_ITEM_TYPE,
+            StructuredPostal.CONTENT_ITEM_TYPE,
+            Organization.CONTENT_ITEM_TYPE,
+            GroupMembership.CONTENT_ITEM_TYPE,
+            Website.CONTENT_ITEM_TYPE,
+            Event.CONTENT_ITEM_TYPE,
+            Photo.CONTENT_ITEM_TYPE,
+    };
+
+    /**
+     * An operation to time. {@link #setUp} is not timed.
+     */
+    private static abstract class Benchmark {
+        public final String name;
+
+        public Benchmark(String name) {
+            this.name = name;
+        }
+
+        public abstract Object setUp(int rows, int rawContacts);
+
+        public abstract void run(Object state);
+    }
+
+    private AccountType mAccountType;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mAccountType = new GoogleAccountType(getContext(), "");
+    }
+
+    /**
+     * Builds data rows whose mimetypes are copies, as read from a cursor, or the interned
+     * constants, as stored by the contact loader.
+     */
+    private static DataRow[] buildRows(int count, boolean interned) {
+        final DataRow[] rows = new DataRow[count];
+        for (int i = 0; i < count; i++) {
+            final String mimeType = MIMETYPES[i % MIMETYPES.length];
+            final ContentValues values = new ContentValues();
+            values.put(Data._ID, (long) i);
+            values.put(Data.MIMETYPE, interned ? mimeType.intern() : new String(mimeType));
+            rows[i] = new DataRow(values);
+        }
+        return rows;
+    }
+
+    /**
+     * Builds a state of existing raw contacts, as loaded by the editor, with a name and
+     * alternating phones and emails. Some of the phones are left empty.
+     */
+    private static RawContactDeltaList buildState(int rows, int rawContacts, long version) {
+        final RawContactDeltaList state = new RawContactDeltaList();
+        for (long rawContactId = 1; rawContactId <= rawContacts; rawContactId++) {
+            final ContentValues values = new ContentValues();
+            values.put(RawContacts._ID, rawContactId);
+            values.put(RawContacts.VERSION, version);
+            values.put(RawContacts.ACCOUNT_NAME, "benchmark@example.com");
+            values.put(RawContacts.ACCOUNT_TYPE, GoogleAccountType.ACCOUNT_TYPE);
+            final RawContact rawContact = new RawContact(values);
+            for (int i = 0; i < rows; i++) {
+                final ContentValues data = new ContentValues();
+                data.put(Data._ID, rawContactId * rows + i);
+                if (i == 0) {
+                    data.put(Data.MIMETYPE, StructuredName.CONTENT_ITEM_TYPE);
+                    data.put(StructuredName.GIVEN_NAME, "Given" + rawContactId);
+                    data.put(StructuredName.FAMILY_NAME, "Family" + rawContactId);
+                } else if (i % 2 == 0) {
+                    data.put(Data.MIMETYPE, Email.CONTENT_ITEM_TYPE);
+                    data.put(Email.TYPE, Email.TYPE_HOME);
+                    data.put(Email.DATA, "user" + i + "@example.com");
+                } else {
+                    data.put(Data.MIMETYPE, Phone.CONTENT_ITEM_TYPE);
+                    data.put(Phone.TYPE, Phone.TYPE_MOBILE);
+                    data.put(Phone.NUMBER, i % 7 == 0 ? "" : "555-" + i);
+                }
+                rawContact.addDataItemValues(data);
+            }
+            state.add(RawContactDelta.fromBefore(rawContact));
+        }
+        return state;
+    }
+
+    /**
+     * Changes every {@link #CHANGED_ROW_INTERVAL}th row of each raw contact and adds a phone.
+     */
+    private static void edit(RawContactDeltaList state, int rows) {
+        for (RawContactDelta delta : state) {
+            final long firstId = delta.getValues().getId() * rows;
+            for (int i = 0; i < rows; i += CHANGED_ROW_INTERVAL) {
+                delta.getEntry(firstId + i).put(Data.DATA1, "changed");
+            }
+            final ContentValues phone = new ContentValues();
+            phone.put(Data.MIMETYPE, Phone.CONTENT_ITEM_TYPE);
+            phone.put(Phone.TYPE, Phone.TYPE_WORK);
+            phone.put(Phone.NUMBER, "555-1212");
+            delta.addEntry(ValuesDelta.fromAfter(phone));
+        }
+    }
+
+    private static RawContactDeltaList buildEditedState(int rows, int rawContacts) {
+        final RawContactDeltaList state = buildState(rows, rawContacts, 1);
+        edit(state, rows);
+        return state;
+    }
+
+    private static int getRounds(int rows, int rawContacts) {
+        return Math.max(MIN_ROUNDS, Math.min(MAX_ROUNDS, ROWS_PER_SIZE / (rows * rawContacts)));
+    }
+
+    private void benchmark(Benchmark benchmark) throws JSONException {
+        final JSONArray results = new JSONArray();
+        for (int rawContacts : RAW_CONTACT_COUNTS) {
+            for (int rows : ROW_COUNTS) {
+                // Warm up before measuring
+                benchmark.run(benchmark.setUp(rows, rawContacts));
+
+                final long[] times = new long[getRounds(rows, rawContacts)];
+                for (int i = 0; i < times.length; i++) {
+                    final Object state = benchmark.setUp(rows, rawContacts);
+                    final long start = System.nanoTime();
+                    benchmark.run(state);
+                    times[i] = System.nanoTime() - start;
+                }
+                Arrays.sort(times);
+
+                final JSONObject result = new JSONObject();
+                result.put("benchmark", benchmark.name);
+                result.put("rows", rows);
+                result.put("rawContacts", rawContacts);
+                result.put("rounds", times.length);
+                result.put("bestNs", times[0]);
+                result.put("medianNs", times[times.length / 2]);
+                results.put(result);
+                Log.i(TAG, benchmark.name + " rows=" + rows + " rawContacts=" + rawContacts
+                        + ": best=" + times[0] / 1000 + "us, median="
+                        + times[times.length / 2] / 1000 + "us");
+            }
+        }
+        writeResults(results);
+    }
+
+    /**
+     * Adds the results of one benchmark to {@link #RESULTS_FILE}, one JSON object per line.
+     */
+    private void writeResults(JSONArray results) {
+        final File file = new File(getContext().getFilesDir(), RESULTS_FILE);
+        try {
+            final JSONObject run = new JSONObject();
+            run.put("build", Build.FINGERPRINT);
+            run.put("time", System.currentTimeMillis());
+            run.put("results", results);
+            final FileWriter writer = new FileWriter(file, true);
+            try {
+                writer.write(run.toString());
+                writer.write('\n');
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to write results to " + file, e);
+        } catch (JSONException e) {
+            Log.e(TAG, "Unable to write results to " + file, e);
+        }
+    }
+
+    /**
+     * Times {@link DataItem#createFrom} and the chain of mimetype comparisons it replaced on the
+     * same rows, with one row per data row of the raw contacts.
+     */
+    private void benchmarkCreateFrom(String suffix, final boolean interned)
+            throws JSONException {
+        benchmark(new Benchmark("createFrom" + suffix) {
+            @Override
+            public Object setUp(int rows, int rawContacts) {
+                return buildRows(rows * rawContacts, interned);
+            }
+
+            @Override
+            public void run(Object state) {
+                for (DataRow row : (DataRow[]) state) {
+                    DataItem.createFrom(row);
+                }
+            }
+        });
+        benchmark(new Benchmark("createFromChain" + suffix) {
+            @Override
+            public Object setUp(int rows, int rawContacts) {
+                return buildRows(rows * rawContacts, interned);
+            }
+
+            @Override
+            public void run(Object state) {
+                for (DataRow row : (DataRow[]) state) {
+                    LegacyDataItemFactory.createFrom(row);
+                }
+            }
+        });
+
+        // Both dispatch to the same classes
+        for (DataRow row : buildRows(MIMETYPES.length, interned)) {
+            assertEquals(LegacyDataItemFactory.createFrom(row).getClass(),
+                    DataItem.createFrom(row).getClass());
+        }
+    }
+
+    public void testCreateFrom() throws JSONException {
+        benchmarkCreateFrom("", false);
+    }
+
+    public void testCreateFromInterned() throws JSONException {
+        benchmarkCreateFrom("Interned", true);
+    }
+
+    public void testBuildDiff() throws JSONException {
+        benchmark(new Benchmark("buildDiff") {
+            @Override
+            public Object setUp(int rows, int rawContacts) {
+                return buildEditedState(rows, rawContacts);
+            }
+
+            @Override
+            public void run(Object state) {
+                ((RawContactDeltaList) state).buildDiff();
+            }
+        });
+    }
+
+    public void testMergeAfter() throws JSONException {
+        benchmark(new Benchmark("mergeAfter") {
+            @Override
+            public Object setUp(int rows, int rawContacts) {
+                return new RawContactDeltaList[] {
+                        buildState(rows, rawContacts, 2), buildEditedState(rows, rawContacts) };
+            }
+
+            @Override
+            public void run(Object state) {
+                final RawContactDeltaList[] states = (RawContactDeltaList[]) state;
+                RawContactDeltaList.mergeAfter(states[0], states[1]);
+            }
+        });
+    }
+
+    public void testParcel() throws JSONException {
+        benchmark(new Benchmark("parcel") {
+            @Override
+            public Object setUp(int rows, int rawContacts) {
+                return buildEditedState(rows, rawContacts);
+            }
+
+            @Override
+            public void run(Object state) {
+                final Parcel parcel = Parcel.obtain();
+                try {
+                    parcel.writeParcelable((RawContactDeltaList) state, 0);
+                    parcel.setDataPosition(0);
+                    parcel.readParcelable(getClass().getClassLoader());
+                } finally {
+                    parcel.recycle();
+                }
+            }
+        });
+    }
+
+    public void testCompactParcel() throws JSONException {
+        benchmark(new Benchmark("compactParcel") {
+            @Override
+            public Object setUp(int rows, int rawContacts) {
+                return new CompactRawContactDeltaList(getContext(),
+                        buildEditedState(rows, rawContacts));
+            }
+
+            @Override
+            public void run(Object state) {
+                final Parcel parcel = Parcel.obtain();
+                try {
+                    parcel.writeParcelable((CompactRawContactDeltaList) state, 0);
+                    parcel.setDataPosition(0);
+                    parcel.readParcelable(getClass().getClassLoader());
+                } finally {
+                    parcel.recycle();
+                }
+            }
+        });
+    }
+
+    public void testTrimEmpty() throws JSONException {
+        benchmark(new Benchmark("trimEmpty") {
+            @Override
+            public Object setUp(int rows, int rawContacts) {
+                final RawContactDeltaList state = buildEditedState(rows, rawContacts);
+                // The editor hands out all phones, which makes them candidates for trimming
+                for (RawContactDelta delta : state) {
+                    delta.getMimeEntries(Phone.CONTENT_ITEM_TYPE);
+                }
+                return state;
+            }
+
+            @Override
+            public void run(Object state) {
+                for (RawContactDelta delta : (RawContactDeltaList) state) {
+                    RawContactModifier.trimEmpty(delta, mAccountType);
+                }
+            }
+        });
+    }
+}
@@ -20,9 +20,17 @@ import android.content.ContentValues;
 import android.net.Uri;
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.provider.ContactsContract.CommonDataKinds.Email;
+import android.provider.ContactsContract.CommonDataKinds.Phone;
+import android.provider.ContactsContract.Data;
+
+import com.android.contacts.model.dataitem.DataItem;
+import com.android.contacts.model.dataitem.PhoneDataItem;
 
 import junit.framework.TestCase;
 
+import java.util.List;
+
 /**
  * Unit test for {@link RawContact}.
  */
@@ -102,6 +110,35 @@ public class RawContactTest extends TestCase {
         assertParcelableEquals(buildNamedDataItem());
     }
 
+    public void testDataItemsAreMemoized() {
+        final RawContact contact = buildRawContact();
+        final List<DataItem> dataItems = contact.getDataItems();
+        assertEquals(1, dataItems.size());
+        assertSame(dataItems, contact.getDataItems());
+        assertSame(dataItems.get(0), contact.getDataItems().get(0));
+
+        // Adding an item invalidates the views
+        contact.addDataItemValues(new ContentValues());
+        assertEquals(2, contact.getDataItems().size());
+    }
+
+    public void testDataItemsByMimeType() {
+        final RawContact contact = new RawContact();
+        final ContentValues phone = new ContentValues();
+        phone.put(Data.MIMETYPE, Phone.CONTENT_ITEM_TYPE);
+        phone.put(Phone.NUMBER, "555-1234");
+        contact.addDataItemValues(phone);
+        final ContentValues email = new ContentValues();
+        email.put(Data.MIMETYPE, Email.CONTENT_ITEM_TYPE);
+        contact.addDataItemValues(email);
+
+        final List<DataItem> phones = contact.getDataItems(Phone.CONTENT_ITEM_TYPE);
+        assertEquals(1, phones.size());
+        assertEquals("555-1234", ((PhoneDataItem) phones.get(0)).getNumber());
+        assertSame(contact.getDataItems().get(0), phones.get(0));
+        assertTrue(contact.getDataItems(Data.CONTENT_TYPE).isEmpty());
+    }
+
     private void assertParcelableEquals(Parcelable parcelable) {
         final Parcel parcel = Parcel.obtain();
         try {
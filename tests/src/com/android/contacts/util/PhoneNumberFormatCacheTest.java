@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.util;
+
+import android.telephony.PhoneNumberUtils;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link PhoneNumberFormatCache}.
+ */
+@SmallTest
+public class PhoneNumberFormatCacheTest extends TestCase {
+
+    public void testFormatsLikePhoneNumberUtils() {
+        final PhoneNumberFormatCache cache = new PhoneNumberFormatCache(10);
+        assertEquals(PhoneNumberUtils.formatNumber("6502530000", "+16502530000", "US"),
+                cache.format("6502530000", "+16502530000", "US"));
+        assertNull(cache.format(null, null, "US"));
+    }
+
+    public void testReusesResults() {
+        final PhoneNumberFormatCache cache = new PhoneNumberFormatCache(10);
+        final String formatted = cache.format("6502530000", null, "US");
+        assertSame(formatted, cache.format("6502530000", null, "US"));
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.size());
+    }
+
+    public void testResultsAreKeyedByCountry() {
+        final PhoneNumberFormatCache cache = new PhoneNumberFormatCache(10);
+        assertEquals(PhoneNumberUtils.formatNumber("02012345678", null, "US"),
+                cache.format("02012345678", null, "US"));
+        assertEquals(PhoneNumberUtils.formatNumber("02012345678", null, "GB"),
+                cache.format("02012345678", null, "GB"));
+        assertEquals(2, cache.size());
+        assertEquals(0, cache.hitCount());
+
+        cache.format("02012345678", null, "US");
+        assertEquals(1, cache.hitCount());
+    }
+}